@@ -0,0 +1,69 @@
+package com.jivecake.api.filter;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RequestLimiterBenchmark {
+    private static final int COUNT = 5;
+    private static final long PER = 1000 * 60;
+
+    private final String[] users = new String[1000];
+    private HashDateCount hashDateCount;
+    private RequestLimiter limiter;
+
+    @Setup
+    public void setup() {
+        for (int index = 0; index < this.users.length; index++) {
+            this.users[index] = "auth0|" + index;
+        }
+
+        this.hashDateCount = new HashDateCount();
+        this.limiter = new RequestLimiter();
+    }
+
+    /*
+     * Mirrors what LimitUserRequestFilter did per request before RequestLimiter. HashDateCount
+     * is not thread safe so this is only measured single threaded
+     */
+    @Benchmark
+    public boolean hashDateCount() {
+        String user = this.users[ThreadLocalRandom.current().nextInt(this.users.length)];
+        String key = String.format("%s|%s", user, "/user/token");
+        this.hashDateCount.add(key, new Date());
+
+        List<Date> dates = this.hashDateCount.last(key, COUNT);
+        boolean limited = false;
+
+        if (dates.size() >= COUNT && dates.size() > 1) {
+            limited = dates.get(dates.size() - 1).getTime() - dates.get(0).getTime() < PER;
+            this.hashDateCount.limitToLast(key, COUNT);
+        }
+
+        return limited;
+    }
+
+    @Benchmark
+    public boolean slidingWindow() {
+        String user = this.users[ThreadLocalRandom.current().nextInt(this.users.length)];
+        return this.limiter.acquire("/user/token", user, COUNT, PER, LimitAlgorithm.SLIDING_WINDOW, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public boolean tokenBucket() {
+        String user = this.users[ThreadLocalRandom.current().nextInt(this.users.length)];
+        return this.limiter.acquire("/user/token/bucket", user, COUNT, PER, LimitAlgorithm.TOKEN_BUCKET, System.currentTimeMillis());
+    }
+}
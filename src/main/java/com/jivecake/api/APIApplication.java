@@ -18,21 +18,25 @@ import org.mongodb.morphia.Morphia;
 import org.mongodb.morphia.query.UpdateOpsImpl;
 
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.codahale.metrics.MetricRegistry;
 import com.jivecake.api.cron.Hourly;
 import com.jivecake.api.filter.AuthorizedFilter;
 import com.jivecake.api.filter.CORSFilter;
 import com.jivecake.api.filter.ClaimsFactory;
+import com.jivecake.api.filter.ClaimsFilter;
 import com.jivecake.api.filter.ExceptionMapper;
 import com.jivecake.api.filter.GZIPWriterInterceptor;
 import com.jivecake.api.filter.HasPermissionFilter;
-import com.jivecake.api.filter.HashDateCount;
 import com.jivecake.api.filter.LimitUserRequestFilter;
+import com.jivecake.api.filter.LimiterBackend;
 import com.jivecake.api.filter.LogFilter;
+import com.jivecake.api.filter.MongoRequestLimiter;
 import com.jivecake.api.filter.OptionsProcessor;
 import com.jivecake.api.filter.PathObject;
 import com.jivecake.api.filter.PathObjectInjectionResolver;
 import com.jivecake.api.filter.PathObjectValueFactoryProvider;
 import com.jivecake.api.filter.QueryRestrictFilter;
+import com.jivecake.api.filter.RequestLimiter;
 import com.jivecake.api.filter.SingletonFactory;
 import com.jivecake.api.model.Organization;
 import com.jivecake.api.model.Permission;
@@ -53,22 +57,37 @@ import com.jivecake.api.resources.StripeResource;
 import com.jivecake.api.resources.ToolsResource;
 import com.jivecake.api.resources.TransactionResource;
 import com.jivecake.api.resources.UserResource;
+import com.jivecake.api.service.AggregatedEventCacheService;
 import com.jivecake.api.service.ApplicationService;
 import com.jivecake.api.service.Auth0Service;
+import com.jivecake.api.service.ClaimsService;
+import com.jivecake.api.service.ClientAddressService;
 import com.jivecake.api.service.ClientConnectionService;
 import com.jivecake.api.service.CronService;
+import com.jivecake.api.service.EntityCacheService;
 import com.jivecake.api.service.EntityService;
+import com.jivecake.api.service.EventLockService;
 import com.jivecake.api.service.EventService;
 import com.jivecake.api.service.GoogleCloudPlatformService;
 import com.jivecake.api.service.HttpService;
+import com.jivecake.api.service.IdentityMapService;
+import com.jivecake.api.service.InventoryHoldService;
+import com.jivecake.api.service.ItemInventoryService;
 import com.jivecake.api.service.ItemService;
+import com.jivecake.api.service.JwkService;
+import com.jivecake.api.service.KeyRingService;
+import com.jivecake.api.service.LogService;
 import com.jivecake.api.service.MandrillService;
 import com.jivecake.api.service.MessengerService;
 import com.jivecake.api.service.NotificationService;
 import com.jivecake.api.service.OrganizationService;
+import com.jivecake.api.service.PartitionService;
 import com.jivecake.api.service.PermissionService;
+import com.jivecake.api.service.QueryExecutorService;
 import com.jivecake.api.service.StripeService;
+import com.jivecake.api.service.TokenCacheService;
 import com.jivecake.api.service.TransactionService;
+import com.jivecake.api.service.UserDataService;
 import com.mongodb.MongoClient;
 
 import io.dropwizard.Application;
@@ -82,6 +101,7 @@ public class APIApplication extends Application<APIConfiguration> {
     private final List<Class<?>> filters = Arrays.asList(
         AuthorizedFilter.class,
         APIConfiguration.class,
+        ClaimsFilter.class,
         ExceptionMapper.class,
         GZIPWriterInterceptor.class,
         HasPermissionFilter.class,
@@ -112,21 +132,32 @@ public class APIApplication extends Application<APIConfiguration> {
     );
 
     private final List<Class<?>> services = Arrays.asList(
+        AggregatedEventCacheService.class,
         ApplicationService.class,
         Auth0Service.class,
+        ClaimsService.class,
+        ClientAddressService.class,
         ClientConnectionService.class,
         CronService.class,
+        EntityCacheService.class,
         EntityService.class,
+        EventLockService.class,
         EventService.class,
         GoogleCloudPlatformService.class,
         HttpService.class,
+        IdentityMapService.class,
+        InventoryHoldService.class,
+        ItemInventoryService.class,
         ItemService.class,
+        JwkService.class,
+        KeyRingService.class,
         MandrillService.class,
         MessengerService.class,
         NotificationService.class,
         OrganizationService.class,
-        PermissionService.class,
+        QueryExecutorService.class,
         StripeService.class,
+        TokenCacheService.class,
         TransactionService.class
     );
 
@@ -136,6 +167,8 @@ public class APIApplication extends Application<APIConfiguration> {
 
     @Override
     public void run(APIConfiguration configuration, Environment environment) {
+        ApplicationService.disableForwardedHeaders(configuration.getServerFactory());
+
         MongoClient client = ApplicationService.getClient(configuration);
         Morphia morphia = ApplicationService.getMorphia(client);
         Datastore datastore = ApplicationService.getDatastore(morphia, client, "jiveCakeMorphia");
@@ -157,7 +190,7 @@ public class APIApplication extends Application<APIConfiguration> {
             datastore.save(rootOrganization);
         }
 
-        PermissionService permissionService = new PermissionService(datastore);
+        PermissionService permissionService = new PermissionService(datastore, configuration, environment.metrics());
 
         if (configuration.rootOAuthIds != null) {
             this.establishRootUsers(
@@ -170,13 +203,24 @@ public class APIApplication extends Application<APIConfiguration> {
             );
         }
 
+        PartitionService partitionService = new PartitionService(datastore, configuration);
+        LogService logService = new LogService(datastore, partitionService, configuration, environment.metrics());
+        environment.lifecycle().manage(logService);
+
+        UserDataService userDataService = new UserDataService(datastore);
+        environment.lifecycle().manage(userDataService);
+
         JerseyEnvironment jersey = environment.jersey();
         DropwizardResourceConfig resourceConfiguration = jersey.getResourceConfig();
         resourceConfiguration.register(datastore);
         resourceConfiguration.register(new AbstractBinder() {
             @Override
             protected void configure() {
-                this.bind(new HashDateCount()).to(HashDateCount.class);
+                LimiterBackend limiter = "mongo".equals(configuration.limiter.backend) ?
+                    new MongoRequestLimiter(datastore, configuration) :
+                    new RequestLimiter(configuration.limiter.maximumKeys);
+
+                this.bind(limiter).to(LimiterBackend.class);
 
                 SentryClient client = Sentry.init(configuration.sentry.dsn);
                 client.setEnvironment(configuration.sentry.environment);
@@ -184,6 +228,12 @@ public class APIApplication extends Application<APIConfiguration> {
                 this.bind(client).to(SentryClient.class);
                 this.bind(new ApplicationService(application)).to(ApplicationService.class);
                 this.bind(datastore).to(Datastore.class);
+                this.bind(morphia).to(Morphia.class);
+                this.bind(logService).to(LogService.class);
+                this.bind(userDataService).to(UserDataService.class);
+                this.bind(partitionService).to(PartitionService.class);
+                this.bind(permissionService).to(PermissionService.class);
+                this.bind(environment.metrics()).to(MetricRegistry.class);
                 this.bind(configuration).to(APIConfiguration.class);
                 this.bind(Hourly.class).to(Hourly.class).in(Singleton.class);
 
@@ -242,6 +292,8 @@ public class APIApplication extends Application<APIConfiguration> {
                     new FindAndModifyOptions().upsert(true)
                 );
             }
+
+            permissionService.invalidate(user_id);
         }
     }
 }
@@ -15,4 +15,9 @@ public class APIConfiguration extends Configuration {
     public PaypalConfiguration paypal;
     public MandrillConfiguration mandrill;
     public SentryConfiguration sentry;
+    public LimiterConfiguration limiter = new LimiterConfiguration();
+    public LogConfiguration log = new LogConfiguration();
+    public CacheConfiguration cache = new CacheConfiguration();
+    public HoldConfiguration hold = new HoldConfiguration();
+    public QueryConfiguration query = new QueryConfiguration();
 }
\ No newline at end of file
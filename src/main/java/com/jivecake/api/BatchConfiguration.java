@@ -0,0 +1,12 @@
+package com.jivecake.api;
+
+import com.jivecake.api.service.OverflowPolicy;
+
+public class BatchConfiguration {
+    public int queueSize = 10000;
+    public int batchSize = 500;
+    public long flushInterval = 1000;
+    public OverflowPolicy overflow = OverflowPolicy.SAMPLE;
+    public double sampleRate = 0.1;
+    public long blockTimeout = 1000;
+}
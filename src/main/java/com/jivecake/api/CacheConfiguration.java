@@ -0,0 +1,11 @@
+package com.jivecake.api;
+
+public class CacheConfiguration {
+    public long permissionTtl = 1000 * 60;
+    public long permissionPollInterval = 1000;
+    public int entitySize = 10000;
+    public long entityTtl = 1000 * 60;
+    public long entityPollInterval = 1000;
+    public long aggregatedTtl = 1000 * 30;
+    public int aggregatedSize = 1000;
+}
@@ -0,0 +1,9 @@
+package com.jivecake.api;
+
+public class HoldConfiguration {
+    public long stripeTtl = 1000 * 60 * 5;
+    public long paypalTtl = 1000 * 60 * 15;
+    public long requestTtl = 1000 * 60;
+    public int maximumPerClient = 3;
+    public long sweepInterval = 1000 * 30;
+}
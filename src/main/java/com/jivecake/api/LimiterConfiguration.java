@@ -0,0 +1,12 @@
+package com.jivecake.api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LimiterConfiguration {
+    public String backend = "local";
+    public long reconcileInterval = 1000;
+    public int maximumKeys = 100000;
+    public List<String> exemptNetworks = new ArrayList<>();
+    public List<String> trustedProxies = new ArrayList<>();
+}
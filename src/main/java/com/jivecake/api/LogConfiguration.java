@@ -0,0 +1,10 @@
+package com.jivecake.api;
+
+public class LogConfiguration {
+    public BatchConfiguration request = new BatchConfiguration();
+    public BatchConfiguration userInterfaceEvent = new BatchConfiguration();
+    public int bodyLimit = 1024 * 16;
+    public double sampleRate = 0.1;
+    public long rollupInterval = 1000 * 60;
+    public int retentionDays = 30;
+}
@@ -5,4 +5,9 @@ public class OAuthConfiguration {
     public String nonInteractiveSecret;
     public String domain;
     public String audience;
+    public long jwksRefreshInterval = 1000 * 60 * 60;
+    public long jwksMinimumRefetchInterval = 1000 * 30;
+    public String keyDirectory = "resource/jwt";
+    public String signingKeyId = "jwtrs256";
+    public int verifiedTokenCacheSize = 10000;
 }
\ No newline at end of file
@@ -0,0 +1,8 @@
+package com.jivecake.api;
+
+public class QueryConfiguration {
+    public int threads = 16;
+    public int queueSize = 256;
+    public long timeout = 1000 * 10;
+    public long organizationTreeTimeout = 0;
+}
@@ -1,22 +1,44 @@
 package com.jivecake.api.cron;
 
 import java.io.IOException;
+import java.util.Date;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import com.jivecake.api.model.Request;
+import com.jivecake.api.model.UserInterfaceEvent;
 import com.jivecake.api.service.Auth0Service;
+import com.jivecake.api.service.ItemInventoryService;
+import com.jivecake.api.service.PartitionService;
 
 @Singleton
 public class Hourly {
     private final Auth0Service auth0Service;
+    private final PartitionService partitionService;
+    private final ItemInventoryService itemInventoryService;
 
     @Inject
-    public Hourly(Auth0Service auth0Service) {
+    public Hourly(
+        Auth0Service auth0Service,
+        PartitionService partitionService,
+        ItemInventoryService itemInventoryService
+    ) {
         this.auth0Service = auth0Service;
+        this.partitionService = partitionService;
+        this.itemInventoryService = itemInventoryService;
     }
 
     public void reloadAccessToken() throws IOException {
         this.auth0Service.token = this.auth0Service.getNewToken();
     }
+
+    public void dropExpiredLogPartitions() {
+        this.partitionService.dropExpired(Request.class);
+        this.partitionService.dropExpired(UserInterfaceEvent.class);
+    }
+
+    public void reconcileItemInventory() {
+        this.itemInventoryService.reconcileRecent(new Date(new Date().getTime() - 1000 * 60 * 60 * 2));
+    }
 }
@@ -0,0 +1,71 @@
+package com.jivecake.api.filter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+public class CapturingInputStream extends FilterInputStream {
+    private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+    private final int limit;
+    private long length = 0;
+
+    public CapturingInputStream(InputStream stream, int limit) {
+        super(stream);
+        this.limit = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = super.read();
+
+        if (value != -1) {
+            this.length++;
+
+            if (this.captured.size() < this.limit) {
+                this.captured.write(value);
+            }
+        }
+
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+
+        if (read > 0) {
+            this.length += read;
+            int remaining = this.limit - this.captured.size();
+
+            if (remaining > 0) {
+                this.captured.write(buffer, offset, Math.min(read, remaining));
+            }
+        }
+
+        return read;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int limit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    public String getCaptured(Charset charset) {
+        return new String(this.captured.toByteArray(), charset);
+    }
+
+    public boolean isTruncated() {
+        return this.length > this.captured.size();
+    }
+}
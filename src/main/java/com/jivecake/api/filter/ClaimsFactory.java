@@ -6,40 +6,24 @@ import javax.servlet.http.HttpServletRequest;
 import org.glassfish.hk2.api.Factory;
 
 import com.auth0.jwt.interfaces.DecodedJWT;
-import com.jivecake.api.service.Auth0Service;
+import com.jivecake.api.service.ClaimsService;
 
 public class ClaimsFactory implements Factory<DecodedJWT> {
     private final HttpServletRequest request;
-    private final Auth0Service auth0Service;
+    private final ClaimsService claimsService;
 
     @Inject
-    public ClaimsFactory(Auth0Service auth0Service, HttpServletRequest request) {
+    public ClaimsFactory(ClaimsService claimsService, HttpServletRequest request) {
         this.request = request;
-        this.auth0Service = auth0Service;
+        this.claimsService = claimsService;
     }
 
     @Override
     public DecodedJWT provide() {
-       String authorization = this.request.getHeader("Authorization");
-       DecodedJWT jwt = null;
-
-       if (authorization != null && authorization.startsWith("Bearer ")) {
-           String token = authorization.substring("Bearer ".length());
-           int parts = token.split("\\.").length;
-
-           if (parts == 3) {
-               try {
-                   jwt = this.auth0Service.getDecodedJWT(token);
-               } catch (Exception e) {
-                   e.printStackTrace();
-               }
-           }
-       }
-
-       return jwt;
+        return this.claimsService.getClaims(this.request).getDecodedJWT();
     }
 
     @Override
     public void dispose(DecodedJWT jwt) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,35 @@
+package com.jivecake.api.filter;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.Context;
+
+import com.jivecake.api.service.ClaimsService;
+
+@Priority(Priorities.AUTHENTICATION)
+public class ClaimsFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    @Context
+    private HttpServletRequest request;
+    private final ClaimsService claimsService;
+
+    @Inject
+    public ClaimsFilter(ClaimsService claimsService) {
+        this.claimsService = claimsService;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext context) {
+        this.claimsService.getClaims(this.request);
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        this.claimsService.recordVerifications(this.request);
+    }
+}
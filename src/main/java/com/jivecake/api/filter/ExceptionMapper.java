@@ -1,5 +1,8 @@
 package com.jivecake.api.filter;
 
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.BadRequestException;
@@ -18,7 +21,7 @@ import org.mongodb.morphia.Datastore;
 
 import com.auth0.jwt.interfaces.DecodedJWT;
 import com.jivecake.api.APIConfiguration;
-import com.jivecake.api.service.Auth0Service;
+import com.jivecake.api.service.ClaimsService;
 import com.jivecake.api.service.MandrillService;
 
 import io.sentry.SentryClient;
@@ -28,7 +31,7 @@ import io.sentry.event.interfaces.ExceptionInterface;
 
 public class ExceptionMapper implements javax.ws.rs.ext.ExceptionMapper<Exception> {
     private final SentryClient sentry;
-    private final Auth0Service auth0Service;
+    private final ClaimsService claimsService;
     private final HttpServletRequest request;
 
     @Inject
@@ -36,12 +39,12 @@ public class ExceptionMapper implements javax.ws.rs.ext.ExceptionMapper<Exceptio
         SentryClient sentry,
         Datastore datastore,
         APIConfiguration apiConfiguration,
-        Auth0Service auth0Service,
         MandrillService mandrillService,
+        ClaimsService claimsService,
         HttpServletRequest request
     ) {
         this.sentry = sentry;
-        this.auth0Service = auth0Service;
+        this.claimsService = claimsService;
         this.request = request;
     }
 
@@ -65,6 +68,8 @@ public class ExceptionMapper implements javax.ws.rs.ext.ExceptionMapper<Exceptio
             builder = Response.status(Status.NOT_ACCEPTABLE);
         } else if (exception instanceof QueryParamException) {
             builder = Response.status(Status.BAD_REQUEST);
+        } else if (exception instanceof CompletionException && exception.getCause() instanceof TimeoutException) {
+            builder = Response.status(Status.SERVICE_UNAVAILABLE);
         } else {
             EventBuilder eventBuilder = new EventBuilder()
                 .withEnvironment(this.sentry.getEnvironment())
@@ -72,14 +77,10 @@ public class ExceptionMapper implements javax.ws.rs.ext.ExceptionMapper<Exceptio
                 .withLevel(Event.Level.ERROR)
                 .withSentryInterface(new ExceptionInterface(exception));
 
-            String authorization = this.request.getHeader("Authorization");
+            DecodedJWT jwt = this.claimsService.getClaims(this.request).getDecodedJWT();
 
-            if (authorization != null && authorization.startsWith("Bearer ")) {
-                try {
-                    DecodedJWT jwt = this.auth0Service.getDecodedJWT(authorization.substring("Bearer ".length()));
-                    eventBuilder.withExtra("sub", jwt.getSubject());
-                } catch (Exception e) {
-                }
+            if (jwt != null) {
+                eventBuilder.withExtra("sub", jwt.getSubject());
             }
 
             this.sentry.sendEvent(eventBuilder.build());
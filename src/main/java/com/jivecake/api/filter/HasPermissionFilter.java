@@ -1,10 +1,11 @@
 package com.jivecake.api.filter;
 
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
 import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.container.ContainerRequestFilter;
 import javax.ws.rs.container.ResourceInfo;
@@ -13,25 +14,32 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 
 import org.bson.types.ObjectId;
-import org.mongodb.morphia.Datastore;
 
 import com.auth0.jwt.interfaces.DecodedJWT;
-import com.jivecake.api.service.Auth0Service;
+import com.jivecake.api.request.RequestClaims;
+import com.jivecake.api.service.ClaimsService;
+import com.jivecake.api.service.IdentityMapService;
 import com.jivecake.api.service.PermissionService;
 
 @HasPermission(clazz=HasPermission.class, id="")
 public class HasPermissionFilter implements ContainerRequestFilter {
+    @Context
+    private HttpServletRequest request;
     @Context
     private ResourceInfo resourceInfo;
-    private final Auth0Service auth0Service;
+    private final ClaimsService claimsService;
     private final PermissionService permissionService;
-    private final Datastore datastore;
+    private final IdentityMapService identityMapService;
 
     @Inject
-    public HasPermissionFilter(Auth0Service auth0Service, PermissionService permissionService, Datastore datastore) {
-        this.auth0Service = auth0Service;
+    public HasPermissionFilter(
+        ClaimsService claimsService,
+        PermissionService permissionService,
+        IdentityMapService identityMapService
+    ) {
+        this.claimsService = claimsService;
         this.permissionService = permissionService;
-        this.datastore = datastore;
+        this.identityMapService = identityMapService;
     }
 
     @Override
@@ -41,11 +49,9 @@ public class HasPermissionFilter implements ContainerRequestFilter {
 
         Response response;
 
-        String header = context.getHeaderString("Authorization");
-
-        if (header != null && header.startsWith("Bearer ")) {
-            String token = header.substring("Bearer ".length());
+        RequestClaims claims = this.claimsService.getClaims(this.request);
 
+        if (claims.hasBearerToken()) {
             ObjectId objectId;
 
             try {
@@ -58,23 +64,17 @@ public class HasPermissionFilter implements ContainerRequestFilter {
             if (objectId == null) {
                 response = Response.status(Status.BAD_REQUEST).build();
             } else {
-                Collection<?> entities = this.datastore.find(annotation.clazz()).field("id").equal(objectId).asList();
+                Object entity = this.identityMapService.get(this.request, annotation.clazz(), objectId);
 
-                if (!entities.isEmpty()) {
-                    DecodedJWT jwt = null;
-
-                    try {
-                        jwt = this.auth0Service.getDecodedJWT(token);
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
+                if (entity != null) {
+                    DecodedJWT jwt = claims.getDecodedJWT();
 
                     if (jwt == null) {
                         response = Response.status(Status.UNAUTHORIZED).build();
                     } else {
                         boolean hasPermission = this.permissionService.has(
                             jwt.getSubject(),
-                            entities,
+                            Arrays.asList(entity),
                             annotation.read(),
                             annotation.write()
                         );
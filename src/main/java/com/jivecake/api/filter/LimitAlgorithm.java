@@ -0,0 +1,6 @@
+package com.jivecake.api.filter;
+
+public enum LimitAlgorithm {
+    SLIDING_WINDOW,
+    TOKEN_BUCKET
+}
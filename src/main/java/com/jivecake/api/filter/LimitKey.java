@@ -0,0 +1,8 @@
+package com.jivecake.api.filter;
+
+public enum LimitKey {
+    USER,
+    IP,
+    FORWARDED_IP,
+    PATH_GROUP
+}
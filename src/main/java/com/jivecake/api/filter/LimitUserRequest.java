@@ -10,4 +10,6 @@ import javax.ws.rs.NameBinding;
 public @interface LimitUserRequest {
     int count();
     long per();
-}
\ No newline at end of file
+    LimitAlgorithm algorithm() default LimitAlgorithm.SLIDING_WINDOW;
+    LimitKey[] keys() default {LimitKey.USER};
+}
@@ -1,9 +1,7 @@
 package com.jivecake.api.filter;
 
 import java.io.IOException;
-import java.net.URI;
-import java.util.Date;
-import java.util.List;
+import java.lang.reflect.Method;
 
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
@@ -15,7 +13,8 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 import com.auth0.jwt.interfaces.DecodedJWT;
-import com.jivecake.api.service.Auth0Service;
+import com.jivecake.api.service.ClaimsService;
+import com.jivecake.api.service.ClientAddressService;
 
 @LimitUserRequest(count = 0, per = 0)
 public class LimitUserRequestFilter implements ContainerRequestFilter {
@@ -23,13 +22,19 @@ public class LimitUserRequestFilter implements ContainerRequestFilter {
     private HttpServletRequest request;
     @Context
     private ResourceInfo resourceInfo;
-    private final HashDateCount count;
-    private final Auth0Service auth0Service;
+    private final LimiterBackend limiter;
+    private final ClaimsService claimsService;
+    private final ClientAddressService clientAddressService;
 
     @Inject
-    public LimitUserRequestFilter(Auth0Service auth0Service, HashDateCount count) {
-        this.auth0Service = auth0Service;
-        this.count = count;
+    public LimitUserRequestFilter(
+        ClaimsService claimsService,
+        ClientAddressService clientAddressService,
+        LimiterBackend limiter
+    ) {
+        this.claimsService = claimsService;
+        this.clientAddressService = clientAddressService;
+        this.limiter = limiter;
     }
 
     @Override
@@ -38,56 +43,82 @@ public class LimitUserRequestFilter implements ContainerRequestFilter {
 
         Response aborted = null;
 
-        String errorEntity = String.format(
-            "{\"error\": \"limit\", data: {\"count\": %s, \"per\": %s}}",
-            limit.count(),
-            limit.per()
-        );
-
         if (limit.count() < 1) {
+            String errorEntity = String.format(
+                "{\"error\": \"limit\", data: {\"count\": %s, \"per\": %s}}",
+                limit.count(),
+                limit.per()
+            );
+
             aborted = Response.status(429).entity(errorEntity).type(MediaType.APPLICATION_JSON).build();
         } else {
-            String authorization = context.getHeaderString("Authorization");
-
-            if (authorization != null && authorization.startsWith("Bearer ")) {
-                String token = authorization.substring("Bearer ".length());
-
-                DecodedJWT jwt = null;
-
-                try {
-                    jwt = this.auth0Service.getDecodedJWT(token);
-                } catch (Exception e) {
-                    e.printStackTrace();
+            String key = this.getKey(limit.keys());
+
+            if (key != null) {
+                boolean acquired = this.limiter.acquire(
+                    this.getGroup(context, limit.keys()),
+                    key,
+                    limit.count(),
+                    limit.per(),
+                    limit.algorithm(),
+                    System.currentTimeMillis()
+                );
+
+                if (!acquired) {
+                    aborted = Response.status(429).build();
                 }
+            }
+        }
 
-                if (jwt != null) {
-                    String user_id = jwt.getSubject();
-
-                    URI uri = context.getUriInfo().getRequestUri();
-
-                    String key = String.format("%s|%s", user_id, uri.getPath());
-                    this.count.add(key,  new Date());
-
-                    List<Date> dates = this.count.last(key, limit.count());
+        if (aborted != null) {
+            context.abortWith(aborted);
+        }
+    }
 
-                    if (dates.size() >= limit.count() && dates.size() > 1) {
-                        Date last = dates.get(dates.size() - 1);
-                        Date first = dates.get(0);
+    private String getGroup(ContainerRequestContext context, LimitKey[] keys) {
+        for (LimitKey key: keys) {
+            if (key == LimitKey.PATH_GROUP) {
+                Method method = this.resourceInfo.getResourceMethod();
+                return method.getDeclaringClass().getName() + "#" + method.getName();
+            }
+        }
 
-                        if (last.getTime() - first.getTime() < limit.per()) {
-                            aborted = Response.status(429).build();
-                        }
+        return context.getUriInfo().getPath();
+    }
 
-                        this.count.limitToLast(key, limit.count());
-                    } else if (limit.count() < 1) {
-                        aborted = Response.status(429).entity(errorEntity).type(MediaType.APPLICATION_JSON).build();
-                    }
+    /*
+     * Keys are combined in annotation order. Returns null when the request cannot be keyed,
+     * for example an anonymous request on a user keyed limit, or when the client is on an
+     * exempt network
+     */
+    private String getKey(LimitKey[] keys) {
+        String result = null;
+
+        for (LimitKey key: keys) {
+            String part;
+
+            if (key == LimitKey.USER) {
+                DecodedJWT jwt = this.claimsService.getClaims(this.request).getDecodedJWT();
+                part = jwt == null ? null : jwt.getSubject();
+            } else if (key == LimitKey.IP || key == LimitKey.FORWARDED_IP) {
+                part = key == LimitKey.IP ?
+                    this.clientAddressService.getRemoteAddress(this.request) :
+                    this.clientAddressService.getForwardedAddress(this.request);
+
+                if (this.clientAddressService.isExempt(part)) {
+                    return null;
                 }
+            } else {
+                continue;
             }
-        }
 
-        if (aborted != null) {
-            context.abortWith(aborted);
+            if (part == null) {
+                return null;
+            }
+
+            result = result == null ? part : result + "|" + part;
         }
+
+        return result;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,5 @@
+package com.jivecake.api.filter;
+
+public interface LimiterBackend {
+    boolean acquire(String group, String key, int count, long per, LimitAlgorithm algorithm, long now);
+}
@@ -1,42 +1,51 @@
 package com.jivecake.api.filter;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.StringWriter;
 import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.Path;
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
 import javax.ws.rs.container.ResourceInfo;
 import javax.ws.rs.core.Context;
 
-import org.apache.commons.io.IOUtils;
-import org.mongodb.morphia.Datastore;
-
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.jivecake.api.APIConfiguration;
 import com.jivecake.api.model.Request;
-import com.jivecake.api.service.Auth0Service;
+import com.jivecake.api.service.ClaimsService;
+import com.jivecake.api.service.LogService;
 
 @Log
-public class LogFilter implements ContainerRequestFilter {
+public class LogFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    private static final String REQUEST_PROPERTY = LogFilter.class.getName() + ".request";
+    private static final String STREAM_PROPERTY = LogFilter.class.getName() + ".stream";
+    private static final String START_PROPERTY = LogFilter.class.getName() + ".start";
+
     @Context
     private HttpServletRequest request;
     @Context
     private ResourceInfo resourceInfo;
-    private final Datastore datastore;
-    private final Auth0Service auth0Service;
+    private final LogService logService;
+    private final ClaimsService claimsService;
+    private final APIConfiguration configuration;
 
     @Inject
-    public LogFilter(Datastore datastore, Auth0Service auth0Service) {
-        this.datastore = datastore;
-        this.auth0Service = auth0Service;
+    public LogFilter(LogService logService, ClaimsService claimsService, APIConfiguration configuration) {
+        this.logService = logService;
+        this.configuration = configuration;
+        this.claimsService = claimsService;
     }
 
     @Override
@@ -58,7 +67,9 @@ public class LogFilter implements ContainerRequestFilter {
         Map<String, List<String>> queryCopy = new HashMap<>();
 
         for (String key: headers.keySet()) {
-            headersCopy.put(key.replace('.', ' '), headers.get(key));
+            if (!"Authorization".equalsIgnoreCase(key) && !"Cookie".equalsIgnoreCase(key)) {
+                headersCopy.put(key.replace('.', ' '), headers.get(key));
+            }
         }
 
         for (String key: query.keySet()) {
@@ -69,33 +80,81 @@ public class LogFilter implements ContainerRequestFilter {
         request.query = queryCopy;
 
         if (log.body()) {
-            String requestEncoding = this.request.getCharacterEncoding();
-            String encoding = requestEncoding == null ? "UTF-8" : requestEncoding;
+            CapturingInputStream stream = new CapturingInputStream(
+                context.getEntityStream(),
+                this.configuration.log.bodyLimit
+            );
+            context.setEntityStream(stream);
+            context.setProperty(LogFilter.STREAM_PROPERTY, stream);
+        }
+
+        DecodedJWT jwt = this.claimsService.getClaims(this.request).getDecodedJWT();
 
-            StringWriter writer = new StringWriter();
-            IOUtils.copy(context.getEntityStream(), writer, encoding);
-            request.body = writer.toString();
-            context.setEntityStream(new ByteArrayInputStream(request.body.getBytes()));
+        if (jwt != null) {
+            request.user_id = jwt.getSubject();
         }
 
-        String authorization = context.getHeaderString("Authorization");
+        context.setProperty(LogFilter.REQUEST_PROPERTY, request);
+        context.setProperty(LogFilter.START_PROPERTY, System.nanoTime());
+    }
 
-        if (authorization != null && authorization.startsWith("Bearer .")) {
-            String token = authorization.substring("Bearer ".length());
+    /*
+     * The body and status are only known once the resource has run, so the log is written here
+     */
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Object property = requestContext.getProperty(LogFilter.REQUEST_PROPERTY);
 
-            DecodedJWT jwt = null;
+        if (!(property instanceof Request)) {
+            return;
+        }
 
-            try {
-                jwt = this.auth0Service.getDecodedJWT(token);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+        Request request = (Request)property;
+        long start = (Long)requestContext.getProperty(LogFilter.START_PROPERTY);
 
-            if (jwt != null) {
-                request.user_id = jwt.getSubject();
-            }
+        request.status = responseContext.getStatus();
+        request.latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        this.logService.record(
+            this.getTemplate(),
+            request.method,
+            request.status,
+            request.latency,
+            this.request.getContentLengthLong(),
+            responseContext.getLength(),
+            request.timeCreated.getTime()
+        );
+
+        if (!this.logService.isSampled(request.status)) {
+            return;
+        }
+
+        Object stream = requestContext.getProperty(LogFilter.STREAM_PROPERTY);
+
+        if (stream instanceof CapturingInputStream) {
+            String encoding = this.request.getCharacterEncoding();
+            Charset charset = encoding != null && Charset.isSupported(encoding) ?
+                Charset.forName(encoding) :
+                StandardCharsets.UTF_8;
+
+            CapturingInputStream capture = (CapturingInputStream)stream;
+            request.body = capture.getCaptured(charset);
+            request.bodyTruncated = capture.isTruncated();
+        }
+
+        this.logService.save(request);
+    }
+
+    private String getTemplate() {
+        Path classPath = this.resourceInfo.getResourceClass().getAnnotation(Path.class);
+        Path methodPath = this.resourceInfo.getResourceMethod().getAnnotation(Path.class);
+
+        String template = "/" + (classPath == null ? "" : classPath.value());
+
+        if (methodPath != null) {
+            template += "/" + methodPath.value();
         }
 
-        this.datastore.save(request);
+        return template.replaceAll("/+", "/");
     }
 }
\ No newline at end of file
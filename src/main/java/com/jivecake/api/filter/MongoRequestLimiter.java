@@ -0,0 +1,243 @@
+package com.jivecake.api.filter;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.mongodb.morphia.Datastore;
+
+import com.jivecake.api.APIConfiguration;
+import com.jivecake.api.model.RequestLimitCount;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+
+public class MongoRequestLimiter implements LimiterBackend {
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final Map<String, Map<String, Counter>> groups = new ConcurrentHashMap<>();
+    private final AtomicInteger keys = new AtomicInteger();
+    private final RequestLimiter local;
+    private final Datastore datastore;
+    private final int maximumKeys;
+
+    public MongoRequestLimiter(Datastore datastore, APIConfiguration configuration) {
+        this.datastore = datastore;
+        this.maximumKeys = configuration.limiter.maximumKeys;
+        this.local = new RequestLimiter(configuration.limiter.maximumKeys);
+
+        this.executor.scheduleWithFixedDelay(() -> {
+            try {
+                this.reconcile(System.currentTimeMillis());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, configuration.limiter.reconcileInterval, configuration.limiter.reconcileInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * The local limiter enforces the exact algorithm for this node. On top of it every node keeps a
+     * fixed window count per key which includes what the other nodes reported at the last reconcile,
+     * so the cluster wide limit holds to within one reconcile interval without a remote call here.
+     * Like the local limiter, once maximumKeys counters exist a new key is only limited locally
+     */
+    @Override
+    public boolean acquire(String group, String key, int count, long per, LimitAlgorithm algorithm, long now) {
+        if (!this.local.acquire(group, key, count, per, algorithm, now)) {
+            return false;
+        }
+
+        if (per <= 0) {
+            return true;
+        }
+
+        Map<String, Counter> counters = this.groups.get(group);
+
+        if (counters == null) {
+            Map<String, Counter> created = new ConcurrentHashMap<>();
+            counters = this.groups.putIfAbsent(group, created);
+
+            if (counters == null) {
+                counters = created;
+            }
+        }
+
+        while (true) {
+            Counter counter = counters.get(key);
+
+            if (counter == null) {
+                if (this.keys.get() >= this.maximumKeys) {
+                    return true;
+                }
+
+                Counter created = new Counter(per);
+                counter = counters.putIfAbsent(key, created);
+
+                if (counter == null) {
+                    counter = created;
+                    this.keys.incrementAndGet();
+                }
+            }
+
+            Boolean result = counter.tryIncrement(count, now);
+
+            if (result != null) {
+                return result;
+            }
+
+            /* The counter was retired by reconcile, the request is counted against its replacement */
+            if (counters.remove(key, counter)) {
+                this.keys.decrementAndGet();
+            }
+        }
+    }
+
+    public void reconcile(long now) {
+        List<Reconciliation> reconciliations = new ArrayList<>();
+
+        /*
+         * A counter is only retired once its window is over and every hit has been flushed. It is
+         * marked under its own lock so a request holding it moves on to a new counter instead of
+         * counting into one that is no longer reconciled. Group maps are never removed for the
+         * same reason, there is one per limited path
+         */
+        for (Map.Entry<String, Map<String, Counter>> group: this.groups.entrySet()) {
+            Map<String, Counter> counters = group.getValue();
+
+            for (Map.Entry<String, Counter> entry: counters.entrySet()) {
+                Counter counter = entry.getValue();
+
+                synchronized (counter) {
+                    if (counter.retired) {
+                        continue;
+                    }
+
+                    if (counter.isExpired(now) && counter.local == counter.flushed) {
+                        counter.retired = true;
+
+                        if (counters.remove(entry.getKey(), counter)) {
+                            this.keys.decrementAndGet();
+                        }
+
+                        continue;
+                    }
+
+                    Reconciliation reconciliation = new Reconciliation();
+                    reconciliation.counter = counter;
+                    reconciliation.window = counter.window;
+                    reconciliation.pending = counter.local - counter.flushed;
+                    reconciliation.id = String.format("%s|%s|%s", group.getKey(), entry.getKey(), counter.window);
+                    reconciliation.group = group.getKey();
+                    reconciliation.key = entry.getKey();
+                    reconciliation.expire = new Date((counter.window + 1) * counter.per);
+                    reconciliations.add(reconciliation);
+                }
+            }
+        }
+
+        if (reconciliations.isEmpty()) {
+            return;
+        }
+
+        BulkWriteOperation bulk = this.datastore.getCollection(RequestLimitCount.class).initializeUnorderedBulkOperation();
+
+        for (Reconciliation reconciliation: reconciliations) {
+            BasicDBObject insert = new BasicDBObject("group", reconciliation.group)
+                .append("key", reconciliation.key)
+                .append("window", reconciliation.window)
+                .append("expire", reconciliation.expire);
+
+            bulk.find(new BasicDBObject("_id", reconciliation.id))
+                .upsert()
+                .updateOne(
+                    new BasicDBObject("$inc", new BasicDBObject("count", reconciliation.pending))
+                        .append("$setOnInsert", insert)
+                );
+        }
+
+        bulk.execute();
+
+        Map<String, Reconciliation> idToReconciliation = new HashMap<>();
+
+        for (Reconciliation reconciliation: reconciliations) {
+            idToReconciliation.put(reconciliation.id, reconciliation);
+        }
+
+        List<RequestLimitCount> counts = this.datastore.createQuery(RequestLimitCount.class)
+            .field("id").in(idToReconciliation.keySet())
+            .asList();
+
+        for (RequestLimitCount count: counts) {
+            Reconciliation reconciliation = idToReconciliation.get(count.id);
+            Counter counter = reconciliation.counter;
+
+            synchronized (counter) {
+                if (counter.window == reconciliation.window) {
+                    counter.flushed += reconciliation.pending;
+                    counter.remote = count.count - counter.flushed;
+                }
+            }
+        }
+    }
+
+    private static class Counter {
+        private final long per;
+        private long window = -1;
+        private long local;
+        private long flushed;
+        private long remote;
+        private boolean retired;
+
+        private Counter(long per) {
+            this.per = per;
+        }
+
+        /*
+         * Returns null once the counter has been retired
+         */
+        synchronized Boolean tryIncrement(int count, long now) {
+            if (this.retired) {
+                return null;
+            }
+
+            long window = now / this.per;
+
+            if (window != this.window) {
+                this.window = window;
+                this.local = 0;
+                this.flushed = 0;
+                this.remote = 0;
+            }
+
+            if (this.local + this.remote >= count) {
+                return false;
+            }
+
+            this.local++;
+            return true;
+        }
+
+        boolean isExpired(long now) {
+            return now / this.per > this.window;
+        }
+    }
+
+    public int size() {
+        return this.keys.get();
+    }
+
+    private static class Reconciliation {
+        private Counter counter;
+        private String id;
+        private String group;
+        private String key;
+        private long window;
+        private long pending;
+        private Date expire;
+    }
+}
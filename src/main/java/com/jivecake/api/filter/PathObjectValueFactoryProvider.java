@@ -3,6 +3,7 @@ package com.jivecake.api.filter;
 import java.util.List;
 
 import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.UriInfo;
 
@@ -13,15 +14,20 @@ import org.glassfish.jersey.server.internal.inject.AbstractContainerRequestValue
 import org.glassfish.jersey.server.internal.inject.AbstractValueFactoryProvider;
 import org.glassfish.jersey.server.internal.inject.MultivaluedParameterExtractorProvider;
 import org.glassfish.jersey.server.model.Parameter;
-import org.mongodb.morphia.Datastore;
+
+import com.jivecake.api.service.IdentityMapService;
 
 public class PathObjectValueFactoryProvider extends AbstractValueFactoryProvider {
-    private final Datastore datastore;
+    private final IdentityMapService identityMapService;
 
     @Inject
-    public PathObjectValueFactoryProvider(MultivaluedParameterExtractorProvider extractorProvider, ServiceLocator injector, Datastore datastore) {
+    public PathObjectValueFactoryProvider(
+        MultivaluedParameterExtractorProvider extractorProvider,
+        ServiceLocator injector,
+        IdentityMapService identityMapService
+    ) {
         super(extractorProvider, injector, Parameter.Source.UNKNOWN);
-        this.datastore = datastore;
+        this.identityMapService = identityMapService;
     }
 
     @Override
@@ -42,6 +48,8 @@ public class PathObjectValueFactoryProvider extends AbstractValueFactoryProvider
             result = new AbstractContainerRequestValueFactory<Object>() {
                 @Context
                 private UriInfo info;
+                @Context
+                private HttpServletRequest request;
 
                 @Override
                 public Object provide() {
@@ -59,7 +67,7 @@ public class PathObjectValueFactoryProvider extends AbstractValueFactoryProvider
                         }
 
                         if (id != null) {
-                            result = PathObjectValueFactoryProvider.this.datastore.get(clazz, id);
+                            result = PathObjectValueFactoryProvider.this.identityMapService.get(this.request, clazz, id);
                         }
                     }
 
@@ -0,0 +1,189 @@
+package com.jivecake.api.filter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RequestLimiter implements LimiterBackend {
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final Map<String, Map<String, Bucket>> groups = new ConcurrentHashMap<>();
+    private final AtomicInteger keys = new AtomicInteger();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final int maximumKeys;
+
+    public RequestLimiter() {
+        this(Integer.MAX_VALUE);
+    }
+
+    public RequestLimiter(int maximumKeys) {
+        this.maximumKeys = maximumKeys;
+        this.executor.scheduleWithFixedDelay(
+            () -> this.evictIdle(System.currentTimeMillis()),
+            1,
+            1,
+            TimeUnit.MINUTES
+        );
+    }
+
+    /*
+     * Buckets are keyed by group (the request path) and then by key (the user) so the hot
+     * path never builds a composite key. Each bucket only locks itself. Once maximumKeys
+     * buckets exist a new key is let through without a bucket and an eviction is started on
+     * the limiter's own thread, so a flood of addresses can neither lock out new clients nor
+     * make requests pay for a scan
+     */
+    @Override
+    public boolean acquire(String group, String key, int count, long per, LimitAlgorithm algorithm, long now) {
+        if (count < 1) {
+            return false;
+        }
+
+        Map<String, Bucket> buckets = this.groups.get(group);
+
+        if (buckets == null) {
+            Map<String, Bucket> created = new ConcurrentHashMap<>();
+            buckets = this.groups.putIfAbsent(group, created);
+
+            if (buckets == null) {
+                buckets = created;
+            }
+        }
+
+        while (true) {
+            Bucket bucket = buckets.get(key);
+
+            if (bucket == null) {
+                if (this.keys.get() >= this.maximumKeys) {
+                    if (this.evicting.compareAndSet(false, true)) {
+                        this.executor.execute(() -> {
+                            try {
+                                this.evictIdle(now);
+                            } finally {
+                                this.evicting.set(false);
+                            }
+                        });
+                    }
+
+                    return true;
+                }
+
+                Bucket created = algorithm == LimitAlgorithm.TOKEN_BUCKET ?
+                    new TokenBucket(count, per, now) :
+                    new SlidingWindow(count, per);
+                bucket = buckets.putIfAbsent(key, created);
+
+                if (bucket == null) {
+                    bucket = created;
+                    this.keys.incrementAndGet();
+                }
+            }
+
+            boolean result = bucket.tryAcquire(now);
+
+            /* An evicted bucket was idle, the request is counted again against its replacement */
+            if (buckets.get(key) == bucket) {
+                return result;
+            }
+        }
+    }
+
+    /*
+     * A bucket which has not been touched for its whole period is indistinguishable from a new
+     * one. Group maps are never removed, there is one per limited path and a request holding a
+     * removed map would count against buckets nobody else sees
+     */
+    public void evictIdle(long now) {
+        for (Map<String, Bucket> buckets: this.groups.values()) {
+            for (Map.Entry<String, Bucket> entry: buckets.entrySet()) {
+                if (entry.getValue().isIdle(now) && buckets.remove(entry.getKey(), entry.getValue())) {
+                    this.keys.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return this.keys.get();
+    }
+
+    private abstract static class Bucket {
+        protected final long per;
+        protected volatile long lastAccess;
+
+        private Bucket(long per) {
+            this.per = per;
+        }
+
+        abstract boolean tryAcquire(long now);
+
+        boolean isIdle(long now) {
+            return now - this.lastAccess >= this.per;
+        }
+    }
+
+    private static class SlidingWindow extends Bucket {
+        private final long[] times;
+        private int next = 0;
+        private int size = 0;
+
+        private SlidingWindow(int count, long per) {
+            super(per);
+            this.times = new long[count];
+        }
+
+        @Override
+        synchronized boolean tryAcquire(long now) {
+            this.lastAccess = now;
+
+            if (this.size == this.times.length) {
+                if (now - this.times[this.next] < this.per) {
+                    return false;
+                }
+            } else {
+                this.size++;
+            }
+
+            this.times[this.next] = now;
+            this.next = (this.next + 1) % this.times.length;
+            return true;
+        }
+    }
+
+    private static class TokenBucket extends Bucket {
+        private final int capacity;
+        private double tokens;
+        private long lastRefill;
+
+        private TokenBucket(int capacity, long per, long now) {
+            super(per);
+            this.capacity = capacity;
+            this.tokens = capacity;
+            this.lastRefill = now;
+        }
+
+        @Override
+        synchronized boolean tryAcquire(long now) {
+            this.lastAccess = now;
+
+            if (this.per > 0) {
+                double refill = (double)(now - this.lastRefill) * this.capacity / this.per;
+                this.tokens = Math.min(this.capacity, this.tokens + refill);
+            } else {
+                this.tokens = this.capacity;
+            }
+
+            this.lastRefill = now;
+
+            if (this.tokens >= 1) {
+                this.tokens -= 1;
+                return true;
+            }
+
+            return false;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.jivecake.api.model;
+
+import java.util.Date;
+
+import org.bson.types.ObjectId;
+import org.mongodb.morphia.annotations.Entity;
+import org.mongodb.morphia.annotations.Field;
+import org.mongodb.morphia.annotations.Id;
+import org.mongodb.morphia.annotations.Index;
+import org.mongodb.morphia.annotations.IndexOptions;
+import org.mongodb.morphia.annotations.Indexes;
+
+/*
+ * Unexpired InventoryHolds of one client for one Event, the id is the event id and the client.
+ * timeExpires follows the latest hold so a count left behind by a crash is removed eventually
+ */
+@Entity
+@Indexes({
+    @Index(fields = @Field("timeExpires"), options = @IndexOptions(expireAfterSeconds = 0))
+})
+public class ClientHoldCount {
+    @Id
+    public String id;
+    public ObjectId eventId;
+    public String client;
+    public int count;
+    public Date timeExpires;
+}
@@ -0,0 +1,28 @@
+package com.jivecake.api.model;
+
+import java.util.Date;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.mongodb.morphia.annotations.Entity;
+import org.mongodb.morphia.annotations.Field;
+import org.mongodb.morphia.annotations.Id;
+import org.mongodb.morphia.annotations.Index;
+import org.mongodb.morphia.annotations.IndexOptions;
+import org.mongodb.morphia.annotations.Indexes;
+
+/*
+ * Written whenever a node invalidates cached entities, every node polls for new documents and
+ * drops the same ids. objectClass is the simple name of the cached class
+ */
+@Entity
+@Indexes({
+    @Index(fields = @Field("timeCreated"), options = @IndexOptions(expireAfterSeconds = 60 * 60))
+})
+public class EntityInvalidation {
+    @Id
+    public ObjectId id;
+    public String objectClass;
+    public List<ObjectId> objectIds;
+    public Date timeCreated;
+}
@@ -1,7 +1,6 @@
 package com.jivecake.api.model;
 
 import java.util.Date;
-import java.util.List;
 
 import org.bson.types.ObjectId;
 import org.mongodb.morphia.annotations.Entity;
@@ -35,7 +34,6 @@ public class Event {
     @JsonSerialize(using=ObjectIdSerializer.class)
     public ObjectId paymentProfileId;
 
-    public List<UserData> userData;
     public String currency;
     public String hash;
     public String description;
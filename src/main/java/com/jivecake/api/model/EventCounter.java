@@ -0,0 +1,16 @@
+package com.jivecake.api.model;
+
+import org.bson.types.ObjectId;
+import org.mongodb.morphia.annotations.Entity;
+import org.mongodb.morphia.annotations.Id;
+
+/*
+ * Sequences of one Event, the id is the id of the Event. They are kept apart from Event so
+ * that saving an Event never writes them
+ */
+@Entity
+public class EventCounter {
+    @Id
+    public ObjectId id;
+    public int userNumber;
+}
@@ -0,0 +1,12 @@
+package com.jivecake.api.model;
+
+import org.bson.types.ObjectId;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.jivecake.api.serializer.ObjectIdSerializer;
+
+public class HoldQuantity {
+    @JsonSerialize(using=ObjectIdSerializer.class)
+    public ObjectId itemId;
+    public long quantity;
+}
@@ -0,0 +1,39 @@
+package com.jivecake.api.model;
+
+import java.util.Date;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.mongodb.morphia.annotations.Entity;
+import org.mongodb.morphia.annotations.Field;
+import org.mongodb.morphia.annotations.Id;
+import org.mongodb.morphia.annotations.Index;
+import org.mongodb.morphia.annotations.Indexes;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.jivecake.api.serializer.ObjectIdSerializer;
+
+/*
+ * Quantities of an order which are claimed while its payment is in progress, they are
+ * counted in ItemInventory.held until the hold is confirmed, released or expired
+ */
+@Entity
+@Indexes({
+    @Index(fields = @Field("timeExpires")),
+    @Index(fields = @Field("linkedId")),
+    @Index(fields = @Field("quantities.itemId"))
+})
+public class InventoryHold {
+    @Id
+    @JsonSerialize(using=ObjectIdSerializer.class)
+    public ObjectId id;
+
+    @JsonSerialize(using=ObjectIdSerializer.class)
+    public ObjectId eventId;
+    public List<HoldQuantity> quantities;
+    public String client;
+    public String linkedId;
+    public String linkedObjectClass;
+    public Date timeCreated;
+    public Date timeExpires;
+}
@@ -69,6 +69,32 @@ public class Item {
         return result;
     }
 
+    public ItemCountAmount getNextCountAmount(long numberOfTransactions) {
+        ItemCountAmount result = null;
+
+        for (ItemCountAmount countAmount: this.countAmounts) {
+            if (countAmount.count > numberOfTransactions) {
+                result = countAmount;
+                break;
+            }
+        }
+
+        return result;
+    }
+
+    public ItemTimeAmount getNextTimeAmount(Date date) {
+        ItemTimeAmount result = null;
+
+        for (ItemTimeAmount timeAmount: this.timeAmounts) {
+            if (!date.after(timeAmount.after)) {
+                result = timeAmount;
+                break;
+            }
+        }
+
+        return result;
+    }
+
     public Double getDerivedAmountFromTime(Date date) {
         Double result = this.amount;
 
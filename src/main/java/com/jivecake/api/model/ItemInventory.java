@@ -0,0 +1,45 @@
+package com.jivecake.api.model;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bson.types.ObjectId;
+import org.mongodb.morphia.annotations.Entity;
+import org.mongodb.morphia.annotations.Id;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.jivecake.api.serializer.ObjectIdSerializer;
+
+/*
+ * Leaf transaction totals of one Item, the id is the id of the Item. held is the quantity
+ * claimed by InventoryHolds which have not been confirmed, released or expired. claimed is
+ * sold, pending and held together, kept so a hold can be a single conditional $inc. timeDrifted
+ * is set while a reconcile has found totals which differ from the transactions at driftedVersion
+ */
+@Entity
+public class ItemInventory {
+    @Id
+    @JsonSerialize(using=ObjectIdSerializer.class)
+    public ObjectId id;
+    public long sold;
+    public long pending;
+    public long soldCount;
+    public long pendingCount;
+    public long held;
+    public Long claimed;
+    public Map<String, Long> statusQuantities = new HashMap<>();
+    public Map<String, Long> statusCounts = new HashMap<>();
+    public long version;
+    public Date timeReconciled;
+    public long driftedVersion;
+    public Date timeDrifted;
+
+    public long getCountedQuantity() {
+        return this.sold + this.pending;
+    }
+
+    public long getCountedCount() {
+        return this.soldCount + this.pendingCount;
+    }
+}
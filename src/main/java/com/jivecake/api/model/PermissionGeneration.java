@@ -0,0 +1,17 @@
+package com.jivecake.api.model;
+
+import org.mongodb.morphia.annotations.Entity;
+import org.mongodb.morphia.annotations.Id;
+
+/*
+ * A single document incremented whenever a Permission changes, every node polls it and drops
+ * its cached grants once it moves
+ */
+@Entity
+public class PermissionGeneration {
+    public static final String ID = "permission";
+
+    @Id
+    public String id;
+    public long generation;
+}
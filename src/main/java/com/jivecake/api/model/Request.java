@@ -33,8 +33,11 @@ public class Request {
     public String ip;
     public String method;
     public String body;
+    public boolean bodyTruncated;
     public Map<String, List<String>> query;
     public Map<String, List<String>> headers;
     public String user_id;
+    public int status;
+    public long latency;
     public Date timeCreated;
 }
\ No newline at end of file
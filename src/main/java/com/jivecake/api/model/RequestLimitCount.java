@@ -0,0 +1,24 @@
+package com.jivecake.api.model;
+
+import java.util.Date;
+
+import org.mongodb.morphia.annotations.Entity;
+import org.mongodb.morphia.annotations.Field;
+import org.mongodb.morphia.annotations.Id;
+import org.mongodb.morphia.annotations.Index;
+import org.mongodb.morphia.annotations.IndexOptions;
+import org.mongodb.morphia.annotations.Indexes;
+
+@Entity
+@Indexes({
+    @Index(fields = @Field("expire"), options = @IndexOptions(expireAfterSeconds = 0))
+})
+public class RequestLimitCount {
+    @Id
+    public String id;
+    public String group;
+    public String key;
+    public long window;
+    public long count;
+    public Date expire;
+}
@@ -0,0 +1,32 @@
+package com.jivecake.api.model;
+
+import java.util.Date;
+import java.util.Map;
+
+import org.mongodb.morphia.annotations.Entity;
+import org.mongodb.morphia.annotations.Field;
+import org.mongodb.morphia.annotations.Id;
+import org.mongodb.morphia.annotations.Index;
+import org.mongodb.morphia.annotations.Indexes;
+
+@Entity
+@Indexes({
+    @Index(fields = @Field("minute")),
+    @Index(fields = {
+        @Field("path"),
+        @Field("minute")
+    })
+})
+public class RequestRollup {
+    @Id
+    public String id;
+    public String path;
+    public String method;
+    public int status;
+    public Date minute;
+    public long count;
+    public long latency;
+    public Map<String, Long> latencyBuckets;
+    public long requestBytes;
+    public long responseBytes;
+}
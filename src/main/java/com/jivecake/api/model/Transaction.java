@@ -15,6 +15,13 @@ import com.jivecake.api.serializer.ObjectIdSerializer;
 @Indexes({
     @Index(fields = @Field("linkedId")),
     @Index(fields = @Field("itemId")),
+    @Index(fields={
+        @Field("itemId"),
+        @Field("leaf"),
+        @Field("status"),
+        @Field("user_id"),
+        @Field("quantity")
+    }),
     @Index(fields = @Field("eventId")),
     @Index(fields = @Field("organizationId")),
     @Index(fields = @Field("user_id")),
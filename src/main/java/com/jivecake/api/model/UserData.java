@@ -1,6 +1,43 @@
 package com.jivecake.api.model;
 
+import java.util.Date;
+
+import org.bson.types.ObjectId;
+import org.mongodb.morphia.annotations.Entity;
+import org.mongodb.morphia.annotations.Field;
+import org.mongodb.morphia.annotations.Id;
+import org.mongodb.morphia.annotations.Index;
+import org.mongodb.morphia.annotations.IndexOptions;
+import org.mongodb.morphia.annotations.Indexes;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.jivecake.api.serializer.ObjectIdSerializer;
+
+/*
+ * The registration number of a user for an Event
+ */
+@Entity
+@Indexes({
+    @Index(fields={
+        @Field("eventId"),
+        @Field("userId")
+    }, options=@IndexOptions(unique=true)),
+    @Index(fields={
+        @Field("eventId"),
+        @Field("number")
+    })
+})
 public class UserData {
+    @Id
+    @JsonSerialize(using=ObjectIdSerializer.class)
+    public ObjectId id;
+
+    @JsonSerialize(using=ObjectIdSerializer.class)
+    public ObjectId eventId;
+
+    @JsonSerialize(using=ObjectIdSerializer.class)
+    public ObjectId organizationId;
     public String userId;
     public int number;
-}
\ No newline at end of file
+    public Date timeCreated;
+}
@@ -13,4 +13,5 @@ public class AggregatedEvent {
     public PaymentProfile profile;
     public List<ItemData> itemData;
     public List<EntityAsset> assets;
+    public long version;
 }
@@ -0,0 +1,18 @@
+package com.jivecake.api.request;
+
+import java.util.List;
+
+import com.jivecake.api.model.EntityAsset;
+import com.jivecake.api.model.Event;
+import com.jivecake.api.model.Organization;
+import com.jivecake.api.model.PaymentProfile;
+import com.jivecake.api.model.Transaction;
+
+public class AggregatedEventSummary {
+    public Organization organization;
+    public Event event;
+    public PaymentProfile profile;
+    public List<ItemSummary> items;
+    public List<EntityAsset> assets;
+    public List<Transaction> transactions;
+}
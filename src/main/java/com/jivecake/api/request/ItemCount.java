@@ -0,0 +1,16 @@
+package com.jivecake.api.request;
+
+import org.bson.types.ObjectId;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.jivecake.api.serializer.ObjectIdSerializer;
+
+public class ItemCount {
+    @JsonSerialize(using=ObjectIdSerializer.class)
+    public ObjectId itemId;
+    public long count;
+    public long quantity;
+    public long held;
+    public long userCount;
+    public long userQuantity;
+}
@@ -0,0 +1,16 @@
+package com.jivecake.api.request;
+
+import java.util.Date;
+
+import com.jivecake.api.model.Item;
+
+public class ItemSummary {
+    public Item item;
+    public Double amount;
+    public long sold;
+    public long held;
+    public Long remaining;
+    public Double nextAmount;
+    public Date nextAmountAfter;
+    public Integer nextAmountCount;
+}
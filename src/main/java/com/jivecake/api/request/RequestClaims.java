@@ -0,0 +1,29 @@
+package com.jivecake.api.request;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+
+public class RequestClaims {
+    private final String token;
+    private final DecodedJWT jwt;
+
+    public RequestClaims(String token, DecodedJWT jwt) {
+        this.token = token;
+        this.jwt = jwt;
+    }
+
+    public boolean hasBearerToken() {
+        return this.token != null;
+    }
+
+    public boolean isJWT() {
+        return this.token != null && this.token.split("\\.").length == 3;
+    }
+
+    public String getToken() {
+        return this.token;
+    }
+
+    public DecodedJWT getDecodedJWT() {
+        return this.jwt;
+    }
+}
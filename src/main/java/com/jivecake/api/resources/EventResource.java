@@ -2,8 +2,8 @@ package com.jivecake.api.resources;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
@@ -22,10 +22,13 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.bson.types.ObjectId;
 import org.mongodb.morphia.Datastore;
@@ -34,6 +37,8 @@ import org.mongodb.morphia.query.FindOptions;
 import org.mongodb.morphia.query.Query;
 
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.cloud.storage.Acl;
 import com.google.cloud.storage.Acl.Role;
 import com.google.cloud.storage.Acl.User;
@@ -48,28 +53,33 @@ import com.jivecake.api.filter.Authorized;
 import com.jivecake.api.filter.CORS;
 import com.jivecake.api.filter.GZip;
 import com.jivecake.api.filter.HasPermission;
+import com.jivecake.api.filter.LimitKey;
+import com.jivecake.api.filter.LimitUserRequest;
 import com.jivecake.api.filter.PathObject;
 import com.jivecake.api.filter.ValidEntity;
 import com.jivecake.api.model.AssetType;
 import com.jivecake.api.model.EntityAsset;
 import com.jivecake.api.model.EntityType;
 import com.jivecake.api.model.Event;
+import com.jivecake.api.model.EventCounter;
 import com.jivecake.api.model.Item;
 import com.jivecake.api.model.Organization;
 import com.jivecake.api.model.PaymentProfile;
 import com.jivecake.api.model.Transaction;
-import com.jivecake.api.request.AggregatedEvent;
+import com.jivecake.api.model.UserData;
+import com.jivecake.api.request.AggregatedEventSummary;
 import com.jivecake.api.request.ErrorData;
-import com.jivecake.api.request.ItemData;
 import com.jivecake.api.request.Paging;
+import com.jivecake.api.service.AggregatedEventCacheService;
+import com.jivecake.api.service.AggregatedEventCacheService.Snapshot;
 import com.jivecake.api.service.ApplicationService;
 import com.jivecake.api.service.Auth0Service;
 import com.jivecake.api.service.EntityService;
 import com.jivecake.api.service.EventService;
-import com.jivecake.api.service.ItemService;
 import com.jivecake.api.service.NotificationService;
 import com.jivecake.api.service.StripeService;
 import com.jivecake.api.service.TransactionService;
+import com.jivecake.api.service.UserDataService;
 import com.stripe.exception.StripeException;
 import com.stripe.model.Subscription;
 
@@ -84,7 +94,10 @@ public class EventResource {
     private final EntityService entityService;
     private final NotificationService notificationService;
     private final Datastore datastore;
+    private final UserDataService userDataService;
+    private final AggregatedEventCacheService aggregatedEventCacheService;
     private final APIConfiguration configuration;
+    private final ObjectMapper mapper = new ObjectMapper();
 
     @Inject
     public EventResource(
@@ -95,6 +108,8 @@ public class EventResource {
         EntityService entityService,
         NotificationService notificationService,
         Datastore datastore,
+        UserDataService userDataService,
+        AggregatedEventCacheService aggregatedEventCacheService,
         APIConfiguration configuration
     ) {
         this.auth0Service = auth0Service;
@@ -104,45 +119,44 @@ public class EventResource {
         this.entityService = entityService;
         this.notificationService = notificationService;
         this.datastore = datastore;
+        this.userDataService = userDataService;
+        this.aggregatedEventCacheService = aggregatedEventCacheService;
         this.configuration = configuration;
     }
 
     @GZip
+    @LimitUserRequest(count=120, per=1000 * 60, keys={LimitKey.FORWARDED_IP, LimitKey.PATH_GROUP})
     @GET
     @Path("{eventId}/aggregated")
     public Response getAggregatedItemData(
         @PathObject("eventId") Event event,
-        @Context DecodedJWT jwt
+        @QueryParam("summary") Boolean summary,
+        @Context DecodedJWT jwt,
+        @Context Request request
     ) {
         ResponseBuilder builder;
 
         if (event == null) {
             builder = Response.status(Status.NOT_FOUND);
-        } else if (event.status == EventService.STATUS_ACTIVE) {
-            AggregatedEvent group = this.eventService.getAggregatedaEventData(
+        } else if (event.status == EventService.STATUS_ACTIVE && Boolean.TRUE.equals(summary)) {
+            AggregatedEventSummary entity = this.eventService.getAggregatedEventSummary(
                 event,
-                this.transactionService,
+                jwt == null ? null : jwt.getSubject(),
                 new Date()
             );
 
-            group.event.userData = null;
-            group.itemData = group.itemData.stream()
-                .filter(itemData -> itemData.item.status == ItemService.STATUS_ACTIVE)
-                .collect(Collectors.toList());
-
-            for (ItemData datum: group.itemData) {
-                for (Transaction transaction: datum.transactions) {
-                    if (jwt == null || !jwt.getSubject().equals(transaction.user_id)) {
-                        transaction.user_id = null;
-                    }
-
-                    transaction.given_name = null;
-                    transaction.middleName = null;
-                    transaction.family_name = null;
-                }
+            builder = Response.ok(entity, MediaType.APPLICATION_JSON);
+        } else if (event.status == EventService.STATUS_ACTIVE) {
+            String userId = jwt == null ? null : jwt.getSubject();
+            Snapshot snapshot = this.aggregatedEventCacheService.get(event);
+            EntityTag tag = snapshot.getTag(userId);
+            ResponseBuilder notModified = request.evaluatePreconditions(tag);
+
+            if (notModified == null) {
+                builder = Response.ok(snapshot.getView(userId), MediaType.APPLICATION_JSON).tag(tag);
+            } else {
+                builder = notModified;
             }
-
-            builder = Response.ok(group, MediaType.APPLICATION_JSON);
         } else {
             ErrorData error = new ErrorData();
             error.error = "status";
@@ -155,6 +169,7 @@ public class EventResource {
     }
 
     @GZip
+    @LimitUserRequest(count=60, per=1000 * 60, keys={LimitKey.FORWARDED_IP, LimitKey.PATH_GROUP})
     @GET
     @Path("search")
     public Response search(
@@ -163,7 +178,6 @@ public class EventResource {
         @QueryParam("text") String text
     ) {
         Query<Event> query = this.datastore.createQuery(Event.class)
-            .project("userData", false)
             .field("status").equal(EventService.STATUS_ACTIVE);
 
         if (text != null && !text.isEmpty()) {
@@ -196,12 +210,6 @@ public class EventResource {
         FindOptions options = new FindOptions();
         options.limit(ApplicationService.LIMIT_DEFAULT);
 
-        List<Event> events = query.asList(options);
-
-        for (Event event: events) {
-            event.userData = new ArrayList<>();
-        }
-
         Paging<Event> entity = new Paging<>(query.asList(options), query.count());
         return Response.ok(entity, MediaType.APPLICATION_JSON).build();
     }
@@ -279,12 +287,12 @@ public class EventResource {
 
             event.id = original.id;
             event.hash = original.hash;
-            event.userData = original.userData;
             event.organizationId = original.organizationId;
             event.timeCreated = original.timeCreated;
             event.timeUpdated = currentTime;
             event.lastActivity = currentTime;
 
+            this.userDataService.migrate(original.id);
             Key<Event> key = this.datastore.save(event);
 
             Event searchedEvent = this.datastore.get(Event.class, key.getId());
@@ -343,6 +351,8 @@ public class EventResource {
 
         if (itemCount == 0) {
             this.datastore.delete(Event.class, event.id);
+            this.datastore.delete(EventCounter.class, event.id);
+            this.userDataService.delete(event.id);
 
             this.notificationService.notify(Arrays.asList(event), "event.delete");
             builder = Response.ok(event).type(MediaType.APPLICATION_JSON);
@@ -363,6 +373,54 @@ public class EventResource {
         return Response.ok(event).type(MediaType.APPLICATION_JSON).build();
     }
 
+    @GZip
+    @GET
+    @Path("{id}/userData")
+    @Authorized
+    @HasPermission(id="id", clazz=Event.class, read=true)
+    public Response searchUserData(
+        @PathObject("id") Event event,
+        @QueryParam("skip") Integer skip,
+        @QueryParam("limit") Integer limit
+    ) {
+        this.userDataService.migrate(event.id);
+
+        Paging<UserData> entity = this.userDataService.search(
+            event.id,
+            skip != null && skip > -1 ? skip : 0,
+            limit != null && limit > -1 && limit <= ApplicationService.LIMIT_DEFAULT ? limit : ApplicationService.LIMIT_DEFAULT
+        );
+
+        return Response.ok(entity).type(MediaType.APPLICATION_JSON).build();
+    }
+
+    @GZip
+    @GET
+    @Path("{id}/userData/stream")
+    @Authorized
+    @HasPermission(id="id", clazz=Event.class, read=true)
+    public Response streamUserData(@PathObject("id") Event event) {
+        this.userDataService.migrate(event.id);
+
+        StreamingOutput output = stream -> {
+            JsonGenerator generator = this.mapper.getFactory().createGenerator(stream);
+            generator.writeStartArray();
+
+            this.userDataService.forEach(event.id, userData -> {
+                try {
+                    generator.writeObject(userData);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            generator.writeEndArray();
+            generator.close();
+        };
+
+        return Response.ok(output).type(MediaType.APPLICATION_JSON).build();
+    }
+
     @GET
     @Path("{id}/excel")
     @HasPermission(id="id", clazz=Event.class, read=true)
@@ -372,6 +430,7 @@ public class EventResource {
         @Context DecodedJWT jwt
     ) throws IOException {
         File file = File.createTempFile("transactions", ".xlsx");
+        this.userDataService.migrate(event.id);
 
         Query<Transaction> query = this.datastore.createQuery(Transaction.class)
             .field("eventId").equal(event.id)
@@ -4,7 +4,6 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
@@ -36,13 +35,19 @@ import com.jivecake.api.filter.HasPermission;
 import com.jivecake.api.filter.PathObject;
 import com.jivecake.api.filter.ValidEntity;
 import com.jivecake.api.model.Event;
+import com.jivecake.api.model.InventoryHold;
 import com.jivecake.api.model.Item;
 import com.jivecake.api.model.Organization;
 import com.jivecake.api.model.Transaction;
+import com.jivecake.api.model.UserData;
 import com.jivecake.api.request.ErrorData;
+import com.jivecake.api.request.ItemCount;
 import com.jivecake.api.service.Auth0Service;
+import com.jivecake.api.service.EntityCacheService;
 import com.jivecake.api.service.EntityService;
 import com.jivecake.api.service.EventService;
+import com.jivecake.api.service.InventoryHoldService;
+import com.jivecake.api.service.ItemInventoryService;
 import com.jivecake.api.service.ItemService;
 import com.jivecake.api.service.NotificationService;
 import com.jivecake.api.service.TransactionService;
@@ -56,6 +61,9 @@ public class ItemResource {
     private final TransactionService transactionService;
     private final NotificationService notificationService;
     private final EntityService entityService;
+    private final EntityCacheService entityCacheService;
+    private final ItemInventoryService itemInventoryService;
+    private final InventoryHoldService inventoryHoldService;
     private final Datastore datastore;
     private final APIConfiguration apiConfiguration;
 
@@ -66,6 +74,9 @@ public class ItemResource {
         TransactionService transactionService,
         NotificationService notificationService,
         EntityService entityService,
+        EntityCacheService entityCacheService,
+        ItemInventoryService itemInventoryService,
+        InventoryHoldService inventoryHoldService,
         Datastore datastore,
         APIConfiguration apiConfiguration
     ) {
@@ -74,6 +85,9 @@ public class ItemResource {
         this.transactionService = transactionService;
         this.notificationService = notificationService;
         this.entityService = entityService;
+        this.entityCacheService = entityCacheService;
+        this.itemInventoryService = itemInventoryService;
+        this.inventoryHoldService = inventoryHoldService;
         this.datastore = datastore;
         this.apiConfiguration = apiConfiguration;
     }
@@ -86,26 +100,19 @@ public class ItemResource {
         @PathObject("id") Item item,
         @Context DecodedJWT jwt,
         Transaction transaction
-    ) throws InterruptedException, ExecutionException {
+    ) {
         ResponseBuilder builder;
 
         if (item == null) {
             builder = Response.status(Status.NOT_FOUND);
         } else if (item.amount == 0) {
-            Event event = this.datastore.get(Event.class, item.eventId);
-
-            List<Transaction> countedTransactions = this.transactionService.getTransactionQueryForCounting()
-                .field("itemId").equal(item.id)
-                .asList();
+            Event event = this.entityCacheService.get(Event.class, item.eventId);
 
-            List<Transaction> transactionsForUser = countedTransactions.stream()
-                .filter(subject -> jwt.getSubject().equals(subject.user_id))
-                .collect(Collectors.toList());
+            ItemCount itemCount = this.itemInventoryService.getItemCounts(Arrays.asList(item.id), jwt.getSubject())
+                .get(item.id);
 
             boolean maximumPerUserViolation = item.maximumPerUser != null &&
-                transactionsForUser.size() > item.maximumPerUser + transaction.quantity;
-            boolean maximumReached = item.totalAvailible != null &&
-                countedTransactions.size() > item.totalAvailible + transaction.quantity;
+                itemCount.userCount > item.maximumPerUser + transaction.quantity;
 
             boolean activeViolation = item.status != ItemService.STATUS_ACTIVE ||
                 event.status != EventService.STATUS_ACTIVE;
@@ -122,35 +129,46 @@ public class ItemResource {
                 builder = Response.status(Status.BAD_REQUEST)
                     .entity("{\"error\": \"userlimit\"}")
                     .type(MediaType.APPLICATION_JSON);
-            } else if (maximumReached) {
-                builder = Response.status(Status.BAD_REQUEST)
-                    .entity("{\"error\": \"limit\"}")
-                    .type(MediaType.APPLICATION_JSON);
             } else {
-                Organization organization = this.datastore.get(Organization.class, event.organizationId);
-
-                Date currentTime = new Date();
-
-                Transaction userTransaction = new Transaction();
-                userTransaction.user_id = jwt.getSubject();
-                userTransaction.quantity = transaction.quantity;
-                userTransaction.status = TransactionService.SETTLED;
-                userTransaction.paymentStatus = TransactionService.PAYMENT_EQUAL;
-                userTransaction.itemId = item.id;
-                userTransaction.eventId = event.id;
-                userTransaction.organizationId = organization.id;
-                userTransaction.currency = event.currency;
-                userTransaction.amount = 0;
-                userTransaction.leaf = true;
-                userTransaction.timeCreated = currentTime;
-
-                this.datastore.save(userTransaction);
-
-                Event updatedEvent = this.eventService.assignNumberToUserSafely(jwt.getSubject(), event).get();
-                this.notificationService.notify(Arrays.asList(updatedEvent), "event.update");
-                this.entityService.cascadeLastActivity(Arrays.asList(userTransaction), currentTime);
-
-                builder = Response.ok(userTransaction).type(MediaType.APPLICATION_JSON);
+                InventoryHold hold = this.inventoryHoldService.hold(
+                    item,
+                    transaction.quantity,
+                    this.apiConfiguration.hold.requestTtl
+                );
+
+                if (hold == null) {
+                    builder = Response.status(Status.BAD_REQUEST)
+                        .entity("{\"error\": \"limit\"}")
+                        .type(MediaType.APPLICATION_JSON);
+                } else {
+                    Organization organization = this.entityCacheService.get(Organization.class, event.organizationId);
+
+                    Date currentTime = new Date();
+
+                    Transaction userTransaction = new Transaction();
+                    userTransaction.user_id = jwt.getSubject();
+                    userTransaction.quantity = transaction.quantity;
+                    userTransaction.status = TransactionService.SETTLED;
+                    userTransaction.paymentStatus = TransactionService.PAYMENT_EQUAL;
+                    userTransaction.itemId = item.id;
+                    userTransaction.eventId = event.id;
+                    userTransaction.organizationId = organization.id;
+                    userTransaction.currency = event.currency;
+                    userTransaction.amount = 0;
+                    userTransaction.leaf = true;
+                    userTransaction.timeCreated = currentTime;
+
+                    this.datastore.save(userTransaction);
+                    this.itemInventoryService.add(Arrays.asList(userTransaction));
+                    this.inventoryHoldService.confirm(hold);
+
+                    UserData userData = this.eventService.assignNumberToUser(jwt.getSubject(), event);
+                    this.entityService.cascadeLastActivity(Arrays.asList(userTransaction), currentTime);
+                    this.notificationService.notify(Arrays.asList(userTransaction), "transaction.create");
+                    this.notificationService.notify(Arrays.asList(userData), "userData.create");
+
+                    builder = Response.ok(userTransaction).type(MediaType.APPLICATION_JSON);
+                }
             }
         } else {
             builder = Response.status(Status.BAD_REQUEST);
@@ -174,20 +192,13 @@ public class ItemResource {
         ResponseBuilder builder;
 
         if (isValid) {
-            boolean totalAvailibleViolation = false;
+            InventoryHold hold = this.inventoryHoldService.hold(
+                item,
+                transaction.quantity,
+                this.apiConfiguration.hold.requestTtl
+            );
 
-            if (item.totalAvailible != null) {
-                long count = this.transactionService.getTransactionQueryForCounting()
-                    .field("itemId").equal(item.id)
-                    .asList()
-                    .stream()
-                    .map(subject -> subject.quantity)
-                    .reduce(0L, Long::sum);
-
-                totalAvailibleViolation = count + transaction.quantity > item.totalAvailible;
-            }
-
-            if (totalAvailibleViolation) {
+            if (hold == null) {
                 ErrorData error = new ErrorData();
                 error.error = "totalAvailible";
                 error.data = item.totalAvailible;
@@ -227,6 +238,8 @@ public class ItemResource {
                     transaction.timeCreated = currentTime;
 
                     Key<Transaction> key = ItemResource.this.datastore.save(transaction);
+                    ItemResource.this.itemInventoryService.add(Arrays.asList(transaction));
+                    ItemResource.this.inventoryHoldService.confirm(hold);
                     Transaction newTransaction = ItemResource.this.datastore.get(Transaction.class, key.getId());
 
                     List<Object> results = this.entityService.cascadeLastActivity(
@@ -262,6 +275,8 @@ public class ItemResource {
 
                     builder = Response.ok(newTransaction).type(MediaType.APPLICATION_JSON);
                 } else {
+                    this.inventoryHoldService.release(hold);
+
                     ErrorData error = new ErrorData();
                     error.error = "user";
 
@@ -1,5 +1,8 @@
 package com.jivecake.api.resources;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
@@ -24,33 +27,51 @@ import org.mongodb.morphia.query.FindOptions;
 import org.mongodb.morphia.query.Query;
 
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jivecake.api.filter.Authorized;
 import com.jivecake.api.filter.CORS;
 import com.jivecake.api.filter.GZip;
+import com.jivecake.api.filter.LimitKey;
+import com.jivecake.api.filter.LimitUserRequest;
 import com.jivecake.api.filter.ValidEntity;
 import com.jivecake.api.model.Application;
 import com.jivecake.api.model.Request;
+import com.jivecake.api.model.RequestRollup;
 import com.jivecake.api.model.UserInterfaceEvent;
 import com.jivecake.api.request.Paging;
 import com.jivecake.api.service.ApplicationService;
+import com.jivecake.api.service.LogService;
+import com.jivecake.api.service.PartitionService;
 import com.jivecake.api.service.PermissionService;
+import com.jivecake.api.service.ValidationService;
 
 @Path("log")
 @CORS
 @Singleton
 public class LogResource {
+    public static final String NDJSON = "application/x-ndjson";
+    public static final int BATCH_LIMIT = 500;
+
+    private final ObjectMapper mapper = new ObjectMapper();
     private final ApplicationService applicationService;
     private final PermissionService permissionService;
+    private final PartitionService partitionService;
+    private final LogService logService;
     private final Datastore datastore;
 
     @Inject
     public LogResource(
         ApplicationService applicationService,
         PermissionService permissionService,
+        PartitionService partitionService,
+        LogService logService,
         Datastore datastore
     ) {
         this.applicationService = applicationService;
         this.permissionService = permissionService;
+        this.partitionService = partitionService;
+        this.logService = logService;
         this.datastore = datastore;
     }
 
@@ -77,36 +98,90 @@ public class LogResource {
         );
 
         if (hasPermission) {
-            Query<Request> query = this.datastore.createQuery(Request.class);
+            Paging<Request> entity = this.partitionService.search(
+                Request.class,
+                timeCreatedGreaterThan == null ? null : new Date(timeCreatedGreaterThan),
+                timeCreatedLessThan == null ? null : new Date(timeCreatedLessThan),
+                !"timeCreated".equals(order),
+                0,
+                ApplicationService.LIMIT_DEFAULT,
+                query -> {
+                    if (!userIds.isEmpty()) {
+                        query.field("user_id").in(userIds);
+                    }
+
+                    if (path != null) {
+                        query.field("path").equal(path);
+                    }
+
+                    if (ip != null) {
+                        query.field("ip").equal(ip);
+                    }
+                }
+            );
 
-            if (!userIds.isEmpty()) {
-                query.field("user_id").in(userIds);
-            }
+            builder = Response.ok(entity).type(MediaType.APPLICATION_JSON);
+        } else {
+            builder = Response.status(Status.UNAUTHORIZED);
+        }
 
-            if (timeCreatedGreaterThan != null) {
-                query.field("timeCreated").greaterThan(new Date(timeCreatedGreaterThan));
-            }
+        return builder.build();
+    }
 
-            if (timeCreatedLessThan != null) {
-                query.field("timeCreated").lessThan(new Date(timeCreatedLessThan));
-            }
+    @GZip
+    @GET
+    @Path("http/rollup")
+    @Authorized
+    public Response queryRollups(
+        @QueryParam("path") String path,
+        @QueryParam("method") String method,
+        @QueryParam("status") List<Integer> statuses,
+        @QueryParam("minuteLessThan") Long minuteLessThan,
+        @QueryParam("minuteGreaterThan") Long minuteGreaterThan,
+        @QueryParam("limit") Integer limit,
+        @Context DecodedJWT jwt
+    ) {
+        Application application = this.applicationService.read();
+
+        ResponseBuilder builder;
+
+        boolean hasPermission = this.permissionService.hasRead(
+            jwt.getSubject(),
+            Arrays.asList(application)
+        );
+
+        if (hasPermission) {
+            Query<RequestRollup> query = this.datastore.createQuery(RequestRollup.class)
+                .order("-minute");
 
             if (path != null) {
                 query.field("path").equal(path);
             }
 
-            if (ip != null) {
-                query.field("ip").equal(ip);
+            if (method != null) {
+                query.field("method").equal(method);
+            }
+
+            if (!statuses.isEmpty()) {
+                query.field("status").in(statuses);
+            }
+
+            if (minuteGreaterThan != null) {
+                query.field("minute").greaterThan(new Date(minuteGreaterThan));
             }
 
-            if (order != null) {
-                query.order(order);
+            if (minuteLessThan != null) {
+                query.field("minute").lessThan(new Date(minuteLessThan));
             }
 
             FindOptions options = new FindOptions();
-            options.limit(ApplicationService.LIMIT_DEFAULT);
+            options.limit(
+                limit != null && limit > -1 && limit <= ApplicationService.LIMIT_DEFAULT * 10 ?
+                    limit :
+                    ApplicationService.LIMIT_DEFAULT
+            );
 
-            Paging<Request> entity = new Paging<>(query.asList(options), query.count());
+            Paging<RequestRollup> entity = new Paging<>(query.asList(options), query.count());
             builder = Response.ok(entity).type(MediaType.APPLICATION_JSON);
         } else {
             builder = Response.status(Status.UNAUTHORIZED);
@@ -115,6 +190,7 @@ public class LogResource {
         return builder.build();
     }
 
+    @LimitUserRequest(count=120, per=1000 * 60, keys={LimitKey.FORWARDED_IP, LimitKey.PATH_GROUP})
     @POST
     @Path("ui")
     @Consumes(MediaType.APPLICATION_JSON)
@@ -133,10 +209,36 @@ public class LogResource {
             event.userId = jwt.getSubject();
         }
 
-        this.datastore.save(event);
+        this.logService.save(event);
         return Response.ok().build();
     }
 
+    @LimitUserRequest(count=30, per=1000 * 60, keys={LimitKey.FORWARDED_IP, LimitKey.PATH_GROUP})
+    @POST
+    @Path("ui/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response createUserInterfaceEvents(
+        @HeaderParam("User-Agent") String agent,
+        @Context HttpServletRequest request,
+        @Context DecodedJWT jwt,
+        InputStream stream
+    ) {
+        return this.saveUserInterfaceEvents(this.readUserInterfaceEvents(stream), agent, request, jwt);
+    }
+
+    @LimitUserRequest(count=30, per=1000 * 60, keys={LimitKey.FORWARDED_IP, LimitKey.PATH_GROUP})
+    @POST
+    @Path("ui/batch")
+    @Consumes(LogResource.NDJSON)
+    public Response createUserInterfaceEventStream(
+        @HeaderParam("User-Agent") String agent,
+        @Context HttpServletRequest request,
+        @Context DecodedJWT jwt,
+        InputStream stream
+    ) {
+        return this.saveUserInterfaceEvents(this.readUserInterfaceEvents(stream), agent, request, jwt);
+    }
+
     @GZip
     @GET
     @Path("ui")
@@ -162,45 +264,83 @@ public class LogResource {
         );
 
         if (hasPermission) {
-            Query<UserInterfaceEvent> query = this.datastore.createQuery(UserInterfaceEvent.class);
+            Paging<UserInterfaceEvent> entity = this.partitionService.search(
+                UserInterfaceEvent.class,
+                timeCreatedGreaterThan == null ? null : new Date(timeCreatedGreaterThan),
+                timeCreatedLessThan == null ? null : new Date(timeCreatedLessThan),
+                !"timeCreated".equals(order),
+                offset != null && offset > -1 ? offset : 0,
+                ApplicationService.LIMIT_DEFAULT,
+                query -> {
+                    if (userId != null) {
+                        query.field("userId").equal(userId);
+                    }
+
+                    if (event != null) {
+                        query.field("event").equal(event);
+                    }
+
+                    if (ip != null) {
+                        query.field("ip").equal(ip);
+                    }
+                }
+            );
 
-            if (userId != null) {
-                query.field("userId").equal(userId);
-            }
+            builder = Response.ok(entity).type(MediaType.APPLICATION_JSON);
+        } else {
+            builder = Response.status(Status.UNAUTHORIZED);
+        }
 
-            if (event != null) {
-                query.field("event").equal(event);
-            }
+        return builder.build();
+    }
 
-            if (ip != null) {
-                query.field("ip").equal(ip);
+    /*
+     * A JSON array and newline delimited JSON are both read one event at a time, reading stops
+     * one event past BATCH_LIMIT so an oversized body is never held in memory. null is returned
+     * for a body which cannot be parsed
+     */
+    private List<UserInterfaceEvent> readUserInterfaceEvents(InputStream stream) {
+        List<UserInterfaceEvent> events = new ArrayList<>();
+
+        try (MappingIterator<UserInterfaceEvent> iterator = this.mapper.readerFor(UserInterfaceEvent.class).readValues(stream)) {
+            while (iterator.hasNext() && events.size() <= LogResource.BATCH_LIMIT) {
+                events.add(iterator.next());
             }
+        } catch (IOException | RuntimeException e) {
+            events = null;
+        }
 
-            if (timeCreatedGreaterThan != null) {
-                query.field("timeCreated").greaterThan(new Date(timeCreatedGreaterThan));
-            }
+        return events;
+    }
 
-            if (timeCreatedLessThan != null) {
-                query.field("timeCreated").lessThan(new Date(timeCreatedLessThan));
-            }
+    private Response saveUserInterfaceEvents(
+        List<UserInterfaceEvent> events,
+        String agent,
+        HttpServletRequest request,
+        DecodedJWT jwt
+    ) {
+        boolean valid = events != null &&
+            events.size() <= LogResource.BATCH_LIMIT &&
+            events.stream().allMatch(event -> event != null && ValidationService.isValid(event));
 
-            if (order != null) {
-                query.order(order);
-            }
+        if (!valid) {
+            return Response.status(Status.BAD_REQUEST).build();
+        }
 
-            FindOptions options = new FindOptions();
-            options.limit(ApplicationService.LIMIT_DEFAULT);
+        String ip = request.getRemoteAddr();
+        String userId = jwt == null ? null : jwt.getSubject();
+        Date timeCreated = new Date();
 
-            if (offset != null && offset > -1) {
-                options.skip(offset);
-            }
+        for (UserInterfaceEvent event: events) {
+            event.id = null;
+            event.agent = agent;
+            event.ip = ip;
+            event.userId = userId;
+            event.timeCreated = timeCreated;
 
-            Paging<UserInterfaceEvent> entity = new Paging<>(query.asList(options), query.count());
-            builder = Response.ok(entity).type(MediaType.APPLICATION_JSON);
-        } else {
-            builder = Response.status(Status.UNAUTHORIZED);
+            this.logService.save(event);
         }
 
-        return builder.build();
+        return Response.ok().build();
     }
-}
\ No newline at end of file
+}
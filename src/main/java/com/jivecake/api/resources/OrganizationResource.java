@@ -10,6 +10,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
@@ -76,6 +77,8 @@ import com.jivecake.api.service.EntityService;
 import com.jivecake.api.service.EventService;
 import com.jivecake.api.service.NotificationService;
 import com.jivecake.api.service.OrganizationService;
+import com.jivecake.api.service.QueryExecutorService;
+import com.jivecake.api.service.QueryExecutorService.QueryGroup;
 import com.jivecake.api.service.StripeService;
 import com.stripe.exception.StripeException;
 import com.stripe.model.Account;
@@ -92,6 +95,7 @@ public class OrganizationResource {
     private final StripeService stripeService;
     private final NotificationService notificationService;
     private final EntityService entityService;
+    private final QueryExecutorService queryExecutorService;
     private final Datastore datastore;
     private final long maximumOrganizationsPerUser = 10;
 
@@ -104,6 +108,7 @@ public class OrganizationResource {
         StripeService stripeService,
         NotificationService notificationService,
         EntityService entityService,
+        QueryExecutorService queryExecutorService,
         Datastore datastore
     ) {
         this.auth0Service = auth0Service;
@@ -113,6 +118,7 @@ public class OrganizationResource {
         this.stripeService = stripeService;
         this.notificationService = notificationService;
         this.entityService = entityService;
+        this.queryExecutorService = queryExecutorService;
         this.datastore = datastore;
     }
 
@@ -129,58 +135,77 @@ public class OrganizationResource {
         calendar.add(Calendar.YEAR, -1);
         Date oneYearPrevious = calendar.getTime();
 
-        List<PaymentProfile> profiles = this.datastore.createQuery(PaymentProfile.class)
-            .field("organizationId").equal(organization.id)
-            .asList();
-
-        List<EntityAsset> assets = this.datastore.createQuery(EntityAsset.class)
-            .field("entityId").equal(organization.id.toString())
-            .field("entityType").equal(EntityType.ORGANIZATION)
-            .field("assetType").in(
-                Arrays.asList(
-                    AssetType.ORGANIZATION_CONSENT_TEXT,
-                    AssetType.GOOGLE_CLOUD_STORAGE_CONSENT_PDF
-                )
-             )
-            .asList();
-
-        List<Event> events = this.datastore.createQuery(Event.class)
-            .field("organizationId").equal(organization.id)
-            .field("lastActivity").greaterThan(oneYearPrevious)
-            .asList();
-
-        List<Item> items = this.datastore.createQuery(Item.class)
-            .field("organizationId").equal(organization.id)
-            .field("lastActivity").greaterThan(oneYearPrevious)
-            .asList();
-
-        List<Transaction> transactions = this.datastore.createQuery(Transaction.class)
-            .field("organizationId").equal(organization.id)
-            .field("timeCreated").greaterThan(oneYearPrevious)
-            .asList();
-
-        List<String> userIds = transactions.stream()
-            .filter(transaction -> transaction.user_id != null)
-            .map(transaction -> transaction.user_id)
-            .distinct()
-            .collect(Collectors.toList());
-
-        List<com.auth0.json.mgmt.users.User> users = this.auth0Service.getUsers(userIds);
+        Map<String, Object> entity = new HashMap<>();
 
-        List<EntityAsset> transactionUserAssets = this.datastore.createQuery(EntityAsset.class)
-            .field("entityId").in(userIds)
-            .field("entityType").equal(EntityType.USER)
-            .asList();
+        /*
+         * The tree reads a year of transactions and asks Auth0 for their users, so it does not
+         * share the query timeout. Its own deadline is none by default, as it was before
+         */
+        try (QueryGroup group = this.queryExecutorService.group("organizationTree", this.configuration.query.organizationTreeTimeout)) {
+            Future<List<PaymentProfile>> profiles = group.submit("paymentProfile", () ->
+                this.datastore.createQuery(PaymentProfile.class)
+                    .field("organizationId").equal(organization.id)
+                    .asList()
+            );
+
+            Future<List<EntityAsset>> assets = group.submit("organizationAsset", () ->
+                this.datastore.createQuery(EntityAsset.class)
+                    .field("entityId").equal(organization.id.toString())
+                    .field("entityType").equal(EntityType.ORGANIZATION)
+                    .field("assetType").in(
+                        Arrays.asList(
+                            AssetType.ORGANIZATION_CONSENT_TEXT,
+                            AssetType.GOOGLE_CLOUD_STORAGE_CONSENT_PDF
+                        )
+                     )
+                    .asList()
+            );
+
+            Future<List<Event>> events = group.submit("event", () ->
+                this.datastore.createQuery(Event.class)
+                    .field("organizationId").equal(organization.id)
+                    .field("lastActivity").greaterThan(oneYearPrevious)
+                    .asList()
+            );
 
-        Map<String, Object> entity = new HashMap<>();
-        entity.put("organization", organization);
-        entity.put("event", events);
-        entity.put("item", items);
-        entity.put("transaction", transactions);
-        entity.put("paymentProfile", profiles);
-        entity.put("organizationAsset", assets);
-        entity.put("transactionUser", users);
-        entity.put("transactionUserAsset", transactionUserAssets);
+            Future<List<Item>> items = group.submit("item", () ->
+                this.datastore.createQuery(Item.class)
+                    .field("organizationId").equal(organization.id)
+                    .field("lastActivity").greaterThan(oneYearPrevious)
+                    .asList()
+            );
+
+            List<Transaction> transactions = this.datastore.createQuery(Transaction.class)
+                .field("organizationId").equal(organization.id)
+                .field("timeCreated").greaterThan(oneYearPrevious)
+                .asList();
+
+            List<String> userIds = transactions.stream()
+                .filter(transaction -> transaction.user_id != null)
+                .map(transaction -> transaction.user_id)
+                .distinct()
+                .collect(Collectors.toList());
+
+            Future<List<com.auth0.json.mgmt.users.User>> users = group.submit("transactionUser", () ->
+                this.auth0Service.getUsers(userIds)
+            );
+
+            Future<List<EntityAsset>> transactionUserAssets = group.submit("transactionUserAsset", () ->
+                this.datastore.createQuery(EntityAsset.class)
+                    .field("entityId").in(userIds)
+                    .field("entityType").equal(EntityType.USER)
+                    .asList()
+            );
+
+            entity.put("organization", organization);
+            entity.put("event", group.get(events));
+            entity.put("item", group.get(items));
+            entity.put("transaction", transactions);
+            entity.put("paymentProfile", group.get(profiles));
+            entity.put("organizationAsset", group.get(assets));
+            entity.put("transactionUser", group.get(users));
+            entity.put("transactionUserAsset", group.get(transactionUserAssets));
+        }
 
         return Response.ok(entity, MediaType.APPLICATION_JSON).build();
     }
@@ -538,7 +563,6 @@ public class OrganizationResource {
             Date currentTime = new Date();
 
             event.id = null;
-            event.userData = new ArrayList<>();
             event.hash = this.eventService.getHash();
             event.organizationId = organization.id;
             event.timeUpdated = currentTime;
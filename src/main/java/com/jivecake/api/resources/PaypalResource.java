@@ -11,11 +11,13 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
@@ -43,22 +45,31 @@ import com.jivecake.api.APIConfiguration;
 import com.jivecake.api.filter.Authorized;
 import com.jivecake.api.filter.CORS;
 import com.jivecake.api.filter.HasPermission;
+import com.jivecake.api.filter.LimitKey;
+import com.jivecake.api.filter.LimitUserRequest;
 import com.jivecake.api.filter.Log;
 import com.jivecake.api.filter.PathObject;
 import com.jivecake.api.filter.ValidEntity;
 import com.jivecake.api.model.Event;
+import com.jivecake.api.model.InventoryHold;
 import com.jivecake.api.model.Item;
 import com.jivecake.api.model.PaypalPaymentProfile;
 import com.jivecake.api.model.Transaction;
+import com.jivecake.api.model.UserData;
 import com.jivecake.api.request.AggregatedEvent;
 import com.jivecake.api.request.EntityQuantity;
 import com.jivecake.api.request.ErrorData;
+import com.jivecake.api.request.ItemCount;
 import com.jivecake.api.request.ItemData;
 import com.jivecake.api.request.OrderData;
 import com.jivecake.api.request.PaypalAuthorizationPayload;
 import com.jivecake.api.service.Auth0Service;
+import com.jivecake.api.service.ClientAddressService;
+import com.jivecake.api.service.EntityCacheService;
 import com.jivecake.api.service.EntityService;
 import com.jivecake.api.service.EventService;
+import com.jivecake.api.service.InventoryHoldService;
+import com.jivecake.api.service.ItemInventoryService;
 import com.jivecake.api.service.MandrillService;
 import com.jivecake.api.service.NotificationService;
 import com.jivecake.api.service.TransactionService;
@@ -91,10 +102,14 @@ public class PaypalResource {
     private final MandrillService mandrillService;
     private final EventService eventService;
     private final EntityService entityService;
+    private final EntityCacheService entityCacheService;
+    private final InventoryHoldService inventoryHoldService;
+    private final ItemInventoryService itemInventoryService;
     private final NotificationService notificationService;
     private final TransactionService transactionService;
     private final APIConfiguration configuration;
     private final Auth0Service auth0Service;
+    private final ClientAddressService clientAddressService;
     private final APIContext context;
     private final ObjectMapper mapper = new ObjectMapper();
 
@@ -105,20 +120,28 @@ public class PaypalResource {
         MandrillService mandrillService,
         EventService eventService,
         EntityService entityService,
+        EntityCacheService entityCacheService,
+        InventoryHoldService inventoryHoldService,
+        ItemInventoryService itemInventoryService,
         NotificationService notificationService,
         TransactionService transactionService,
         APIConfiguration configuration,
-        Auth0Service auth0Service
+        Auth0Service auth0Service,
+        ClientAddressService clientAddressService
     ) {
         this.sentry = sentry;
         this.datastore = datastore;
         this.mandrillService = mandrillService;
         this.eventService = eventService;
         this.entityService = entityService;
+        this.entityCacheService = entityCacheService;
+        this.inventoryHoldService = inventoryHoldService;
+        this.itemInventoryService = itemInventoryService;
         this.notificationService = notificationService;
         this.transactionService = transactionService;
         this.configuration = configuration;
         this.auth0Service = auth0Service;
+        this.clientAddressService = clientAddressService;
 
         this.context = new APIContext(
             this.configuration.paypal.clientId,
@@ -190,9 +213,14 @@ public class PaypalResource {
                             refundTransaction.status = TransactionService.REFUNDED;
                             refundTransaction.timeCreated = new Date();
 
+                            Transaction previousTransaction = new Transaction(transaction);
                             transaction.leaf = false;
 
                             this.datastore.save(Arrays.asList(transaction, refundTransaction));
+                            this.itemInventoryService.update(
+                                Arrays.asList(previousTransaction),
+                                Arrays.asList(transaction, refundTransaction)
+                            );
 
                             this.notificationService.notify(Arrays.asList(transaction), "transaction.update");
                             this.notificationService.notify(Arrays.asList(refundTransaction), "transaction.create");
@@ -270,7 +298,7 @@ public class PaypalResource {
                     .get();
 
                 for (com.paypal.api.payments.Item paypalItem: items) {
-                    Item item = this.datastore.get(Item.class, new ObjectId(paypalItem.getSku()));
+                    Item item = this.entityCacheService.get(Item.class, new ObjectId(paypalItem.getSku()));
 
                     Transaction transaction = new Transaction();
                     transaction.itemId = item.id;
@@ -317,6 +345,8 @@ public class PaypalResource {
                 }
 
                 this.datastore.save(transactions);
+                this.itemInventoryService.add(transactions);
+                this.inventoryHoldService.confirm(payment.getId());
                 this.notificationService.notify(new ArrayList<>(transactions), "transaction.create");
                 this.entityService.cascadeLastActivity(new ArrayList<>(transactions), date);
 
@@ -337,16 +367,17 @@ public class PaypalResource {
 
                     this.mandrillService.send(message);
                 } else {
-                    this.eventService.assignNumberToUserSafely(jwt.getSubject(), event).thenAcceptAsync((updatedEvent) -> {
-                        this.notificationService.notify(
-                            Arrays.asList(updatedEvent),
-                            "event.update"
-                        );
-                    });
+                    UserData userData = this.eventService.assignNumberToUser(jwt.getSubject(), event);
+                    this.notificationService.notify(
+                        Arrays.asList(userData),
+                        "userData.create"
+                    );
                 }
 
                 builder = Response.status(Status.CREATED);
             } else if ("failed".equals(complete.getState())) {
+                this.inventoryHoldService.release(payment.getId());
+
                 Map<String, Object> body = new HashMap<>();
                 body.put("failureReason", payment.getFailureReason());
 
@@ -379,10 +410,12 @@ public class PaypalResource {
     @POST
     @Path("{eventId}/order")
     @Consumes(MediaType.APPLICATION_JSON)
-    public synchronized Response order(
+    @LimitUserRequest(count=30, per=1000 * 60, keys={LimitKey.FORWARDED_IP, LimitKey.PATH_GROUP})
+    public Response order(
         @HeaderParam("Origin") String origin,
         @PathObject("eventId") Event event,
         @Context DecodedJWT jwt,
+        @Context HttpServletRequest request,
         @ValidEntity OrderData order
     ) throws Auth0Exception {
         ResponseBuilder builder;
@@ -395,7 +428,8 @@ public class PaypalResource {
             AggregatedEvent aggregated = this.eventService.getAggregatedaEventData(
                 event,
                 this.transactionService,
-                date
+                date,
+                false
             );
 
             ManagementAPI api = new ManagementAPI(
@@ -404,10 +438,21 @@ public class PaypalResource {
             );
 
             User user = jwt == null ? null : api.users().get(jwt.getSubject(), new UserFilter()).execute();
+            Set<ObjectId> eventItemIds = aggregated.itemData.stream()
+                .map(itemData -> itemData.item.id)
+                .collect(Collectors.toSet());
+            Map<ObjectId, ItemCount> itemToCount = this.itemInventoryService.getItemCounts(
+                order.order.stream()
+                    .map(entityQuantity -> entityQuantity.entity)
+                    .filter(eventItemIds::contains)
+                    .collect(Collectors.toSet()),
+                user == null ? null : user.getId()
+            );
             List<ErrorData> dataError = this.eventService.getErrorsFromOrderRequest(
                 order,
                 user,
-                aggregated
+                aggregated,
+                itemToCount
             );
 
             if (!(aggregated.profile instanceof PaypalPaymentProfile)) {
@@ -483,21 +528,55 @@ public class PaypalResource {
                 payment.setIntent("sale");
                 payment.setTransactions(transactions);
 
+                String client = jwt == null ? this.clientAddressService.getForwardedAddress(request) : jwt.getSubject();
+                boolean limited = !this.inventoryHoldService.claim(
+                    aggregated.event.id,
+                    client,
+                    this.configuration.hold.paypalTtl
+                );
+
+                InventoryHold hold = limited ? null : this.inventoryHoldService.hold(
+                    aggregated,
+                    order.order,
+                    this.configuration.hold.paypalTtl,
+                    client
+                );
+
                 PayPalRESTException exception = null;
                 Payment newPayment = null;
 
-                try {
-                    newPayment = payment.create(this.context);
-                } catch (PayPalRESTException e) {
-                    exception = e;
+                if (hold != null) {
+                    try {
+                        newPayment = payment.create(this.context);
+                    } catch (PayPalRESTException e) {
+                        exception = e;
+                    }
                 }
 
-                if (exception == null) {
+                if (limited) {
+                    ErrorData error = new ErrorData();
+                    error.error = "holdLimit";
+
+                    builder = Response.status(429)
+                        .entity(Arrays.asList(error))
+                        .type(MediaType.APPLICATION_JSON);
+                } else if (hold == null) {
+                    ErrorData error = new ErrorData();
+                    error.error = "totalAvailible";
+
+                    builder = Response.status(Status.BAD_REQUEST)
+                        .entity(Arrays.asList(error))
+                        .type(MediaType.APPLICATION_JSON);
+                } else if (exception == null) {
+                    this.inventoryHoldService.link(hold, newPayment.getId(), "PaypalPayment");
+
                     Map<String, Object> body = new HashMap<>();
                     body.put("id", newPayment.getId());
 
                     builder = Response.ok(body).type(MediaType.APPLICATION_JSON);
                 } else {
+                    this.inventoryHoldService.release(hold);
+
                     EventBuilder eventBuilder = new EventBuilder()
                         .withEnvironment(this.sentry.getEnvironment())
                         .withMessage(exception.getMessage())
@@ -608,11 +687,16 @@ public class PaypalResource {
                             .field("linkedId").equal(linkedId)
                             .asList();
 
+                        List<Transaction> previousTransactions = transactions.stream()
+                            .map(Transaction::new)
+                            .collect(Collectors.toList());
+
                         for (Transaction transaction: transactions) {
                             transaction.status = TransactionService.SETTLED;
                         }
 
                         this.datastore.save(transactions);
+                        this.itemInventoryService.update(previousTransactions, transactions);
                         this.notificationService.notify(new ArrayList<>(transactions), "transaction.update");
                         this.entityService.cascadeLastActivity(new ArrayList<>(transactions), new Date());
                     } else if (isDeniedSale) {
@@ -627,6 +711,8 @@ public class PaypalResource {
                             this.datastore.delete(transaction);
                         }
 
+                        this.itemInventoryService.remove(transactions);
+
                         this.notificationService.notify(new ArrayList<>(transactions), "transaction.delete");
                         this.entityService.cascadeLastActivity(new ArrayList<>(transactions), new Date());
                     }
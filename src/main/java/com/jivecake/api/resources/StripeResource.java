@@ -6,7 +6,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -43,23 +43,29 @@ import com.jivecake.api.filter.Log;
 import com.jivecake.api.filter.PathObject;
 import com.jivecake.api.filter.ValidEntity;
 import com.jivecake.api.model.Event;
+import com.jivecake.api.model.InventoryHold;
 import com.jivecake.api.model.Item;
 import com.jivecake.api.model.Organization;
 import com.jivecake.api.model.StripePaymentProfile;
 import com.jivecake.api.model.Transaction;
+import com.jivecake.api.model.UserData;
 import com.jivecake.api.request.AggregatedEvent;
 import com.jivecake.api.request.EntityQuantity;
 import com.jivecake.api.request.ErrorData;
+import com.jivecake.api.request.ItemCount;
 import com.jivecake.api.request.ItemData;
 import com.jivecake.api.request.StripeOrderPayload;
 import com.jivecake.api.service.Auth0Service;
 import com.jivecake.api.service.EntityService;
 import com.jivecake.api.service.EventService;
+import com.jivecake.api.service.InventoryHoldService;
+import com.jivecake.api.service.ItemInventoryService;
 import com.jivecake.api.service.MandrillService;
 import com.jivecake.api.service.NotificationService;
 import com.jivecake.api.service.PermissionService;
 import com.jivecake.api.service.StripeService;
 import com.jivecake.api.service.TransactionService;
+import com.mongodb.MongoException;
 import com.stripe.exception.SignatureVerificationException;
 import com.stripe.exception.StripeException;
 import com.stripe.model.Charge;
@@ -87,8 +93,10 @@ public class StripeResource {
     private final PermissionService permissionService;
     private final Datastore datastore;
     private final EventService eventService;
+    private final InventoryHoldService inventoryHoldService;
     private final NotificationService notificationService;
     private final EntityService entityService;
+    private final ItemInventoryService itemInventoryService;
 
     @Inject
     public StripeResource(
@@ -101,7 +109,9 @@ public class StripeResource {
         PermissionService permissionService,
         EntityService entityService,
         EventService eventService,
+        InventoryHoldService inventoryHoldService,
         NotificationService notificationService,
+        ItemInventoryService itemInventoryService,
         Datastore datastore
     ) {
         this.sentry = sentry;
@@ -113,7 +123,9 @@ public class StripeResource {
         this.permissionService = permissionService;
         this.entityService = entityService;
         this.eventService = eventService;
+        this.inventoryHoldService = inventoryHoldService;
         this.notificationService = notificationService;
+        this.itemInventoryService = itemInventoryService;
         this.datastore = datastore;
     }
 
@@ -170,9 +182,15 @@ public class StripeResource {
                 refundTransaction.status = TransactionService.REFUNDED;
                 refundTransaction.paymentStatus = TransactionService.PAYMENT_EQUAL;
                 refundTransaction.timeCreated = new Date();
+
+                Transaction previousTransaction = new Transaction(transaction);
                 transaction.leaf = false;
 
                 this.datastore.save(Arrays.asList(transaction, refundTransaction));
+                this.itemInventoryService.update(
+                    Arrays.asList(previousTransaction),
+                    Arrays.asList(transaction, refundTransaction)
+                );
 
                 this.notificationService.notify(Arrays.asList(transaction), "transaction.update");
                 this.notificationService.notify(Arrays.asList(refundTransaction), "transaction.create");
@@ -202,7 +220,7 @@ public class StripeResource {
     @POST
     @Path("{eventId}/order")
     @Consumes(MediaType.APPLICATION_JSON)
-    public synchronized Response order(
+    public Response order(
         @PathObject("eventId") Event event,
         @ValidEntity StripeOrderPayload payload,
         @Context DecodedJWT jwt
@@ -217,7 +235,8 @@ public class StripeResource {
             AggregatedEvent aggregated = this.eventService.getAggregatedaEventData(
                 event,
                 this.transactionService,
-                date
+                date,
+                false
             );
 
             ManagementAPI api = new ManagementAPI(
@@ -226,17 +245,7 @@ public class StripeResource {
             );
 
             User user = jwt == null ? null : api.users().get(jwt.getSubject(), new UserFilter()).execute();
-            List<ErrorData> dataError = this.eventService.getErrorsFromOrderRequest(
-                payload.data,
-                user,
-                aggregated
-            );
-
-            if (!(aggregated.profile instanceof StripePaymentProfile)) {
-                ErrorData error = new ErrorData();
-                error.error = "profile";
-                dataError.add(error);
-            }
+            List<ErrorData> dataError = this.getOrderErrors(payload, user, aggregated);
 
             if (dataError.isEmpty()) {
                 Map<ObjectId, ItemData> itemIdToItemData = aggregated.itemData.stream()
@@ -265,113 +274,130 @@ public class StripeResource {
                 }
 
                 if (tokenException == null) {
-                    Map<String, Object> params = new HashMap<>();
-                    params.put("amount", amount);
-                    params.put("currency", event.currency);
-                    params.put("description", event.name + " / JiveCake");
-                    params.put("source", token.getId());
-
-                    StripeException exception = null;
-                    Charge charge;
-
-                    try {
-                        charge = Charge.create(params, this.stripeService.getRequestOptions());
-                    } catch (StripeException e) {
-                        exception = e;
-                        charge = null;
-                    }
+                    InventoryHold hold = this.inventoryHoldService.hold(
+                        aggregated,
+                        payload.data.order,
+                        this.apiConfiguration.hold.stripeTtl
+                    );
 
-                    if (exception == null) {
-                        List<Transaction> completedTransactions = new ArrayList<>();
-
-                        for (EntityQuantity<ObjectId> entityQuantity: payload.data.order) {
-                            ItemData itemData = itemIdToItemData.get(entityQuantity.entity);
-
-                            Transaction transaction = new Transaction();
-                            transaction.organizationId = itemData.item.organizationId;
-                            transaction.eventId = itemData.item.eventId;
-                            transaction.itemId = itemData.item.id;
-                            transaction.quantity = entityQuantity.quantity;
-                            transaction.amount = itemData.amount * transaction.quantity;
-                            transaction.status = TransactionService.SETTLED;
-                            transaction.paymentStatus = TransactionService.PAYMENT_EQUAL;
-                            transaction.linkedId = charge.getId();
-                            transaction.organizationName = payload.data.organizationName;
-                            transaction.linkedObjectClass = "StripeCharge";
-                            transaction.currency = charge.getCurrency().toUpperCase();
-                            transaction.leaf = true;
-                            transaction.timeCreated = date;
+                    if (hold == null) {
+                        ErrorData error = new ErrorData();
+                        error.error = "totalAvailible";
 
-                            if (user == null) {
-                                transaction.email = token.getEmail();
-                                transaction.given_name = payload.data.firstName;
-                                transaction.family_name = payload.data.lastName;
-                            } else {
-                                transaction.user_id = user.getId();
-                            }
-
-                            completedTransactions.add(transaction);
+                        builder = Response.status(Status.BAD_REQUEST)
+                            .entity(Arrays.asList(error))
+                            .type(MediaType.APPLICATION_JSON);
+                    } else {
+                        Map<String, Object> params = new HashMap<>();
+                        params.put("amount", amount);
+                        params.put("currency", event.currency);
+                        params.put("description", event.name + " / JiveCake");
+                        params.put("source", token.getId());
+
+                        StripeException exception = null;
+                        Charge charge;
+
+                        try {
+                            charge = Charge.create(params, this.stripeService.getRequestOptions());
+                        } catch (StripeException e) {
+                            exception = e;
+                            charge = null;
                         }
 
-                        this.datastore.save(completedTransactions);
-                        this.entityService.cascadeLastActivity(completedTransactions, date);
-                        this.notificationService.notify(
-                            new ArrayList<>(completedTransactions),
-                            "transaction.create"
-                        );
-
-                        if (user == null) {
-                            List<Item> items = aggregated.itemData.stream()
-                                .map(data -> data.item)
-                                .collect(Collectors.toList());
-
-                            Map<String, Object> message = this.mandrillService.getTransactionConfirmation(
-                                token,
-                                event,
-                                items,
-                                completedTransactions
+                        if (exception == null) {
+                            List<Transaction> completedTransactions = new ArrayList<>();
+
+                            for (EntityQuantity<ObjectId> entityQuantity: payload.data.order) {
+                                ItemData itemData = itemIdToItemData.get(entityQuantity.entity);
+
+                                Transaction transaction = new Transaction();
+                                transaction.organizationId = itemData.item.organizationId;
+                                transaction.eventId = itemData.item.eventId;
+                                transaction.itemId = itemData.item.id;
+                                transaction.quantity = entityQuantity.quantity;
+                                transaction.amount = itemData.amount * transaction.quantity;
+                                transaction.status = TransactionService.SETTLED;
+                                transaction.paymentStatus = TransactionService.PAYMENT_EQUAL;
+                                transaction.linkedId = charge.getId();
+                                transaction.organizationName = payload.data.organizationName;
+                                transaction.linkedObjectClass = "StripeCharge";
+                                transaction.currency = charge.getCurrency().toUpperCase();
+                                transaction.leaf = true;
+                                transaction.timeCreated = date;
+
+                                if (user == null) {
+                                    transaction.email = token.getEmail();
+                                    transaction.given_name = payload.data.firstName;
+                                    transaction.family_name = payload.data.lastName;
+                                } else {
+                                    transaction.user_id = user.getId();
+                                }
+
+                                completedTransactions.add(transaction);
+                            }
+
+                            this.datastore.save(completedTransactions);
+                            this.itemInventoryService.add(completedTransactions);
+                            this.inventoryHoldService.confirm(hold);
+                            this.entityService.cascadeLastActivity(completedTransactions, date);
+                            this.notificationService.notify(
+                                new ArrayList<>(completedTransactions),
+                                "transaction.create"
                             );
 
-                            this.mandrillService.send(message);
-                        } else {
-                            try {
-                                Event updatedEvent = this.eventService
-                                    .assignNumberToUserSafely(user == null ? null : user.getId(), event)
-                                    .get();
-                                this.notificationService.notify(
-                                    Arrays.asList(updatedEvent),
-                                    "event.update"
+                            if (user == null) {
+                                List<Item> items = aggregated.itemData.stream()
+                                    .map(data -> data.item)
+                                    .collect(Collectors.toList());
+
+                                Map<String, Object> message = this.mandrillService.getTransactionConfirmation(
+                                    token,
+                                    event,
+                                    items,
+                                    completedTransactions
                                 );
-                            } catch (InterruptedException | ExecutionException e) {
-                                EventBuilder eventBuilder = new EventBuilder()
-                                    .withEnvironment(this.sentry.getEnvironment())
-                                    .withMessage(e.getMessage())
-                                    .withLevel(io.sentry.event.Event.Level.ERROR)
-                                    .withSentryInterface(new ExceptionInterface(e));
-
-                                if (jwt.getSubject() != null) {
-                                    eventBuilder.withExtra("sub", jwt.getSubject());
-                                }
 
-                                this.sentry.sendEvent(eventBuilder.build());
+                                this.mandrillService.send(message);
+                            } else {
+                                try {
+                                    UserData userData = this.eventService.assignNumberToUser(user.getId(), event);
+                                    this.notificationService.notify(
+                                        Arrays.asList(userData),
+                                        "userData.create"
+                                    );
+                                } catch (MongoException e) {
+                                    EventBuilder eventBuilder = new EventBuilder()
+                                        .withEnvironment(this.sentry.getEnvironment())
+                                        .withMessage(e.getMessage())
+                                        .withLevel(io.sentry.event.Event.Level.ERROR)
+                                        .withSentryInterface(new ExceptionInterface(e));
+
+                                    if (jwt.getSubject() != null) {
+                                        eventBuilder.withExtra("sub", jwt.getSubject());
+                                    }
+
+                                    this.sentry.sendEvent(eventBuilder.build());
 
+                                }
                             }
-                        }
 
-                        builder = Response.ok();
-                    } else {
-                        EventBuilder eventBuilder = new EventBuilder()
-                            .withEnvironment(this.sentry.getEnvironment())
-                            .withMessage(exception.getMessage())
-                            .withLevel(io.sentry.event.Event.Level.WARNING)
-                            .withSentryInterface(new ExceptionInterface(exception));
+                            builder = Response.ok();
+                        } else {
+                            this.inventoryHoldService.release(hold);
 
-                        if (jwt != null) {
-                            eventBuilder.withExtra("sub", jwt.getSubject());
-                        }
+                            EventBuilder eventBuilder = new EventBuilder()
+                                .withEnvironment(this.sentry.getEnvironment())
+                                .withMessage(exception.getMessage())
+                                .withLevel(io.sentry.event.Event.Level.WARNING)
+                                .withSentryInterface(new ExceptionInterface(exception));
+
+                            if (jwt != null) {
+                                eventBuilder.withExtra("sub", jwt.getSubject());
+                            }
 
-                        this.sentry.sendEvent(eventBuilder.build());
-                        builder = Response.status(Status.SERVICE_UNAVAILABLE);
+                            this.sentry.sendEvent(eventBuilder.build());
+                            builder = Response.status(Status.SERVICE_UNAVAILABLE);
+                        }
                     }
                 } else {
                     EventBuilder eventBuilder = new EventBuilder()
@@ -397,6 +423,33 @@ public class StripeResource {
         return builder.build();
     }
 
+    private List<ErrorData> getOrderErrors(StripeOrderPayload payload, User user, AggregatedEvent aggregated) {
+        Set<ObjectId> eventItemIds = aggregated.itemData.stream()
+            .map(itemData -> itemData.item.id)
+            .collect(Collectors.toSet());
+        Map<ObjectId, ItemCount> itemToCount = this.itemInventoryService.getItemCounts(
+            payload.data.order.stream()
+                .map(entityQuantity -> entityQuantity.entity)
+                .filter(eventItemIds::contains)
+                .collect(Collectors.toSet()),
+            user == null ? null : user.getId()
+        );
+        List<ErrorData> dataError = this.eventService.getErrorsFromOrderRequest(
+            payload.data,
+            user,
+            aggregated,
+            itemToCount
+        );
+
+        if (!(aggregated.profile instanceof StripePaymentProfile)) {
+            ErrorData error = new ErrorData();
+            error.error = "profile";
+            dataError.add(error);
+        }
+
+        return dataError;
+    }
+
     @DELETE
     @Path("subscriptions/{subscriptionId}")
     @Authorized
@@ -36,6 +36,8 @@ import com.jivecake.api.filter.Authorized;
 import com.jivecake.api.filter.CORS;
 import com.jivecake.api.filter.GZip;
 import com.jivecake.api.filter.HasPermission;
+import com.jivecake.api.filter.LimitKey;
+import com.jivecake.api.filter.LimitUserRequest;
 import com.jivecake.api.filter.PathObject;
 import com.jivecake.api.filter.QueryRestrict;
 import com.jivecake.api.model.EntityAsset;
@@ -48,6 +50,7 @@ import com.jivecake.api.request.ErrorData;
 import com.jivecake.api.request.Paging;
 import com.jivecake.api.service.Auth0Service;
 import com.jivecake.api.service.EntityService;
+import com.jivecake.api.service.ItemInventoryService;
 import com.jivecake.api.service.NotificationService;
 import com.jivecake.api.service.PermissionService;
 import com.jivecake.api.service.TransactionService;
@@ -62,6 +65,7 @@ public class TransactionResource {
     private final PermissionService permissionService;
     private final EntityService entityService;
     private final Auth0Service auth0Service;
+    private final ItemInventoryService itemInventoryService;
     private final Datastore datastore;
 
     @Inject
@@ -72,6 +76,7 @@ public class TransactionResource {
         PermissionService permissionService,
         EntityService entityService,
         Auth0Service auth0Service,
+        ItemInventoryService itemInventoryService,
         Datastore datastore
     ) {
         this.apiConfiguration = apiConfiguration;
@@ -80,6 +85,7 @@ public class TransactionResource {
         this.permissionService = permissionService;
         this.entityService = entityService;
         this.auth0Service = auth0Service;
+        this.itemInventoryService = itemInventoryService;
         this.datastore = datastore;
     }
 
@@ -162,6 +168,7 @@ public class TransactionResource {
         return builder.build();
     }
 
+    @LimitUserRequest(count=60, per=1000 * 60, keys={LimitKey.FORWARDED_IP, LimitKey.PATH_GROUP})
     @GET
     @Path("search")
     @QueryRestrict(hasAny=true, target={"eventId", "itemId"})
@@ -372,11 +379,16 @@ public class TransactionResource {
                 revokedTransaction.leaf = true;
                 revokedTransaction.timeCreated = currentTime;
 
+                Transaction previousTransaction = new Transaction(transaction);
                 transaction.leaf = false;
 
                 Iterable<Key<Transaction>> keys = this.datastore.save(
                     Arrays.asList(revokedTransaction, transaction)
                 );
+                this.itemInventoryService.update(
+                    Arrays.asList(previousTransaction),
+                    Arrays.asList(revokedTransaction, transaction)
+                );
                 List<Transaction> transactions = this.datastore.getByKeys(keys);
 
                 this.entityService.cascadeLastActivity(transactions, currentTime);
@@ -418,6 +430,7 @@ public class TransactionResource {
 
         if (canDelete) {
             this.datastore.delete(Transaction.class, transaction.id);
+            this.itemInventoryService.remove(Arrays.asList(transaction));
             this.notificationService.notify(Arrays.asList(transaction), "transaction.delete");
 
             Transaction parentTransaction = this.datastore.get(Transaction.class, transaction.parentTransactionId);
@@ -426,8 +439,13 @@ public class TransactionResource {
             transactions.add(transaction);
 
             if (parentTransaction != null) {
+                Transaction previousParentTransaction = new Transaction(parentTransaction);
                 parentTransaction.leaf = true;
                 this.datastore.save(parentTransaction);
+                this.itemInventoryService.update(
+                    Arrays.asList(previousParentTransaction),
+                    Arrays.asList(parentTransaction)
+                );
                 this.notificationService.notify(Arrays.asList(parentTransaction), "transaction.update");
 
                 transactions.add(parentTransaction);
@@ -2,8 +2,6 @@ package com.jivecake.api.resources;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.security.NoSuchAlgorithmException;
-import java.security.spec.InvalidKeySpecException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
@@ -240,7 +238,7 @@ public class UserResource {
     public Response getToken(
         @PathParam("userId") String userId,
         @Context DecodedJWT jwt
-    ) throws NoSuchAlgorithmException, InvalidKeySpecException, IOException {
+    ) throws IOException {
         Application application = this.applicationService.read();
 
         boolean hasPermission = this.permissionService.hasWrite(
@@ -0,0 +1,441 @@
+package com.jivecake.api.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+import javax.ws.rs.core.EntityTag;
+
+import org.bson.types.ObjectId;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.jivecake.api.APIConfiguration;
+import com.jivecake.api.model.EntityAsset;
+import com.jivecake.api.model.Event;
+import com.jivecake.api.model.Item;
+import com.jivecake.api.model.ItemTimeAmount;
+import com.jivecake.api.model.Organization;
+import com.jivecake.api.model.PaymentProfile;
+import com.jivecake.api.model.Transaction;
+import com.jivecake.api.request.AggregatedEvent;
+import com.jivecake.api.request.ItemData;
+
+public class AggregatedEventCacheService {
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final Map<ObjectId, CompletableFuture<Snapshot>> snapshots;
+    /* Versions only count on this instance, tags carry the instance so that two never match */
+    private final String instance = new ObjectId().toHexString();
+    private final AtomicLong versions = new AtomicLong();
+    private final EventService eventService;
+    private final TransactionService transactionService;
+    private final long ttl;
+    private final Meter hits;
+    private final Meter misses;
+    private final Meter updates;
+    private final Meter invalidations;
+    private final Meter evictions;
+
+    @Inject
+    public AggregatedEventCacheService(
+        EventService eventService,
+        TransactionService transactionService,
+        APIConfiguration configuration,
+        MetricRegistry metrics
+    ) {
+        this.eventService = eventService;
+        this.transactionService = transactionService;
+        this.ttl = configuration.cache.aggregatedTtl;
+        this.hits = metrics.meter(MetricRegistry.name(AggregatedEventCacheService.class, "hit"));
+        this.misses = metrics.meter(MetricRegistry.name(AggregatedEventCacheService.class, "miss"));
+        this.updates = metrics.meter(MetricRegistry.name(AggregatedEventCacheService.class, "update"));
+        this.invalidations = metrics.meter(MetricRegistry.name(AggregatedEventCacheService.class, "invalidation"));
+        this.evictions = metrics.meter(MetricRegistry.name(AggregatedEventCacheService.class, "eviction"));
+        metrics.register(MetricRegistry.name(AggregatedEventCacheService.class, "size"), (Gauge<Integer>) () -> this.size());
+
+        int maximumSize = configuration.cache.aggregatedSize;
+
+        /*
+         * Access ordered, every read or write goes through synchronized (this.snapshots). Loads
+         * run outside of the lock, waiting readers hold on to the future even if it is evicted
+         */
+        this.snapshots = new LinkedHashMap<ObjectId, CompletableFuture<Snapshot>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ObjectId, CompletableFuture<Snapshot>> eldest) {
+                boolean result = this.size() > maximumSize;
+
+                if (result) {
+                    AggregatedEventCacheService.this.evictions.mark();
+                }
+
+                return result;
+            }
+        };
+
+        this.executor.scheduleWithFixedDelay(() -> {
+            try {
+                this.evictExpired(System.currentTimeMillis());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, this.ttl, this.ttl, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * Concurrent requests for an event without a snapshot wait for a single load. A snapshot
+     * is replaced once its ttl or the next timeAmounts boundary of one of its items passes
+     */
+    public Snapshot get(Event event) {
+        while (true) {
+            long now = System.currentTimeMillis();
+            CompletableFuture<Snapshot> future;
+            CompletableFuture<Snapshot> created = null;
+
+            synchronized (this.snapshots) {
+                future = this.snapshots.get(event.id);
+
+                if (future == null) {
+                    created = new CompletableFuture<>();
+                    this.snapshots.put(event.id, created);
+                }
+            }
+
+            if (created != null) {
+                this.misses.mark();
+
+                try {
+                    Snapshot snapshot = this.load(event, now);
+                    created.complete(snapshot);
+                    return snapshot;
+                } catch (RuntimeException e) {
+                    synchronized (this.snapshots) {
+                        this.snapshots.remove(event.id, created);
+                    }
+
+                    created.completeExceptionally(e);
+                    throw e;
+                }
+            }
+
+            Snapshot snapshot = future.join();
+
+            if (now < snapshot.timeExpires) {
+                this.hits.mark();
+                return snapshot;
+            }
+
+            synchronized (this.snapshots) {
+                this.snapshots.remove(event.id, future);
+            }
+        }
+    }
+
+    /*
+     * Called for every entity passed to NotificationService. Transactions are applied to the
+     * snapshot of their event, other changes drop the snapshots they appear in
+     */
+    public void update(Object entity, String name) {
+        if (entity instanceof Transaction) {
+            Transaction transaction = (Transaction)entity;
+            boolean deleted = "transaction.delete".equals(name);
+
+            synchronized (this.snapshots) {
+                this.snapshots.computeIfPresent(transaction.eventId, (eventId, future) -> {
+                    Snapshot snapshot = future.getNow(null);
+                    Snapshot updated = snapshot == null ? null : snapshot.apply(
+                        transaction,
+                        deleted,
+                        this.versions.incrementAndGet()
+                    );
+
+                    if (updated == null) {
+                        this.invalidations.mark();
+                        return null;
+                    }
+
+                    this.updates.mark();
+                    return CompletableFuture.completedFuture(updated);
+                });
+            }
+        } else if (entity instanceof Item) {
+            this.invalidate(((Item)entity).eventId);
+        } else if (entity instanceof Event) {
+            this.invalidate(((Event)entity).id);
+        } else if (entity instanceof PaymentProfile) {
+            ObjectId id = ((PaymentProfile)entity).id;
+            this.invalidateIf(aggregated -> Objects.equals(aggregated.event.paymentProfileId, id));
+        } else if (entity instanceof Organization) {
+            ObjectId id = ((Organization)entity).id;
+            this.invalidateIf(aggregated -> Objects.equals(aggregated.event.organizationId, id));
+        } else if (entity instanceof EntityAsset) {
+            ObjectId id = ((EntityAsset)entity).id;
+            this.invalidateIf(aggregated -> Objects.equals(aggregated.event.entityAssetConsentId, id));
+        }
+    }
+
+    public void invalidate(ObjectId eventId) {
+        CompletableFuture<Snapshot> removed;
+
+        synchronized (this.snapshots) {
+            removed = eventId == null ? null : this.snapshots.remove(eventId);
+        }
+
+        if (removed != null) {
+            this.invalidations.mark();
+        }
+    }
+
+    public void clear() {
+        synchronized (this.snapshots) {
+            this.snapshots.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (this.snapshots) {
+            return this.snapshots.size();
+        }
+    }
+
+    /*
+     * Expired snapshots are otherwise only dropped when their event is read again
+     */
+    public void evictExpired(long now) {
+        synchronized (this.snapshots) {
+            this.snapshots.values().removeIf(future -> {
+                Snapshot snapshot = future.getNow(null);
+                return snapshot != null && now >= snapshot.timeExpires;
+            });
+        }
+    }
+
+    private void invalidateIf(Predicate<AggregatedEvent> predicate) {
+        synchronized (this.snapshots) {
+            this.snapshots.values().removeIf(future -> {
+                Snapshot snapshot = future.getNow(null);
+                boolean result = snapshot == null || predicate.test(snapshot.aggregated);
+
+                if (result) {
+                    this.invalidations.mark();
+                }
+
+                return result;
+            });
+        }
+    }
+
+    private Snapshot load(Event event, long now) {
+        AggregatedEvent aggregated = this.eventService.getAggregatedaEventData(
+            event,
+            this.transactionService,
+            new Date(now)
+        );
+
+        long timeExpires = now + this.ttl;
+
+        for (ItemData itemData: aggregated.itemData) {
+            if (itemData.item.timeAmounts != null) {
+                for (ItemTimeAmount timeAmount: itemData.item.timeAmounts) {
+                    if (timeAmount.after != null && timeAmount.after.getTime() >= now) {
+                        timeExpires = Math.min(timeExpires, timeAmount.after.getTime() + 1);
+                    }
+                }
+            }
+        }
+
+        return Snapshot.create(aggregated, this.instance, this.versions.incrementAndGet(), timeExpires);
+    }
+
+    /*
+     * The public form of an AggregatedEvent, inactive items are left out and transactions carry
+     * no names or user ids. Snapshots are never modified, a change produces a new one which
+     * shares every unchanged ItemData
+     */
+    public static class Snapshot {
+        public final long version;
+        private final String instance;
+        private final AggregatedEvent aggregated;
+        private final Map<ObjectId, String> transactionToUser;
+        private final long timeExpires;
+
+        private Snapshot(
+            AggregatedEvent aggregated,
+            Map<ObjectId, String> transactionToUser,
+            String instance,
+            long version,
+            long timeExpires
+        ) {
+            this.aggregated = aggregated;
+            this.transactionToUser = transactionToUser;
+            this.instance = instance;
+            this.version = version;
+            this.timeExpires = timeExpires;
+        }
+
+        private static Snapshot create(AggregatedEvent source, String instance, long version, long timeExpires) {
+            Map<ObjectId, String> transactionToUser = new HashMap<>();
+
+            List<ItemData> itemData = source.itemData.stream()
+                .filter(datum -> datum.item.status == ItemService.STATUS_ACTIVE)
+                .map(datum -> {
+                    ItemData result = new ItemData();
+                    result.item = datum.item;
+                    result.amount = datum.amount;
+                    result.transactions = new ArrayList<>();
+
+                    for (Transaction transaction: datum.transactions) {
+                        if (transaction.user_id != null) {
+                            transactionToUser.put(transaction.id, transaction.user_id);
+                        }
+
+                        result.transactions.add(Snapshot.getPublicTransaction(transaction));
+                    }
+
+                    return result;
+                })
+                .collect(Collectors.toList());
+
+            AggregatedEvent aggregated = Snapshot.copy(source, itemData, version);
+            return new Snapshot(aggregated, transactionToUser, instance, version, timeExpires);
+        }
+
+        /*
+         * Returns null if the transaction belongs to an item this snapshot does not know
+         */
+        private Snapshot apply(Transaction transaction, boolean deleted, long version) {
+            List<ItemData> itemData = new ArrayList<>(this.aggregated.itemData);
+            int index = -1;
+
+            for (int position = 0; position < itemData.size(); position++) {
+                if (itemData.get(position).item.id.equals(transaction.itemId)) {
+                    index = position;
+                }
+            }
+
+            if (index == -1) {
+                return null;
+            }
+
+            ItemData previous = itemData.get(index);
+
+            ItemData datum = new ItemData();
+            datum.item = previous.item;
+            datum.transactions = previous.transactions.stream()
+                .filter(subject -> !subject.id.equals(transaction.id))
+                .collect(Collectors.toCollection(ArrayList::new));
+
+            Map<ObjectId, String> transactionToUser = new HashMap<>(this.transactionToUser);
+            transactionToUser.remove(transaction.id);
+
+            if (transaction.leaf && !deleted) {
+                datum.transactions.add(Snapshot.getPublicTransaction(transaction));
+
+                if (transaction.user_id != null) {
+                    transactionToUser.put(transaction.id, transaction.user_id);
+                }
+            }
+
+            if (datum.item.countAmounts == null) {
+                datum.amount = previous.amount;
+            } else {
+                long count = datum.transactions.stream()
+                    .filter(TransactionService.usedForCountFilter)
+                    .map(subject -> subject.quantity)
+                    .reduce(0L, Long::sum);
+
+                datum.amount = datum.item.getDerivedAmountFromCounts(count);
+            }
+
+            itemData.set(index, datum);
+
+            return new Snapshot(
+                Snapshot.copy(this.aggregated, itemData, version),
+                transactionToUser,
+                this.instance,
+                version,
+                this.timeExpires
+            );
+        }
+
+        public EntityTag getTag(String userId) {
+            String tag = this.instance + "-" + this.version;
+            return new EntityTag(userId == null ? tag : tag + "-" + Integer.toHexString(userId.hashCode()));
+        }
+
+        /*
+         * Every viewer shares the snapshot except for the items holding transactions of userId,
+         * those are copied with the user id put back on the viewer's own transactions
+         */
+        public AggregatedEvent getView(String userId) {
+            if (userId == null || !this.transactionToUser.containsValue(userId)) {
+                return this.aggregated;
+            }
+
+            List<ItemData> itemData = new ArrayList<>();
+
+            for (ItemData datum: this.aggregated.itemData) {
+                boolean owned = datum.transactions.stream()
+                    .anyMatch(transaction -> userId.equals(this.transactionToUser.get(transaction.id)));
+
+                if (owned) {
+                    ItemData result = new ItemData();
+                    result.item = datum.item;
+                    result.amount = datum.amount;
+                    result.transactions = datum.transactions.stream()
+                        .map(transaction -> {
+                            if (userId.equals(this.transactionToUser.get(transaction.id))) {
+                                Transaction copy = new Transaction(transaction);
+                                copy.user_id = userId;
+                                return copy;
+                            }
+
+                            return transaction;
+                        })
+                        .collect(Collectors.toList());
+
+                    itemData.add(result);
+                } else {
+                    itemData.add(datum);
+                }
+            }
+
+            return Snapshot.copy(this.aggregated, itemData, this.version);
+        }
+
+        private static AggregatedEvent copy(AggregatedEvent source, List<ItemData> itemData, long version) {
+            AggregatedEvent result = new AggregatedEvent();
+            result.organization = source.organization;
+            result.event = source.event;
+            result.profile = source.profile;
+            result.assets = source.assets;
+            result.itemData = Collections.unmodifiableList(itemData);
+            result.version = version;
+            return result;
+        }
+
+        private static Transaction getPublicTransaction(Transaction transaction) {
+            Transaction result = new Transaction(transaction);
+            result.user_id = null;
+            result.given_name = null;
+            result.middleName = null;
+            result.family_name = null;
+            return result;
+        }
+    }
+}
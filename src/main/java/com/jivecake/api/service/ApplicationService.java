@@ -1,5 +1,7 @@
 package com.jivecake.api.service;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
@@ -13,6 +15,12 @@ import com.jivecake.api.model.Application;
 import com.mongodb.MongoClient;
 import com.mongodb.ServerAddress;
 
+import io.dropwizard.jetty.ConnectorFactory;
+import io.dropwizard.jetty.HttpConnectorFactory;
+import io.dropwizard.server.DefaultServerFactory;
+import io.dropwizard.server.ServerFactory;
+import io.dropwizard.server.SimpleServerFactory;
+
 public class ApplicationService {
     public static final int LIMIT_DEFAULT = 100;
     private final Application application;
@@ -48,4 +56,26 @@ public class ApplicationService {
         datastore.ensureIndexes();
         return datastore;
     }
-}
\ No newline at end of file
+
+    /*
+     * Jetty would otherwise replace the remote address with the left-most X-Forwarded-For
+     * value, which the client chooses. ClientAddressService walks the header itself and
+     * only believes hops added by limiter.trustedProxies
+     */
+    public static void disableForwardedHeaders(ServerFactory factory) {
+        List<ConnectorFactory> connectors = new ArrayList<>();
+
+        if (factory instanceof DefaultServerFactory) {
+            connectors.addAll(((DefaultServerFactory)factory).getApplicationConnectors());
+            connectors.addAll(((DefaultServerFactory)factory).getAdminConnectors());
+        } else if (factory instanceof SimpleServerFactory) {
+            connectors.add(((SimpleServerFactory)factory).getConnector());
+        }
+
+        for (ConnectorFactory connector: connectors) {
+            if (connector instanceof HttpConnectorFactory) {
+                ((HttpConnectorFactory)connector).setUseForwardedHeaders(false);
+            }
+        }
+    }
+}
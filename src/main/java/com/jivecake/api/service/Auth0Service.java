@@ -1,20 +1,14 @@
 package com.jivecake.api.service;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.security.KeyFactory;
-import java.security.NoSuchAlgorithmException;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
-import java.security.spec.InvalidKeySpecException;
-import java.security.spec.PKCS8EncodedKeySpec;
-import java.security.spec.X509EncodedKeySpec;
 import java.util.Arrays;
-import java.util.Base64;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
@@ -28,20 +22,20 @@ import com.auth0.client.mgmt.ManagementAPI;
 import com.auth0.client.mgmt.filter.UserFilter;
 import com.auth0.exception.Auth0Exception;
 import com.auth0.json.mgmt.users.User;
-import com.auth0.jwk.Jwk;
 import com.auth0.jwk.JwkException;
-import com.auth0.jwk.JwkProvider;
-import com.auth0.jwk.UrlJwkProvider;
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTDecodeException;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.Claim;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import com.auth0.jwt.interfaces.RSAKeyProvider;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.google.common.io.Files;
 import com.jivecake.api.APIConfiguration;
 
 import io.sentry.SentryClient;
@@ -52,15 +46,37 @@ public class Auth0Service {
     private final ObjectMapper mapper = new ObjectMapper();
     private final APIConfiguration configuration;
     private final SentryClient sentry;
+    private final JwkService jwkService;
+    private final KeyRingService keyRingService;
+    private final TokenCacheService tokenCacheService;
+    private final Map<String, IssuerVerifier> verifiers = new HashMap<>();
+    private final Meter unknownIssuers;
     public JsonNode token = null;
 
     @Inject
     public Auth0Service(
         APIConfiguration configuration,
-        SentryClient sentry
+        SentryClient sentry,
+        JwkService jwkService,
+        KeyRingService keyRingService,
+        TokenCacheService tokenCacheService,
+        MetricRegistry metrics
     ) {
         this.configuration = configuration;
         this.sentry = sentry;
+        this.jwkService = jwkService;
+        this.keyRingService = keyRingService;
+        this.tokenCacheService = tokenCacheService;
+        this.unknownIssuers = metrics.meter(MetricRegistry.name(Auth0Service.class, "verify", "unknown"));
+
+        this.verifiers.put(
+            String.format("https://%s/", configuration.oauth.domain),
+            new IssuerVerifier(metrics, "auth0", (decoded, token) -> this.getAuth0Token(decoded, token))
+        );
+        this.verifiers.put(
+            configuration.oauth.audience,
+            new IssuerVerifier(metrics, "server", (decoded, token) -> this.getServerIssusedToken(token))
+        );
 
         try {
             this.token = this.getNewToken();
@@ -76,30 +92,40 @@ public class Auth0Service {
         );
     }
 
+    /*
+     * The unverified issuer picks the verifier, so a server issued token never pays for a
+     * failed Auth0 verification and an Auth0 token never touches the local key ring
+     */
     public DecodedJWT getDecodedJWT(String token) {
         boolean isJWT = token.split("\\.").length == 3;
-        DecodedJWT result = null;
+        DecodedJWT result = isJWT ? this.tokenCacheService.get(token) : null;
+
+        if (isJWT && result == null) {
+            DecodedJWT decoded;
 
-        if (isJWT) {
             try {
-                result = this.getAuth0Token(token);
-            } catch (Exception e) {
-                e.printStackTrace();
+                decoded = JWT.decode(token);
+            } catch (JWTDecodeException e) {
+                decoded = null;
             }
 
-            if (result == null) {
-                try {
-                    result = this.getServerIssusedToken(token);
-                } catch (Exception serverIssusedException) {
-                    serverIssusedException.printStackTrace();
-                }
+            IssuerVerifier verifier = decoded == null ? null : this.verifiers.get(decoded.getIssuer());
+
+            if (verifier == null) {
+                this.unknownIssuers.mark();
+            } else {
+                result = verifier.verify(decoded, token);
+            }
+
+            if (result != null) {
+                this.tokenCacheService.put(token, result);
             }
         }
 
         return result;
     }
 
-    public DecodedJWT getServerIssusedToken(String token) throws JwkException, JWTVerificationException, InvalidKeySpecException, IOException, NoSuchAlgorithmException {
+    public DecodedJWT getServerIssusedToken(String token) throws JWTVerificationException {
         return JWT.require(this.getServerTokenAlgorithm())
             .withIssuer(this.configuration.oauth.audience)
             .withAudience(this.configuration.oauth.audience)
@@ -108,17 +134,17 @@ public class Auth0Service {
     }
 
     public DecodedJWT getAuth0Token(String token) throws JwkException {
-        DecodedJWT decoded = JWT.decode(token);
-        JwkProvider jwkProvider = new UrlJwkProvider("https://" + this.configuration.oauth.domain + "/.well-known/jwks.json");
+        return this.getAuth0Token(JWT.decode(token), token);
+    }
 
+    private DecodedJWT getAuth0Token(DecodedJWT decoded, String token) throws JwkException {
         Claim kid = decoded.getHeaderClaim("kid");
 
         if (kid.isNull()) {
             return null;
         }
 
-        Jwk jwk = jwkProvider.get(decoded.getHeaderClaim("kid").asString());
-        RSAPublicKey key = (RSAPublicKey)jwk.getPublicKey();
+        RSAPublicKey key = this.jwkService.getPublicKey(kid.asString());
 
         RSAKeyProvider provider = new RSAKeyProvider() {
             @Override
@@ -165,7 +191,7 @@ public class Auth0Service {
         return this.mapper.readTree(entity);
     }
 
-    public String getSignedJWT(User user) throws NoSuchAlgorithmException, InvalidKeySpecException, IOException {
+    public String getSignedJWT(User user) {
         Calendar calendar = Calendar.getInstance();
         calendar.add(Calendar.HOUR, 4);
 
@@ -178,47 +204,8 @@ public class Auth0Service {
             .sign(this.getServerTokenAlgorithm());
     }
 
-    public Algorithm getServerTokenAlgorithm() throws InvalidKeySpecException, IOException, NoSuchAlgorithmException {
-        List<String> publicLines = Files.readLines(new File("resource/jwt/jwtrs256.key.pub"), StandardCharsets.UTF_8);
-        byte[] publicBytes = publicLines
-            .subList(1, publicLines.size() - 1)
-            .stream()
-            .collect(Collectors.joining(""))
-            .getBytes(StandardCharsets.UTF_8);
-
-        List<String> privateLines = Files.readLines(new File("resource/jwt/jwtrs256.key"), StandardCharsets.UTF_8);
-        byte[] privateBytes = privateLines
-            .subList(1, privateLines.size() - 1)
-            .stream()
-            .collect(Collectors.joining(""))
-            .getBytes(StandardCharsets.UTF_8);
-
-        KeyFactory factory = KeyFactory.getInstance("RSA");
-
-        RSAPublicKey publicKey = (RSAPublicKey) factory.generatePublic(
-            new X509EncodedKeySpec(Base64.getDecoder().decode(publicBytes))
-        );
-
-        RSAPrivateKey privateKey = (RSAPrivateKey) factory.generatePrivate(
-            new PKCS8EncodedKeySpec(Base64.getDecoder().decode(privateBytes))
-        );
-
-        return Algorithm.RSA256(new RSAKeyProvider() {
-            @Override
-            public RSAPublicKey getPublicKeyById(String kid) {
-                return publicKey;
-            }
-
-            @Override
-            public RSAPrivateKey getPrivateKey() {
-                return privateKey;
-            }
-
-            @Override
-            public String getPrivateKeyId() {
-                return null;
-            }
-        });
+    public Algorithm getServerTokenAlgorithm() {
+        return this.keyRingService.getAlgorithm();
     }
 
     public List<User> getUsers(List<String> userIds) {
@@ -257,4 +244,46 @@ public class Auth0Service {
             .flatMap(List::stream)
             .collect(Collectors.toList());
     }
-}
\ No newline at end of file
+
+    private interface Verification {
+        DecodedJWT verify(DecodedJWT decoded, String token) throws JwkException;
+    }
+
+    private static class IssuerVerifier {
+        private final Verification verification;
+        private final Timer timer;
+        private final Meter failures;
+        private final Meter keyFailures;
+
+        private IssuerVerifier(MetricRegistry metrics, String name, Verification verification) {
+            this.verification = verification;
+            this.timer = metrics.timer(MetricRegistry.name(Auth0Service.class, "verify", name));
+            this.failures = metrics.meter(MetricRegistry.name(Auth0Service.class, "verify", name, "failure"));
+            this.keyFailures = metrics.meter(MetricRegistry.name(Auth0Service.class, "verify", name, "key"));
+        }
+
+        /*
+         * Expired and forged tokens are an everyday input, they are only counted. A key which
+         * cannot be found or fetched is counted separately since it points at the key source
+         */
+        private DecodedJWT verify(DecodedJWT decoded, String token) {
+            DecodedJWT result = null;
+            Timer.Context context = this.timer.time();
+
+            try {
+                result = this.verification.verify(decoded, token);
+            } catch (JwkException e) {
+                this.keyFailures.mark();
+            } catch (JWTVerificationException e) {
+            } finally {
+                context.stop();
+            }
+
+            if (result == null) {
+                this.failures.mark();
+            }
+
+            return result;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.jivecake.api.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.jivecake.api.BatchConfiguration;
+
+public class BatchWriter<T> {
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Lock flushing = new ReentrantLock();
+    private final BlockingQueue<T> queue;
+    private final Consumer<List<T>> flusher;
+    private final BatchConfiguration configuration;
+    private final Timer flushes;
+    private final Meter drops;
+    private final Meter failures;
+    private volatile boolean running = true;
+
+    public BatchWriter(String name, Consumer<List<T>> flusher, BatchConfiguration configuration, MetricRegistry metrics) {
+        this.queue = new ArrayBlockingQueue<>(configuration.queueSize);
+        this.flusher = flusher;
+        this.configuration = configuration;
+        this.flushes = metrics.timer(MetricRegistry.name(BatchWriter.class, name, "flush"));
+        this.drops = metrics.meter(MetricRegistry.name(BatchWriter.class, name, "drop"));
+        this.failures = metrics.meter(MetricRegistry.name(BatchWriter.class, name, "failure"));
+        metrics.register(MetricRegistry.name(BatchWriter.class, name, "queue"), (Gauge<Integer>) () -> this.queue.size());
+
+        this.executor.execute(this::run);
+    }
+
+    /*
+     * SAMPLE keeps every entity while the queue is under half full, then only sampleRate of
+     * them. BLOCK holds the calling thread for at most blockTimeout before dropping
+     */
+    public boolean add(T entity) {
+        boolean added;
+
+        if (this.configuration.overflow == OverflowPolicy.BLOCK) {
+            try {
+                added = this.queue.offer(entity, this.configuration.blockTimeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                added = false;
+            }
+        } else if (this.configuration.overflow == OverflowPolicy.SAMPLE) {
+            boolean pressured = this.queue.size() * 2 > this.configuration.queueSize;
+            added = (!pressured || ThreadLocalRandom.current().nextDouble() < this.configuration.sampleRate) &&
+                this.queue.offer(entity);
+        } else {
+            added = this.queue.offer(entity);
+        }
+
+        if (!added) {
+            this.drops.mark();
+        }
+
+        return added;
+    }
+
+    public int size() {
+        return this.queue.size();
+    }
+
+    /*
+     * The worker is interrupted out of its poll and drains the queue itself before it exits. The
+     * interrupt is only sent while the worker is not flushing, so no write is cut short
+     */
+    public void stop() throws InterruptedException {
+        this.running = false;
+        this.flushing.lock();
+
+        try {
+            this.executor.shutdownNow();
+        } finally {
+            this.flushing.unlock();
+        }
+
+        this.executor.awaitTermination(this.configuration.flushInterval * 2 + 5000, TimeUnit.MILLISECONDS);
+    }
+
+    private void run() {
+        List<T> batch = new ArrayList<>(this.configuration.batchSize);
+
+        while (this.running) {
+            long deadline = System.currentTimeMillis() + this.configuration.flushInterval;
+
+            try {
+                while (this.running && batch.size() < this.configuration.batchSize) {
+                    long remaining = deadline - System.currentTimeMillis();
+
+                    if (remaining <= 0) {
+                        break;
+                    }
+
+                    T entity = this.queue.poll(remaining, TimeUnit.MILLISECONDS);
+
+                    if (entity != null) {
+                        batch.add(entity);
+                        this.queue.drainTo(batch, this.configuration.batchSize - batch.size());
+                    }
+                }
+            } catch (InterruptedException e) {
+                this.running = false;
+            }
+
+            this.flushing.lock();
+
+            try {
+                Thread.interrupted();
+
+                if (!batch.isEmpty()) {
+                    this.flush(batch);
+                    batch.clear();
+                }
+            } finally {
+                this.flushing.unlock();
+            }
+        }
+
+        this.flushing.lock();
+
+        try {
+            Thread.interrupted();
+
+            while (this.queue.drainTo(batch, this.configuration.batchSize) > 0) {
+                this.flush(batch);
+                batch.clear();
+            }
+        } finally {
+            this.flushing.unlock();
+        }
+    }
+
+    private void flush(List<T> batch) {
+        Timer.Context context = this.flushes.time();
+
+        try {
+            this.flusher.accept(new ArrayList<>(batch));
+        } catch (Exception e) {
+            this.failures.mark(batch.size());
+            e.printStackTrace();
+        } finally {
+            context.stop();
+        }
+    }
+}
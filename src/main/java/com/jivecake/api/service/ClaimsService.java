@@ -0,0 +1,81 @@
+package com.jivecake.api.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.jivecake.api.request.RequestClaims;
+
+public class ClaimsService {
+    public static final String CLAIMS_ATTRIBUTE = RequestClaims.class.getName();
+    public static final String VERIFICATIONS_ATTRIBUTE = RequestClaims.class.getName() + ".verifications";
+
+    private final Auth0Service auth0Service;
+    private final Meter verifications;
+    private final Histogram verificationsPerRequest;
+
+    @Inject
+    public ClaimsService(Auth0Service auth0Service, MetricRegistry metrics) {
+        this.auth0Service = auth0Service;
+        this.verifications = metrics.meter(MetricRegistry.name(ClaimsService.class, "verification"));
+        this.verificationsPerRequest = metrics.histogram(MetricRegistry.name(ClaimsService.class, "verification", "request"));
+    }
+
+    /*
+     * The Authorization header is verified at most once per request, the result is kept
+     * as a request attribute for every filter, resource and exception mapper that follows
+     */
+    public RequestClaims getClaims(HttpServletRequest request) {
+        Object attribute = request.getAttribute(ClaimsService.CLAIMS_ATTRIBUTE);
+
+        if (attribute instanceof RequestClaims) {
+            return (RequestClaims)attribute;
+        }
+
+        String authorization = request.getHeader("Authorization");
+        String token = authorization != null && authorization.startsWith("Bearer ") ?
+            authorization.substring("Bearer ".length()) :
+            null;
+
+        RequestClaims claims = new RequestClaims(token, null);
+
+        if (claims.isJWT()) {
+            DecodedJWT jwt = null;
+
+            try {
+                jwt = this.auth0Service.getDecodedJWT(token);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+
+            this.verifications.mark();
+            this.getVerificationCount(request).incrementAndGet();
+
+            claims = new RequestClaims(token, jwt);
+        }
+
+        request.setAttribute(ClaimsService.CLAIMS_ATTRIBUTE, claims);
+        return claims;
+    }
+
+    public void recordVerifications(HttpServletRequest request) {
+        this.verificationsPerRequest.update(this.getVerificationCount(request).get());
+    }
+
+    private AtomicInteger getVerificationCount(HttpServletRequest request) {
+        Object attribute = request.getAttribute(ClaimsService.VERIFICATIONS_ATTRIBUTE);
+
+        if (attribute instanceof AtomicInteger) {
+            return (AtomicInteger)attribute;
+        }
+
+        AtomicInteger count = new AtomicInteger();
+        request.setAttribute(ClaimsService.VERIFICATIONS_ATTRIBUTE, count);
+        return count;
+    }
+}
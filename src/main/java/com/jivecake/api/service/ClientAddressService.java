@@ -0,0 +1,143 @@
+package com.jivecake.api.service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+
+import com.jivecake.api.APIConfiguration;
+
+public class ClientAddressService {
+    private final List<Subnet> exemptNetworks;
+    private final List<Subnet> trustedProxies;
+
+    @Inject
+    public ClientAddressService(APIConfiguration configuration) {
+        this.exemptNetworks = configuration.limiter.exemptNetworks
+            .stream()
+            .map(Subnet::new)
+            .collect(Collectors.toList());
+        this.trustedProxies = configuration.limiter.trustedProxies
+            .stream()
+            .map(Subnet::new)
+            .collect(Collectors.toList());
+    }
+
+    public String getRemoteAddress(HttpServletRequest request) {
+        return request.getRemoteAddr();
+    }
+
+    /*
+     * X-Forwarded-For is only believed for hops added by a trusted proxy, walking from the
+     * right, so a client cannot pick its own limiter key by sending the header itself
+     */
+    public String getForwardedAddress(HttpServletRequest request) {
+        String address = request.getRemoteAddr();
+        String header = request.getHeader("X-Forwarded-For");
+
+        if (header != null && this.isTrustedProxy(address)) {
+            String[] hops = header.split(",");
+
+            for (int index = hops.length - 1; index > -1; index--) {
+                String hop = hops[index].trim();
+
+                if (!hop.isEmpty()) {
+                    address = hop;
+
+                    if (!this.isTrustedProxy(hop)) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        return address;
+    }
+
+    public boolean isExempt(String address) {
+        return ClientAddressService.matches(this.exemptNetworks, address);
+    }
+
+    public boolean isTrustedProxy(String address) {
+        return ClientAddressService.matches(this.trustedProxies, address);
+    }
+
+    private static boolean matches(List<Subnet> subnets, String address) {
+        if (subnets.isEmpty() || address == null) {
+            return false;
+        }
+
+        byte[] bytes = Subnet.parse(address);
+
+        if (bytes == null) {
+            return false;
+        }
+
+        for (Subnet subnet: subnets) {
+            if (subnet.contains(bytes)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public static class Subnet {
+        private final byte[] network;
+        private final int prefix;
+
+        public Subnet(String cidr) {
+            String[] parts = cidr.trim().split("/");
+            this.network = Subnet.parse(parts[0]);
+
+            if (this.network == null) {
+                throw new IllegalArgumentException("Invalid network " + cidr);
+            }
+
+            this.prefix = parts.length > 1 ? Integer.parseInt(parts[1]) : this.network.length * 8;
+        }
+
+        public boolean contains(byte[] address) {
+            if (address.length != this.network.length) {
+                return false;
+            }
+
+            int bytes = this.prefix / 8;
+
+            for (int index = 0; index < bytes; index++) {
+                if (address[index] != this.network[index]) {
+                    return false;
+                }
+            }
+
+            int bits = this.prefix % 8;
+
+            if (bits == 0) {
+                return true;
+            }
+
+            int mask = (0xFF << (8 - bits)) & 0xFF;
+            return (address[bytes] & mask) == (this.network[bytes] & mask);
+        }
+
+        /*
+         * Only literal addresses are accepted so matching never triggers a DNS lookup
+         */
+        public static byte[] parse(String address) {
+            boolean literal = address.indexOf(':') > -1 || address.matches("[0-9.]+");
+
+            if (!literal) {
+                return null;
+            }
+
+            try {
+                return InetAddress.getByName(address).getAddress();
+            } catch (UnknownHostException e) {
+                return null;
+            }
+        }
+    }
+}
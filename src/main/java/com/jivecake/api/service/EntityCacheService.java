@@ -0,0 +1,288 @@
+package com.jivecake.api.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+
+import org.bson.types.ObjectId;
+import org.mongodb.morphia.Datastore;
+import org.mongodb.morphia.Morphia;
+import org.mongodb.morphia.mapping.Mapper;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.jivecake.api.APIConfiguration;
+import com.jivecake.api.model.EntityInvalidation;
+import com.jivecake.api.model.Event;
+import com.jivecake.api.model.Item;
+import com.jivecake.api.model.Organization;
+import com.jivecake.api.model.PaymentProfile;
+import com.mongodb.BasicDBObject;
+
+public class EntityCacheService {
+    public static final List<Class<?>> CACHED_CLASSES = Arrays.asList(
+        Organization.class,
+        Event.class,
+        Item.class,
+        PaymentProfile.class
+    );
+
+    /* How far back a poll looks past the previous one, covers clock skew between nodes */
+    private static final long POLL_OVERLAP = 1000 * 10;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final Map<Class<?>, Region> regions = new HashMap<>();
+    private final Map<ObjectId, Date> applied = new ConcurrentHashMap<>();
+    private final Datastore datastore;
+    private final Mapper mapper;
+    private final Meter remoteInvalidations;
+    private Date lastPoll = new Date();
+
+    @Inject
+    public EntityCacheService(Datastore datastore, Morphia morphia, APIConfiguration configuration, MetricRegistry metrics) {
+        this.datastore = datastore;
+        this.mapper = morphia.getMapper();
+
+        for (Class<?> clazz: EntityCacheService.CACHED_CLASSES) {
+            Region region = new Region(configuration.cache.entitySize, configuration.cache.entityTtl);
+            region.hits = metrics.meter(MetricRegistry.name(EntityCacheService.class, clazz.getSimpleName(), "hit"));
+            region.misses = metrics.meter(MetricRegistry.name(EntityCacheService.class, clazz.getSimpleName(), "miss"));
+
+            metrics.register(MetricRegistry.name(EntityCacheService.class, clazz.getSimpleName(), "size"), (Gauge<Integer>) () -> region.size());
+            metrics.register(MetricRegistry.name(EntityCacheService.class, clazz.getSimpleName(), "hit", "ratio"), new RatioGauge() {
+                @Override
+                protected Ratio getRatio() {
+                    return Ratio.of(
+                        region.hits.getFiveMinuteRate(),
+                        region.hits.getFiveMinuteRate() + region.misses.getFiveMinuteRate()
+                    );
+                }
+            });
+
+            this.regions.put(clazz, region);
+        }
+
+        this.remoteInvalidations = metrics.meter(MetricRegistry.name(EntityCacheService.class, "invalidation", "remote"));
+
+        this.executor.scheduleWithFixedDelay(() -> {
+            try {
+                this.poll();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, configuration.cache.entityPollInterval, configuration.cache.entityPollInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * Entities are kept as mapped documents and every hit is decoded into a new instance,
+     * callers are free to modify what they receive without changing the cached copy
+     */
+    public <T> T get(Class<T> clazz, ObjectId id) {
+        if (id == null) {
+            return null;
+        }
+
+        Region region = this.getRegion(clazz);
+
+        if (region == null) {
+            return this.datastore.get(clazz, id);
+        }
+
+        BasicDBObject document = region.get(id);
+
+        if (document != null) {
+            Object entity = this.mapper.fromDBObject(
+                this.datastore,
+                clazz,
+                (BasicDBObject)document.copy(),
+                this.mapper.createEntityCache()
+            );
+
+            if (clazz.isInstance(entity)) {
+                region.hits.mark();
+                return clazz.cast(entity);
+            }
+        }
+
+        region.misses.mark();
+
+        long generation = region.generation.get();
+        T entity = this.datastore.get(clazz, id);
+
+        if (entity != null) {
+            region.put(id, (BasicDBObject)this.mapper.toDBObject(entity), generation);
+        }
+
+        return entity;
+    }
+
+    public void invalidate(Object entity) {
+        if (this.getCachedClass(entity.getClass()) != null) {
+            this.invalidate(entity.getClass(), Arrays.asList((ObjectId)this.mapper.getId(entity)));
+        }
+    }
+
+    public void invalidate(Class<?> clazz, Collection<ObjectId> ids) {
+        Class<?> cached = this.getCachedClass(clazz);
+
+        if (cached != null && !ids.isEmpty()) {
+            Region region = this.regions.get(cached);
+
+            for (ObjectId id: ids) {
+                region.remove(id);
+            }
+
+            this.publish(cached, ids);
+        }
+    }
+
+    /*
+     * Other nodes only learn about an invalidation through EntityInvalidation, an entity is
+     * stale there for at most one poll interval. Each poll looks back POLL_OVERLAP past the
+     * previous one and skips the documents it has applied already
+     */
+    public synchronized void poll() {
+        Date now = new Date();
+        Date since = new Date(this.lastPoll.getTime() - EntityCacheService.POLL_OVERLAP);
+
+        List<EntityInvalidation> invalidations = this.datastore.createQuery(EntityInvalidation.class)
+            .field("timeCreated").greaterThanOrEq(since)
+            .asList();
+
+        for (EntityInvalidation invalidation: invalidations) {
+            if (this.applied.putIfAbsent(invalidation.id, invalidation.timeCreated) != null) {
+                continue;
+            }
+
+            for (Class<?> cached: EntityCacheService.CACHED_CLASSES) {
+                if (cached.getSimpleName().equals(invalidation.objectClass)) {
+                    Region region = this.regions.get(cached);
+
+                    for (ObjectId id: invalidation.objectIds) {
+                        region.remove(id);
+                    }
+
+                    this.remoteInvalidations.mark();
+                }
+            }
+        }
+
+        this.applied.values().removeIf(time -> time.before(since));
+        this.lastPoll = now;
+    }
+
+    public void clear() {
+        for (Region region: this.regions.values()) {
+            region.clear();
+        }
+    }
+
+    private void publish(Class<?> cached, Collection<ObjectId> ids) {
+        EntityInvalidation invalidation = new EntityInvalidation();
+        invalidation.id = new ObjectId();
+        invalidation.objectClass = cached.getSimpleName();
+        invalidation.objectIds = new ArrayList<>(ids);
+        invalidation.timeCreated = new Date();
+
+        this.applied.put(invalidation.id, invalidation.timeCreated);
+        this.datastore.save(invalidation);
+    }
+
+    private Region getRegion(Class<?> clazz) {
+        Class<?> cached = this.getCachedClass(clazz);
+        return cached == null ? null : this.regions.get(cached);
+    }
+
+    private Class<?> getCachedClass(Class<?> clazz) {
+        for (Class<?> cached: EntityCacheService.CACHED_CLASSES) {
+            if (cached.isAssignableFrom(clazz)) {
+                return cached;
+            }
+        }
+
+        return null;
+    }
+
+    /*
+     * A load which overlaps an invalidation in the same region is returned but not cached,
+     * so a write is never shadowed by a read that started before it
+     */
+    private static class Region {
+        private final Map<ObjectId, CachedDocument> entries;
+        private final AtomicLong generation = new AtomicLong();
+        private final long ttl;
+        private Meter hits;
+        private Meter misses;
+
+        private Region(int maximumSize, long ttl) {
+            this.ttl = ttl;
+            this.entries = new LinkedHashMap<ObjectId, CachedDocument>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ObjectId, CachedDocument> eldest) {
+                    return this.size() > maximumSize;
+                }
+            };
+        }
+
+        private synchronized BasicDBObject get(ObjectId id) {
+            CachedDocument entry = this.entries.get(id);
+
+            if (entry == null) {
+                return null;
+            }
+
+            if (System.currentTimeMillis() - entry.timeLoaded >= this.ttl) {
+                this.entries.remove(id);
+                return null;
+            }
+
+            return entry.document;
+        }
+
+        private synchronized void put(ObjectId id, BasicDBObject document, long generation) {
+            if (this.generation.get() == generation) {
+                this.entries.put(id, new CachedDocument(document, System.currentTimeMillis()));
+            }
+        }
+
+        private synchronized void remove(ObjectId id) {
+            this.generation.incrementAndGet();
+            this.entries.remove(id);
+        }
+
+        private synchronized void clear() {
+            this.generation.incrementAndGet();
+            this.entries.clear();
+        }
+
+        private synchronized int size() {
+            return this.entries.size();
+        }
+    }
+
+    private static class CachedDocument {
+        private final BasicDBObject document;
+        private final long timeLoaded;
+
+        private CachedDocument(BasicDBObject document, long timeLoaded) {
+            this.document = document;
+            this.timeLoaded = timeLoaded;
+        }
+    }
+}
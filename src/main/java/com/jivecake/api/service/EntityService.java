@@ -22,10 +22,12 @@ import com.jivecake.api.model.Transaction;
 
 public class EntityService {
     private final Datastore datastore;
+    private final EntityCacheService entityCacheService;
 
     @Inject
-    public EntityService(Datastore datastore) {
+    public EntityService(Datastore datastore, EntityCacheService entityCacheService) {
         this.datastore = datastore;
+        this.entityCacheService = entityCacheService;
     }
 
     public List<Object> cascadeLastActivity(Collection<?> entities, Date date) {
@@ -91,6 +93,10 @@ public class EntityService {
                 .set("lastActivity", date)
         );
 
+        this.entityCacheService.invalidate(Organization.class, organizationIds);
+        this.entityCacheService.invalidate(Event.class, eventIds);
+        this.entityCacheService.invalidate(Item.class, itemIds);
+
         List<Object> updated = new ArrayList<>();
         updated.addAll(itemQuery.asList());
         updated.addAll(eventQuery.asList());
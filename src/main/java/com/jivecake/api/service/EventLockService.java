@@ -0,0 +1,46 @@
+package com.jivecake.api.service;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.inject.Inject;
+
+import org.bson.types.ObjectId;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+public class EventLockService {
+    public static final int STRIPES = 256;
+
+    private final Lock[] locks = new Lock[EventLockService.STRIPES];
+    private final Timer wait;
+
+    @Inject
+    public EventLockService(MetricRegistry metrics) {
+        this.wait = metrics.timer(MetricRegistry.name(EventLockService.class, "wait"));
+
+        for (int index = 0; index < this.locks.length; index++) {
+            this.locks[index] = new ReentrantLock();
+        }
+    }
+
+    /*
+     * Events share a fixed number of locks by the hash of their id, orders for different
+     * events rarely contend while orders for the same event always do. The returned lock is
+     * held and has to be released by the caller
+     */
+    public Lock lock(ObjectId eventId) {
+        Lock lock = this.getLock(eventId);
+
+        Timer.Context context = this.wait.time();
+        lock.lock();
+        context.stop();
+
+        return lock;
+    }
+
+    public Lock getLock(ObjectId eventId) {
+        return this.locks[(eventId.hashCode() & Integer.MAX_VALUE) % this.locks.length];
+    }
+}
@@ -3,14 +3,11 @@ package com.jivecake.api.service;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.OptionalInt;
 import java.util.Random;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -18,22 +15,31 @@ import javax.inject.Inject;
 
 import org.bson.types.ObjectId;
 import org.mongodb.morphia.Datastore;
-import org.mongodb.morphia.query.UpdateOperations;
+import org.mongodb.morphia.FindAndModifyOptions;
 
 import com.auth0.json.mgmt.users.User;
 import com.jivecake.api.model.AssetType;
 import com.jivecake.api.model.EntityAsset;
 import com.jivecake.api.model.Event;
+import com.jivecake.api.model.EventCounter;
 import com.jivecake.api.model.Item;
+import com.jivecake.api.model.ItemCountAmount;
+import com.jivecake.api.model.ItemTimeAmount;
 import com.jivecake.api.model.Organization;
 import com.jivecake.api.model.PaymentProfile;
 import com.jivecake.api.model.Transaction;
 import com.jivecake.api.model.UserData;
 import com.jivecake.api.request.AggregatedEvent;
+import com.jivecake.api.request.AggregatedEventSummary;
 import com.jivecake.api.request.EntityQuantity;
 import com.jivecake.api.request.ErrorData;
+import com.jivecake.api.request.ItemCount;
 import com.jivecake.api.request.ItemData;
+import com.jivecake.api.request.ItemSummary;
 import com.jivecake.api.request.OrderData;
+import com.jivecake.api.service.QueryExecutorService.QueryGroup;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DuplicateKeyException;
 
 public class EventService {
     public static final int STATUS_ACTIVE = 1;
@@ -42,11 +48,24 @@ public class EventService {
     private final String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz1234567890_-";
     private final int maximumHashCharacters = 8;
     private final Datastore datastore;
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final EntityCacheService entityCacheService;
+    private final ItemInventoryService itemInventoryService;
+    private final UserDataService userDataService;
+    private final QueryExecutorService queryExecutorService;
 
     @Inject
-    public EventService(Datastore datastore) {
+    public EventService(
+        Datastore datastore,
+        EntityCacheService entityCacheService,
+        ItemInventoryService itemInventoryService,
+        UserDataService userDataService,
+        QueryExecutorService queryExecutorService
+    ) {
         this.datastore = datastore;
+        this.entityCacheService = entityCacheService;
+        this.itemInventoryService = itemInventoryService;
+        this.userDataService = userDataService;
+        this.queryExecutorService = queryExecutorService;
     }
 
     public String getHash() {
@@ -65,23 +84,79 @@ public class EventService {
         TransactionService transactionService,
         Date currentTime
     ) {
-        List<PaymentProfile> profiles = this.datastore.createQuery(PaymentProfile.class)
-            .field("id").equal(event.paymentProfileId)
-            .asList();
+        return this.getAggregatedaEventData(event, transactionService, currentTime, true);
+    }
+
+    /*
+     * Without transactions ItemData.transactions is null and count based prices come from
+     * ItemInventory, which is all an order needs
+     */
+    public AggregatedEvent getAggregatedaEventData(
+        Event event,
+        TransactionService transactionService,
+        Date currentTime,
+        boolean includeTransactions
+    ) {
+        try (QueryGroup group = this.queryExecutorService.group("aggregatedEvent")) {
+            return this.getAggregatedaEventData(event, currentTime, includeTransactions, group);
+        }
+    }
+
+    /*
+     * Everything except the counts for count based prices depends only on the event and is read
+     * concurrently, the item query runs on the calling thread
+     */
+    private AggregatedEvent getAggregatedaEventData(
+        Event event,
+        Date currentTime,
+        boolean includeTransactions,
+        QueryGroup group
+    ) {
+        Future<PaymentProfile> profile = group.submit("paymentProfile", () ->
+            this.entityCacheService.get(PaymentProfile.class, event.paymentProfileId)
+        );
+
+        Future<Organization> organization = group.submit("organization", () ->
+            this.entityCacheService.get(Organization.class, event.organizationId)
+        );
+
+        Future<List<EntityAsset>> assets = group.submit("asset", () ->
+            this.datastore.createQuery(EntityAsset.class)
+                .field("id").equal(event.entityAssetConsentId)
+                .asList()
+        );
+
+        Future<List<Transaction>> leafTransactions = includeTransactions ? group.submit("transaction", () ->
+            this.datastore.createQuery(Transaction.class)
+                .field("eventId").equal(event.id)
+                .field("leaf").equal(true)
+                .asList()
+        ) : null;
 
-        List<Transaction> leafTransactions = this.datastore.createQuery(Transaction.class)
-            .field("eventId").equal(event.id)
-            .field("leaf").equal(true)
-            .asList();
         List<Item> items = this.datastore.createQuery(Item.class)
             .field("eventId").equal(event.id)
             .asList();
 
-        Map<ObjectId, List<Transaction>> itemToTransactions = items.stream()
-            .collect(Collectors.toMap(item -> item.id, item -> new ArrayList<>()));
+        Map<ObjectId, List<Transaction>> itemToTransactions;
+        Map<ObjectId, ItemCount> itemToCount;
 
-        for (Transaction transaction: leafTransactions) {
-            itemToTransactions.get(transaction.itemId).add(transaction);
+        if (includeTransactions) {
+            itemToTransactions = items.stream()
+                .collect(Collectors.toMap(item -> item.id, item -> new ArrayList<>()));
+
+            for (Transaction transaction: group.get(leafTransactions)) {
+                itemToTransactions.get(transaction.itemId).add(transaction);
+            }
+
+            itemToCount = null;
+        } else {
+            List<ObjectId> countedItemIds = items.stream()
+                .filter(item -> item.countAmounts != null)
+                .map(item -> item.id)
+                .collect(Collectors.toList());
+
+            itemToTransactions = new HashMap<>();
+            itemToCount = this.itemInventoryService.getItemCounts(countedItemIds, null);
         }
 
         List<ItemData> itemData = items.stream().map(item -> {
@@ -92,10 +167,16 @@ public class EventService {
             Double amount;
 
             if (item.countAmounts != null) {
-                long count = result.transactions.stream()
-                    .filter(TransactionService.usedForCountFilter)
-                    .map(transaction -> transaction.quantity)
-                    .reduce(0L, Long::sum);
+                long count;
+
+                if (includeTransactions) {
+                    count = result.transactions.stream()
+                        .filter(TransactionService.usedForCountFilter)
+                        .map(transaction -> transaction.quantity)
+                        .reduce(0L, Long::sum);
+                } else {
+                    count = itemToCount.get(item.id).quantity;
+                }
 
                 amount = item.getDerivedAmountFromCounts(count);
             } else if (item.timeAmounts != null) {
@@ -109,27 +190,98 @@ public class EventService {
             return result;
         }).collect(Collectors.toList());
 
-        List<EntityAsset> assets = this.datastore.createQuery(EntityAsset.class)
-            .field("id").equal(event.entityAssetConsentId)
+        AggregatedEvent result = new AggregatedEvent();
+        result.organization = group.get(organization);
+        result.event = event;
+        result.itemData = itemData;
+        result.assets = group.get(assets);
+        result.profile = group.get(profile);
+
+        return result;
+    }
+
+    /*
+     * The same prices as getAggregatedaEventData for active items, with sold and held
+     * quantities taken from ItemInventory. Only the transactions of userId are read
+     */
+    public AggregatedEventSummary getAggregatedEventSummary(Event event, String userId, Date currentTime) {
+        List<Item> items = this.datastore.createQuery(Item.class)
+            .field("eventId").equal(event.id)
+            .field("status").equal(ItemService.STATUS_ACTIVE)
             .asList();
 
-        AggregatedEvent group = new AggregatedEvent();
-        group.organization = this.datastore.get(Organization.class, event.organizationId);
-        group.event = event;
-        group.itemData = itemData;
-        group.assets = assets;
+        Map<ObjectId, ItemCount> itemToCount = this.itemInventoryService.getItemCounts(
+            items.stream().map(item -> item.id).collect(Collectors.toList()),
+            null
+        );
 
-        if (profiles.size() == 1) {
-            group.profile = profiles.get(0);
+        List<ItemSummary> summaries = items.stream().map(item -> {
+            ItemCount count = itemToCount.get(item.id);
+
+            ItemSummary result = new ItemSummary();
+            result.item = item;
+            result.sold = count.quantity;
+            result.held = count.held;
+
+            if (item.totalAvailible != null) {
+                result.remaining = Math.max(0, item.totalAvailible - count.quantity - count.held);
+            }
+
+            if (item.countAmounts != null) {
+                result.amount = item.getDerivedAmountFromCounts(count.quantity);
+
+                ItemCountAmount next = item.getNextCountAmount(count.quantity);
+
+                if (next != null) {
+                    result.nextAmount = next.amount;
+                    result.nextAmountCount = next.count;
+                }
+            } else if (item.timeAmounts != null) {
+                result.amount = item.getDerivedAmountFromTime(currentTime);
+
+                ItemTimeAmount next = item.getNextTimeAmount(currentTime);
+
+                if (next != null) {
+                    result.nextAmount = next.amount;
+                    result.nextAmountAfter = next.after;
+                }
+            } else {
+                result.amount = item.amount;
+            }
+
+            return result;
+        }).collect(Collectors.toList());
+
+        List<Transaction> transactions;
+
+        if (userId == null) {
+            transactions = new ArrayList<>();
+        } else {
+            transactions = this.datastore.createQuery(Transaction.class)
+                .field("eventId").equal(event.id)
+                .field("user_id").equal(userId)
+                .field("leaf").equal(true)
+                .asList();
         }
 
-        return group;
+        AggregatedEventSummary summary = new AggregatedEventSummary();
+        summary.organization = this.entityCacheService.get(Organization.class, event.organizationId);
+        summary.event = event;
+        summary.profile = this.entityCacheService.get(PaymentProfile.class, event.paymentProfileId);
+        summary.items = summaries;
+        summary.assets = this.datastore.createQuery(EntityAsset.class)
+            .field("id").equal(event.entityAssetConsentId)
+            .asList();
+        summary.transactions = transactions;
+
+        return summary;
     }
 
     public List<ErrorData> getErrorsFromOrderRequest(
         OrderData order,
         User user,
-        AggregatedEvent aggregated
+        AggregatedEvent aggregated,
+        Map<ObjectId, ItemCount> itemToCount
     ) {
         List<ErrorData> errors = new ArrayList<>();
 
@@ -197,32 +349,21 @@ public class EventService {
             } else {
                 itemsAreActive = itemData.item.status == ItemService.STATUS_ACTIVE;
 
-                List<Transaction> countedTransactions = itemData.transactions.stream()
-                    .filter(TransactionService.usedForCountFilter)
-                    .collect(Collectors.toList());
+                ItemCount itemCount = itemToCount.get(entity.entity);
 
                 if (itemData.item.amount == 0 && user == null) {
                     userIdViolation = true;
                 }
 
                 if (itemData.item.totalAvailible != null) {
-                    long count = countedTransactions.stream()
-                        .map(transaction -> transaction.quantity)
-                        .reduce(0L, Long::sum);
-
-                    orderWouldExceedTotalAvailible = entity.quantity + count > itemData.item.totalAvailible;
+                    orderWouldExceedTotalAvailible = entity.quantity + itemCount.quantity + itemCount.held > itemData.item.totalAvailible;
                 }
 
                 if (itemData.item.maximumPerUser != null) {
                     if (user == null) {
                         userIdViolation = true;
                     } else {
-                        long count = countedTransactions.stream()
-                            .filter(transaction -> user.getId().equals(transaction.user_id))
-                            .map(transaction -> transaction.quantity)
-                            .reduce(0L, Long::sum);
-
-                        orderWouldExceedTotalAvailible = entity.quantity + count > itemData.item.maximumPerUser;
+                        orderWouldExceedTotalAvailible = entity.quantity + itemCount.userQuantity > itemData.item.maximumPerUser;
                     }
                 }
             }
@@ -309,46 +450,58 @@ public class EventService {
         return errors;
     }
 
-    public Event assignNumberToUser(String userId, Event eventToQuery) {
-        Event event = this.datastore.get(Event.class, eventToQuery.id);
+    /*
+     * Numbers come from the EventCounter of the event, which is incremented with findAndModify.
+     * The unique index on eventId and userId keeps a user to one UserData, a number drawn by a
+     * request which loses that race is skipped rather than reused
+     */
+    public UserData assignNumberToUser(String userId, Event event) {
+        this.userDataService.migrate(event.id);
 
-        Optional<UserData> optionalUserData = event.userData
-            .stream()
-            .filter(userData -> userId.equals(userData.userId))
-            .findFirst();
+        UserData userData = this.userDataService.get(event.id, userId);
 
-        if (!optionalUserData.isPresent()) {
-            OptionalInt optionalInt = event.userData.stream()
-                .mapToInt(userData -> userData.number)
-                .max();
-            UserData userData = new UserData();
-            userData.number = optionalInt.isPresent() ? optionalInt.getAsInt() + 1 : 1;
+        if (userData == null) {
+            userData = new UserData();
+            userData.eventId = event.id;
+            userData.organizationId = event.organizationId;
             userData.userId = userId;
+            userData.number = this.getNextUserNumber(event.id);
+            userData.timeCreated = new Date();
 
-            event.userData.add(userData);
-
-            UpdateOperations<Event> operations = this.datastore
-                .createUpdateOperations(Event.class)
-                .set("userData", event.userData);
-            this.datastore.update(event, operations);
+            try {
+                this.datastore.save(userData);
+            } catch (DuplicateKeyException e) {
+                userData = this.userDataService.get(event.id, userId);
+            }
         }
 
-        return this.datastore.get(eventToQuery);
+        return userData;
     }
 
-    public CompletableFuture<Event> assignNumberToUserSafely(String userId, Event eventToQuery) {
-        CompletableFuture<Event> future = new CompletableFuture<>();
-
-        this.executor.execute(() -> {
+    /*
+     * A counter is created from the highest number already assigned, events which predate
+     * EventCounter continue where they left off
+     */
+    private int getNextUserNumber(ObjectId eventId) {
+        if (this.datastore.get(EventCounter.class, eventId) == null) {
             try {
-                Event event = this.assignNumberToUser(userId, eventToQuery);
-                future.complete(event);
-            } catch (Exception e) {
-                future.completeExceptionally(e);
+                this.datastore.getCollection(EventCounter.class).update(
+                    new BasicDBObject("_id", eventId),
+                    new BasicDBObject("$setOnInsert", new BasicDBObject("userNumber", this.userDataService.getMaximumNumber(eventId))),
+                    true,
+                    false
+                );
+            } catch (DuplicateKeyException e) {
             }
-        });
+        }
+
+        EventCounter counter = this.datastore.findAndModify(
+            this.datastore.createQuery(EventCounter.class).field("id").equal(eventId),
+            this.datastore.createUpdateOperations(EventCounter.class).inc("userNumber"),
+            new FindAndModifyOptions().returnNew(true)
+        );
 
-        return future;
+        return counter.userNumber;
     }
 
     public static boolean isValidEvent(Event event) {
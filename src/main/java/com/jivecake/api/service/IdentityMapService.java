@@ -0,0 +1,75 @@
+package com.jivecake.api.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+
+import org.bson.types.ObjectId;
+import org.mongodb.morphia.Datastore;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+public class IdentityMapService {
+    public static final String IDENTITY_MAP_ATTRIBUTE = IdentityMapService.class.getName();
+
+    private final Datastore datastore;
+    private final EntityCacheService entityCacheService;
+    private final Meter hits;
+    private final Meter misses;
+
+    @Inject
+    public IdentityMapService(Datastore datastore, EntityCacheService entityCacheService, MetricRegistry metrics) {
+        this.datastore = datastore;
+        this.entityCacheService = entityCacheService;
+        this.hits = metrics.meter(MetricRegistry.name(IdentityMapService.class, "hit"));
+        this.misses = metrics.meter(MetricRegistry.name(IdentityMapService.class, "miss"));
+    }
+
+    /*
+     * Each entity is read from the datastore at most once per request, filters, parameter
+     * factories and resources that ask for the same class and id share the loaded instance.
+     * A missing entity is remembered as well
+     */
+    public <T> T get(HttpServletRequest request, Class<T> clazz, ObjectId id) {
+        Map<Object, Object> entities = this.getEntities(request, clazz);
+
+        if (entities.containsKey(id)) {
+            this.hits.mark();
+            return clazz.cast(entities.get(id));
+        }
+
+        this.misses.mark();
+
+        T entity = this.entityCacheService.get(clazz, id);
+        entities.put(id, entity);
+        return entity;
+    }
+
+    public void register(HttpServletRequest request, Object entity) {
+        Object id = this.datastore.getKey(entity).getId();
+        this.getEntities(request, entity.getClass()).put(id, entity);
+    }
+
+    public void evict(HttpServletRequest request, Class<?> clazz, Object id) {
+        this.getEntities(request, clazz).remove(id);
+    }
+
+    private Map<Object, Object> getEntities(HttpServletRequest request, Class<?> clazz) {
+        Object attribute = request.getAttribute(IdentityMapService.IDENTITY_MAP_ATTRIBUTE);
+        Map<Class<?>, Map<Object, Object>> classToEntities;
+
+        if (attribute instanceof Map) {
+            @SuppressWarnings("unchecked")
+            Map<Class<?>, Map<Object, Object>> map = (Map<Class<?>, Map<Object, Object>>)attribute;
+            classToEntities = map;
+        } else {
+            classToEntities = new HashMap<>();
+            request.setAttribute(IdentityMapService.IDENTITY_MAP_ATTRIBUTE, classToEntities);
+        }
+
+        return classToEntities.computeIfAbsent(clazz, key -> new HashMap<>());
+    }
+}
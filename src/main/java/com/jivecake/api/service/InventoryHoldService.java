@@ -0,0 +1,305 @@
+package com.jivecake.api.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+
+import org.bson.types.ObjectId;
+import org.mongodb.morphia.Datastore;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.jivecake.api.APIConfiguration;
+import com.jivecake.api.model.ClientHoldCount;
+import com.jivecake.api.model.HoldQuantity;
+import com.jivecake.api.model.InventoryHold;
+import com.jivecake.api.model.Item;
+import com.jivecake.api.request.AggregatedEvent;
+import com.jivecake.api.request.EntityQuantity;
+import com.jivecake.api.request.ItemData;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DuplicateKeyException;
+
+public class InventoryHoldService {
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final Datastore datastore;
+    private final ItemInventoryService itemInventoryService;
+    private final int maximumPerClient;
+    private final Meter created;
+    private final Meter rejected;
+    private final Meter limited;
+    private final Meter confirmed;
+    private final Meter released;
+    private final Meter expired;
+
+    @Inject
+    public InventoryHoldService(
+        Datastore datastore,
+        ItemInventoryService itemInventoryService,
+        APIConfiguration configuration,
+        MetricRegistry metrics
+    ) {
+        this.datastore = datastore;
+        this.itemInventoryService = itemInventoryService;
+        this.maximumPerClient = configuration.hold.maximumPerClient;
+        this.created = metrics.meter(MetricRegistry.name(InventoryHoldService.class, "created"));
+        this.rejected = metrics.meter(MetricRegistry.name(InventoryHoldService.class, "rejected"));
+        this.limited = metrics.meter(MetricRegistry.name(InventoryHoldService.class, "limited"));
+        this.confirmed = metrics.meter(MetricRegistry.name(InventoryHoldService.class, "confirmed"));
+        this.released = metrics.meter(MetricRegistry.name(InventoryHoldService.class, "released"));
+        this.expired = metrics.meter(MetricRegistry.name(InventoryHoldService.class, "expired"));
+
+        this.executor.scheduleWithFixedDelay(() -> {
+            try {
+                this.expire(new Date());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, configuration.hold.sweepInterval, configuration.hold.sweepInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public InventoryHold hold(AggregatedEvent aggregated, List<EntityQuantity<ObjectId>> order, long ttl) {
+        return this.hold(aggregated, order, ttl, null);
+    }
+
+    /*
+     * A hold made for a client takes over the slot it was given by claim, the slot is returned
+     * when the hold is refused, confirmed, released or expires
+     */
+    public InventoryHold hold(AggregatedEvent aggregated, List<EntityQuantity<ObjectId>> order, long ttl, String client) {
+        Map<ObjectId, Integer> itemToLimit = new HashMap<>();
+
+        for (ItemData itemData: aggregated.itemData) {
+            itemToLimit.put(itemData.item.id, itemData.item.totalAvailible);
+        }
+
+        List<HoldQuantity> quantities = new ArrayList<>();
+
+        for (EntityQuantity<ObjectId> entityQuantity: order) {
+            HoldQuantity quantity = new HoldQuantity();
+            quantity.itemId = entityQuantity.entity;
+            quantity.quantity = entityQuantity.quantity;
+            quantities.add(quantity);
+        }
+
+        return this.hold(aggregated.event.id, quantities, itemToLimit, ttl, client);
+    }
+
+    /*
+     * For transactions which are saved by the request that holds them, free purchases and
+     * transactions added by an organization
+     */
+    public InventoryHold hold(Item item, long quantity, long ttl) {
+        HoldQuantity holdQuantity = new HoldQuantity();
+        holdQuantity.itemId = item.id;
+        holdQuantity.quantity = quantity;
+
+        Map<ObjectId, Integer> itemToLimit = new HashMap<>();
+        itemToLimit.put(item.id, item.totalAvailible);
+
+        return this.hold(item.eventId, Arrays.asList(holdQuantity), itemToLimit, ttl, null);
+    }
+
+    /*
+     * Holds every quantity of the order or none of them, null is returned if an item does not
+     * have enough left. Inventories are read before the hold is saved, an item reconciled for
+     * the first time would otherwise count the new hold in held and then have it added again.
+     * The hold is saved before the quantities are claimed so that a crash in between leaves
+     * a hold which the sweep can find
+     */
+    private InventoryHold hold(
+        ObjectId eventId,
+        List<HoldQuantity> quantities,
+        Map<ObjectId, Integer> itemToLimit,
+        long ttl,
+        String client
+    ) {
+        Date date = new Date();
+
+        InventoryHold hold = new InventoryHold();
+        hold.eventId = eventId;
+        hold.client = client;
+        hold.quantities = quantities;
+        hold.timeCreated = date;
+        hold.timeExpires = new Date(date.getTime() + ttl);
+
+        this.itemInventoryService.getInventories(
+            hold.quantities.stream().map(quantity -> quantity.itemId).collect(Collectors.toSet())
+        );
+
+        this.datastore.save(hold);
+
+        List<HoldQuantity> claimed = new ArrayList<>();
+
+        for (HoldQuantity quantity: hold.quantities) {
+            if (!this.itemInventoryService.hold(quantity.itemId, quantity.quantity, itemToLimit.get(quantity.itemId))) {
+                break;
+            }
+
+            claimed.add(quantity);
+        }
+
+        if (claimed.size() < hold.quantities.size()) {
+            this.datastore.delete(hold);
+            this.itemInventoryService.release(claimed);
+            this.unclaim(hold.eventId, hold.client);
+            this.rejected.mark();
+            return null;
+        }
+
+        this.created.mark();
+        return hold;
+    }
+
+    /*
+     * A payment which is never completed keeps its hold until it expires, a client, the user
+     * or the address of an anonymous buyer, may only have maximumPerClient unexpired holds per
+     * event. The slot is taken with one conditional $inc, an upsert which finds the count at
+     * the maximum collides with the existing document, so concurrent orders cannot both pass
+     */
+    public boolean claim(ObjectId eventId, String client, long ttl) {
+        BasicDBObject query = new BasicDBObject("_id", this.getClientHoldCountId(eventId, client))
+            .append("count", new BasicDBObject("$lt", this.maximumPerClient));
+        BasicDBObject update = new BasicDBObject("$inc", new BasicDBObject("count", 1))
+            .append("$max", new BasicDBObject("timeExpires", new Date(new Date().getTime() + ttl)))
+            .append("$setOnInsert", new BasicDBObject("eventId", eventId).append("client", client));
+
+        boolean result;
+
+        try {
+            this.datastore.getCollection(ClientHoldCount.class).update(query, update, true, false);
+            result = true;
+        } catch (DuplicateKeyException e) {
+            /* Either the count is at the maximum or another order inserted the document first */
+            result = this.datastore.getCollection(ClientHoldCount.class).update(query, update).getN() == 1;
+        }
+
+        if (!result) {
+            this.limited.mark();
+        }
+
+        return result;
+    }
+
+    public void link(InventoryHold hold, String linkedId, String linkedObjectClass) {
+        hold.linkedId = linkedId;
+        hold.linkedObjectClass = linkedObjectClass;
+
+        this.datastore.update(
+            hold,
+            this.datastore.createUpdateOperations(InventoryHold.class)
+                .set("linkedId", linkedId)
+                .set("linkedObjectClass", linkedObjectClass)
+        );
+    }
+
+    /*
+     * The transactions of a confirmed hold are expected to be in ItemInventory already, its
+     * quantities are counted twice for a moment rather than not at all
+     */
+    public boolean confirm(InventoryHold hold) {
+        boolean result = this.close(hold.id);
+
+        if (result) {
+            this.confirmed.mark();
+        }
+
+        return result;
+    }
+
+    public boolean confirm(String linkedId) {
+        boolean result = false;
+
+        for (InventoryHold hold: this.getLinked(linkedId)) {
+            result |= this.confirm(hold);
+        }
+
+        return result;
+    }
+
+    public boolean release(InventoryHold hold) {
+        boolean result = this.close(hold.id);
+
+        if (result) {
+            this.released.mark();
+        }
+
+        return result;
+    }
+
+    public boolean release(String linkedId) {
+        boolean result = false;
+
+        for (InventoryHold hold: this.getLinked(linkedId)) {
+            result |= this.release(hold);
+        }
+
+        return result;
+    }
+
+    public int expire(Date before) {
+        List<InventoryHold> holds = this.datastore.createQuery(InventoryHold.class)
+            .field("timeExpires").lessThan(before)
+            .asList();
+
+        int result = 0;
+
+        for (InventoryHold hold: holds) {
+            if (this.close(hold.id)) {
+                result++;
+            }
+        }
+
+        this.expired.mark(result);
+        return result;
+    }
+
+    private List<InventoryHold> getLinked(String linkedId) {
+        return this.datastore.createQuery(InventoryHold.class)
+            .field("linkedId").equal(linkedId)
+            .asList();
+    }
+
+    /*
+     * Confirm, release and expiry race for the same hold, only the caller which deletes it
+     * returns its quantities
+     */
+    private boolean close(ObjectId id) {
+        InventoryHold deleted = this.datastore.findAndDelete(
+            this.datastore.createQuery(InventoryHold.class).field("id").equal(id)
+        );
+
+        if (deleted == null) {
+            return false;
+        }
+
+        this.itemInventoryService.release(deleted.quantities);
+        this.unclaim(deleted.eventId, deleted.client);
+        return true;
+    }
+
+    private void unclaim(ObjectId eventId, String client) {
+        if (client == null) {
+            return;
+        }
+
+        this.datastore.getCollection(ClientHoldCount.class).update(
+            new BasicDBObject("_id", this.getClientHoldCountId(eventId, client))
+                .append("count", new BasicDBObject("$gt", 0)),
+            new BasicDBObject("$inc", new BasicDBObject("count", -1))
+        );
+    }
+
+    private String getClientHoldCountId(ObjectId eventId, String client) {
+        return String.format("%s|%s", eventId, client);
+    }
+}
@@ -0,0 +1,406 @@
+package com.jivecake.api.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+
+import org.bson.types.ObjectId;
+import org.mongodb.morphia.Datastore;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.jivecake.api.model.HoldQuantity;
+import com.jivecake.api.model.InventoryHold;
+import com.jivecake.api.model.Item;
+import com.jivecake.api.model.ItemInventory;
+import com.jivecake.api.model.Transaction;
+import com.jivecake.api.request.ItemCount;
+import com.mongodb.AggregationOptions;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.Cursor;
+import com.mongodb.DBObject;
+import com.mongodb.WriteResult;
+
+public class ItemInventoryService {
+    private static final int RECONCILE_BATCH_SIZE = 500;
+    private static final long RECONCILE_GRACE = 1000 * 60;
+
+    private final Datastore datastore;
+    private final TransactionService transactionService;
+    private final Meter corrections;
+
+    @Inject
+    public ItemInventoryService(Datastore datastore, TransactionService transactionService, MetricRegistry metrics) {
+        this.datastore = datastore;
+        this.transactionService = transactionService;
+        this.corrections = metrics.meter(MetricRegistry.name(ItemInventoryService.class, "correction"));
+    }
+
+    public void add(Collection<Transaction> transactions) {
+        this.update(Collections.emptyList(), transactions);
+    }
+
+    public void remove(Collection<Transaction> transactions) {
+        this.update(transactions, Collections.emptyList());
+    }
+
+    /*
+     * before holds copies of transactions as they were prior to a write and after holds them as
+     * written, every affected ItemInventory gets the difference with a single $inc
+     */
+    public void update(Collection<Transaction> before, Collection<Transaction> after) {
+        Map<ObjectId, BasicDBObject> itemToIncrements = new HashMap<>();
+
+        for (Transaction transaction: before) {
+            this.addIncrements(itemToIncrements, transaction, -1);
+        }
+
+        for (Transaction transaction: after) {
+            this.addIncrements(itemToIncrements, transaction, 1);
+        }
+
+        if (itemToIncrements.isEmpty()) {
+            return;
+        }
+
+        BulkWriteOperation bulk = this.datastore.getCollection(ItemInventory.class).initializeUnorderedBulkOperation();
+
+        for (Map.Entry<ObjectId, BasicDBObject> entry: itemToIncrements.entrySet()) {
+            bulk.find(new BasicDBObject("_id", entry.getKey()))
+                .upsert()
+                .updateOne(new BasicDBObject("$inc", entry.getValue().append("version", 1)));
+        }
+
+        bulk.execute();
+    }
+
+    /*
+     * Adds quantity to held if claimed stays within limit, a null limit always succeeds. The
+     * check and the claim are one conditional $inc, so concurrent holds never have to retry
+     * against writes to the same item. The inventory has to have been read with getInventories
+     */
+    public boolean hold(ObjectId itemId, long quantity, Integer limit) {
+        BasicDBObject query = new BasicDBObject("_id", itemId);
+
+        if (limit != null) {
+            query.append("claimed", new BasicDBObject("$lte", limit - quantity));
+        }
+
+        WriteResult result = this.datastore.getCollection(ItemInventory.class).update(
+            query,
+            new BasicDBObject("$inc", new BasicDBObject("held", quantity).append("claimed", quantity).append("version", 1))
+        );
+
+        return result.getN() == 1;
+    }
+
+    public void release(Collection<HoldQuantity> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+
+        BulkWriteOperation bulk = this.datastore.getCollection(ItemInventory.class).initializeUnorderedBulkOperation();
+
+        for (HoldQuantity quantity: quantities) {
+            bulk.find(new BasicDBObject("_id", quantity.itemId))
+                .updateOne(new BasicDBObject(
+                    "$inc",
+                    new BasicDBObject("held", -quantity.quantity)
+                        .append("claimed", -quantity.quantity)
+                        .append("version", 1)
+                ));
+        }
+
+        bulk.execute();
+    }
+
+    /*
+     * An inventory which has never been reconciled, for example one created by an $inc for an
+     * Item which already had transactions, is reconciled before it is returned. So is one
+     * written before claimed was kept
+     */
+    public Map<ObjectId, ItemInventory> getInventories(Collection<ObjectId> itemIds) {
+        Map<ObjectId, ItemInventory> result = this.query(itemIds);
+
+        List<ObjectId> unreconciled = itemIds.stream()
+            .filter(id -> !result.containsKey(id) || result.get(id).timeReconciled == null || result.get(id).claimed == null)
+            .collect(Collectors.toList());
+
+        if (!unreconciled.isEmpty()) {
+            this.reconcile(unreconciled);
+            result.putAll(this.query(unreconciled));
+        }
+
+        for (ObjectId itemId: itemIds) {
+            if (!result.containsKey(itemId)) {
+                ItemInventory inventory = new ItemInventory();
+                inventory.id = itemId;
+                result.put(itemId, inventory);
+            }
+        }
+
+        return result;
+    }
+
+    /*
+     * Totals come from ItemInventory, the sums for userId only read that user's transactions
+     */
+    public Map<ObjectId, ItemCount> getItemCounts(Collection<ObjectId> itemIds, String userId) {
+        Map<ObjectId, ItemCount> result = new HashMap<>();
+
+        for (ItemInventory inventory: this.getInventories(itemIds).values()) {
+            ItemCount count = new ItemCount();
+            count.itemId = inventory.id;
+            count.count = inventory.getCountedCount();
+            count.quantity = inventory.getCountedQuantity();
+            count.held = inventory.held;
+            result.put(inventory.id, count);
+        }
+
+        if (userId != null && !itemIds.isEmpty()) {
+            List<Transaction> transactions = this.datastore.createQuery(Transaction.class)
+                .field("itemId").in(itemIds)
+                .field("leaf").equal(true)
+                .field("status").in(Arrays.asList(TransactionService.SETTLED, TransactionService.PENDING))
+                .field("user_id").equal(userId)
+                .project("itemId", true)
+                .project("quantity", true)
+                .asList();
+
+            for (Transaction transaction: transactions) {
+                ItemCount count = result.get(transaction.itemId);
+                count.userCount++;
+                count.userQuantity += transaction.quantity;
+            }
+        }
+
+        return result;
+    }
+
+    public int reconcileRecent(Date since) {
+        Set<ObjectId> recent = new LinkedHashSet<>();
+
+        List<Item> items = this.datastore.createQuery(Item.class)
+            .field("lastActivity").greaterThan(since)
+            .project("id", true)
+            .asList();
+
+        List<ItemInventory> drifted = this.datastore.createQuery(ItemInventory.class)
+            .field("timeDrifted").exists()
+            .project("id", true)
+            .asList();
+
+        for (Item item: items) {
+            recent.add(item.id);
+        }
+
+        for (ItemInventory inventory: drifted) {
+            recent.add(inventory.id);
+        }
+
+        List<ObjectId> itemIds = new ArrayList<>(recent);
+        int corrected = 0;
+
+        for (int index = 0; index < itemIds.size(); index += ItemInventoryService.RECONCILE_BATCH_SIZE) {
+            corrected += this.reconcile(
+                itemIds.subList(index, Math.min(index + ItemInventoryService.RECONCILE_BATCH_SIZE, itemIds.size())),
+                new Date()
+            );
+        }
+
+        return corrected;
+    }
+
+    public int reconcile(Collection<ObjectId> itemIds) {
+        return this.reconcile(itemIds, new Date());
+    }
+
+    /*
+     * Recomputes inventories from the Transaction and InventoryHold collections. Writers save a
+     * transaction or hold before they $inc its inventory, so a difference can be a write still in
+     * flight. It is first recorded against the inventory version and only corrected once that
+     * version has stood for RECONCILE_GRACE, any $inc in between moves the version and defers it.
+     * Inventories which were never reconciled are corrected at once, a count an in flight $inc
+     * adds on top of that is taken back by a later run
+     */
+    public int reconcile(Collection<ObjectId> itemIds, Date now) {
+        if (itemIds.isEmpty()) {
+            return 0;
+        }
+
+        Map<ObjectId, ItemInventory> inventories = this.query(itemIds);
+        Map<ObjectId, ItemInventory> expected = this.transactionService.getItemInventories(itemIds);
+        Map<ObjectId, Long> held = this.aggregateHeld(itemIds);
+
+        BulkWriteOperation bulk = this.datastore.getCollection(ItemInventory.class).initializeUnorderedBulkOperation();
+        BasicDBObject drift = new BasicDBObject("driftedVersion", "").append("timeDrifted", "");
+        int writes = 0;
+        int corrected = 0;
+
+        for (ObjectId itemId: itemIds) {
+            ItemInventory actual = inventories.get(itemId);
+            ItemInventory target = expected.get(itemId);
+
+            if (target == null) {
+                target = new ItemInventory();
+            }
+
+            target.held = held.getOrDefault(itemId, 0L);
+
+            BasicDBObject values = new BasicDBObject("sold", target.sold)
+                .append("pending", target.pending)
+                .append("soldCount", target.soldCount)
+                .append("pendingCount", target.pendingCount)
+                .append("held", target.held)
+                .append("claimed", target.getCountedQuantity() + target.held)
+                .append("statusQuantities", new BasicDBObject(target.statusQuantities))
+                .append("statusCounts", new BasicDBObject(target.statusCounts))
+                .append("timeReconciled", now);
+
+            if (actual == null) {
+                bulk.find(new BasicDBObject("_id", itemId))
+                    .upsert()
+                    .updateOne(new BasicDBObject("$setOnInsert", values.append("version", 0L)));
+                writes++;
+                corrected++;
+            } else if (actual.timeReconciled == null) {
+                bulk.find(new BasicDBObject("_id", itemId).append("version", actual.version))
+                    .updateOne(new BasicDBObject("$set", values));
+                writes++;
+                corrected++;
+            } else if (actual.claimed == null) {
+                bulk.find(new BasicDBObject("_id", itemId).append("version", actual.version))
+                    .updateOne(new BasicDBObject("$set", new BasicDBObject("claimed", actual.getCountedQuantity() + actual.held)));
+                writes++;
+            } else if (this.isEqual(actual, target)) {
+                if (actual.timeDrifted != null) {
+                    bulk.find(new BasicDBObject("_id", itemId).append("version", actual.version))
+                        .updateOne(new BasicDBObject("$unset", drift));
+                    writes++;
+                }
+            } else if (
+                actual.timeDrifted != null &&
+                actual.driftedVersion == actual.version &&
+                now.getTime() - actual.timeDrifted.getTime() >= ItemInventoryService.RECONCILE_GRACE
+            ) {
+                bulk.find(new BasicDBObject("_id", itemId).append("version", actual.version))
+                    .updateOne(new BasicDBObject("$set", values).append("$unset", drift));
+                writes++;
+                corrected++;
+            } else if (actual.timeDrifted == null || actual.driftedVersion != actual.version) {
+                bulk.find(new BasicDBObject("_id", itemId).append("version", actual.version))
+                    .updateOne(new BasicDBObject("$set", new BasicDBObject("driftedVersion", actual.version).append("timeDrifted", now)));
+                writes++;
+            }
+        }
+
+        if (writes > 0) {
+            bulk.execute();
+        }
+
+        if (corrected > 0) {
+            this.corrections.mark(corrected);
+        }
+
+        return corrected;
+    }
+
+    private Map<ObjectId, ItemInventory> query(Collection<ObjectId> itemIds) {
+        return this.datastore.createQuery(ItemInventory.class)
+            .field("id").in(itemIds)
+            .asList()
+            .stream()
+            .collect(Collectors.toMap(inventory -> inventory.id, inventory -> inventory));
+    }
+
+    private Map<ObjectId, Long> aggregateHeld(Collection<ObjectId> itemIds) {
+        DBObject match = new BasicDBObject("quantities.itemId", new BasicDBObject("$in", itemIds));
+        DBObject group = new BasicDBObject("_id", "$quantities.itemId")
+            .append("quantity", new BasicDBObject("$sum", "$quantities.quantity"));
+
+        List<DBObject> pipeline = Arrays.asList(
+            new BasicDBObject("$match", match),
+            new BasicDBObject("$unwind", "$quantities"),
+            new BasicDBObject("$match", match),
+            new BasicDBObject("$group", group)
+        );
+
+        Cursor cursor = this.datastore.getCollection(InventoryHold.class)
+            .aggregate(pipeline, AggregationOptions.builder().outputMode(AggregationOptions.OutputMode.CURSOR).build());
+
+        Map<ObjectId, Long> result = new HashMap<>();
+
+        try {
+            while (cursor.hasNext()) {
+                DBObject document = cursor.next();
+                result.put((ObjectId)document.get("_id"), ((Number)document.get("quantity")).longValue());
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return result;
+    }
+
+    private void addIncrements(Map<ObjectId, BasicDBObject> itemToIncrements, Transaction transaction, int sign) {
+        if (!transaction.leaf || transaction.itemId == null) {
+            return;
+        }
+
+        BasicDBObject increments = itemToIncrements.computeIfAbsent(transaction.itemId, key -> new BasicDBObject());
+
+        this.increment(increments, "statusQuantities." + transaction.status, sign * transaction.quantity);
+        this.increment(increments, "statusCounts." + transaction.status, sign);
+
+        if (transaction.status == TransactionService.SETTLED) {
+            this.increment(increments, "sold", sign * transaction.quantity);
+            this.increment(increments, "soldCount", sign);
+            this.increment(increments, "claimed", sign * transaction.quantity);
+        } else if (transaction.status == TransactionService.PENDING) {
+            this.increment(increments, "pending", sign * transaction.quantity);
+            this.increment(increments, "pendingCount", sign);
+            this.increment(increments, "claimed", sign * transaction.quantity);
+        }
+    }
+
+    private void increment(BasicDBObject increments, String field, long value) {
+        increments.put(field, increments.getLong(field, 0) + value);
+    }
+
+    private boolean isEqual(ItemInventory actual, ItemInventory target) {
+        return actual.sold == target.sold &&
+            actual.pending == target.pending &&
+            actual.soldCount == target.soldCount &&
+            actual.pendingCount == target.pendingCount &&
+            actual.held == target.held &&
+            actual.claimed == actual.getCountedQuantity() + actual.held &&
+            Objects.equals(this.withoutZeros(actual.statusQuantities), this.withoutZeros(target.statusQuantities)) &&
+            Objects.equals(this.withoutZeros(actual.statusCounts), this.withoutZeros(target.statusCounts));
+    }
+
+    private Map<String, Long> withoutZeros(Map<String, Long> values) {
+        Map<String, Long> result = new HashMap<>();
+
+        if (values != null) {
+            for (Map.Entry<String, Long> entry: values.entrySet()) {
+                if (entry.getValue() != null && entry.getValue() != 0) {
+                    result.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        return result;
+    }
+}
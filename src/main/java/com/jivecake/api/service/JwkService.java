@@ -0,0 +1,138 @@
+package com.jivecake.api.service;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+
+import com.auth0.jwk.SigningKeyNotFoundException;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jivecake.api.APIConfiguration;
+
+public class JwkService {
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Client client = ClientBuilder.newClient();
+    private final APIConfiguration configuration;
+    private final Meter hits;
+    private final Meter misses;
+    private final Meter refreshes;
+    private final Meter refreshFailures;
+    private final TokenCacheService tokenCacheService;
+    private volatile Map<String, RSAPublicKey> keys = Collections.emptyMap();
+    private volatile long lastRefresh = 0;
+
+    @Inject
+    public JwkService(APIConfiguration configuration, MetricRegistry metrics, TokenCacheService tokenCacheService) {
+        this.configuration = configuration;
+        this.tokenCacheService = tokenCacheService;
+        this.hits = metrics.meter(MetricRegistry.name(JwkService.class, "hit"));
+        this.misses = metrics.meter(MetricRegistry.name(JwkService.class, "miss"));
+        this.refreshes = metrics.meter(MetricRegistry.name(JwkService.class, "refresh"));
+        this.refreshFailures = metrics.meter(MetricRegistry.name(JwkService.class, "refresh", "failure"));
+        metrics.register(MetricRegistry.name(JwkService.class, "keys"), (Gauge<Integer>) () -> this.keys.size());
+
+        this.executor.scheduleWithFixedDelay(() -> {
+            try {
+                this.refresh();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, 0, this.configuration.oauth.jwksRefreshInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public RSAPublicKey getPublicKey(String kid) throws SigningKeyNotFoundException {
+        RSAPublicKey key = this.keys.get(kid);
+
+        if (key == null) {
+            this.misses.mark();
+
+            try {
+                this.refreshIfAllowed();
+            } catch (IOException | NoSuchAlgorithmException | InvalidKeySpecException e) {
+                throw new SigningKeyNotFoundException("Unable to refresh JSON Web Key Set", e);
+            }
+
+            key = this.keys.get(kid);
+
+            if (key == null) {
+                throw new SigningKeyNotFoundException("No key found with kid " + kid, null);
+            }
+        } else {
+            this.hits.mark();
+        }
+
+        return key;
+    }
+
+    /*
+     * Unknown kids trigger a refetch, but at most once per jwksMinimumRefetchInterval
+     * so a flood of forged tokens cannot turn into a flood of requests to Auth0
+     */
+    private synchronized void refreshIfAllowed() throws IOException, NoSuchAlgorithmException, InvalidKeySpecException {
+        long elapsed = System.currentTimeMillis() - this.lastRefresh;
+
+        if (elapsed >= this.configuration.oauth.jwksMinimumRefetchInterval) {
+            this.refresh();
+        }
+    }
+
+    public synchronized void refresh() throws IOException, NoSuchAlgorithmException, InvalidKeySpecException {
+        this.lastRefresh = System.currentTimeMillis();
+
+        try {
+            JsonNode root = this.mapper.readTree(this.fetch());
+            KeyFactory factory = KeyFactory.getInstance("RSA");
+            Map<String, RSAPublicKey> keys = new HashMap<>();
+
+            for (JsonNode node: root.path("keys")) {
+                if ("RSA".equals(node.path("kty").asText()) && node.hasNonNull("kid")) {
+                    BigInteger modulus = new BigInteger(1, Base64.getUrlDecoder().decode(node.get("n").asText()));
+                    BigInteger exponent = new BigInteger(1, Base64.getUrlDecoder().decode(node.get("e").asText()));
+
+                    RSAPublicKey key = (RSAPublicKey)factory.generatePublic(new RSAPublicKeySpec(modulus, exponent));
+                    keys.put(node.get("kid").asText(), key);
+                }
+            }
+
+            if (keys.isEmpty()) {
+                throw new IOException("JSON Web Key Set contains no RSA keys");
+            }
+
+            if (!keys.keySet().equals(this.keys.keySet())) {
+                this.tokenCacheService.clear();
+            }
+
+            this.keys = Collections.unmodifiableMap(keys);
+            this.refreshes.mark();
+        } catch (IOException | NoSuchAlgorithmException | InvalidKeySpecException | RuntimeException e) {
+            this.refreshFailures.mark();
+            throw e;
+        }
+    }
+
+    protected String fetch() {
+        return this.client
+            .target("https://" + this.configuration.oauth.domain + "/.well-known/jwks.json")
+            .request()
+            .get(String.class);
+    }
+}
@@ -0,0 +1,198 @@
+package com.jivecake.api.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.RSAKeyProvider;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.jivecake.api.APIConfiguration;
+
+public class KeyRingService {
+    private static final String PUBLIC_SUFFIX = ".key.pub";
+    private static final String PRIVATE_SUFFIX = ".key";
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Path directory;
+    private final String signingKeyId;
+    private final Algorithm algorithm;
+    private final Meter reloads;
+    private final Meter reloadFailures;
+    private final TokenCacheService tokenCacheService;
+    private volatile KeyRing ring = new KeyRing(Collections.emptyMap(), null);
+
+    @Inject
+    public KeyRingService(APIConfiguration configuration, MetricRegistry metrics, TokenCacheService tokenCacheService) {
+        this.tokenCacheService = tokenCacheService;
+        this.directory = Paths.get(configuration.oauth.keyDirectory);
+        this.signingKeyId = configuration.oauth.signingKeyId;
+        this.reloads = metrics.meter(MetricRegistry.name(KeyRingService.class, "reload"));
+        this.reloadFailures = metrics.meter(MetricRegistry.name(KeyRingService.class, "reload", "failure"));
+
+        this.algorithm = Algorithm.RSA256(new RSAKeyProvider() {
+            @Override
+            public RSAPublicKey getPublicKeyById(String kid) {
+                return KeyRingService.this.ring.publicKeys.get(kid == null ? KeyRingService.this.signingKeyId : kid);
+            }
+
+            @Override
+            public RSAPrivateKey getPrivateKey() {
+                return KeyRingService.this.ring.privateKey;
+            }
+
+            @Override
+            public String getPrivateKeyId() {
+                return KeyRingService.this.signingKeyId;
+            }
+        });
+
+        try {
+            this.reload();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        this.watch();
+    }
+
+    public Algorithm getAlgorithm() {
+        return this.algorithm;
+    }
+
+    public String getSigningKeyId() {
+        return this.signingKeyId;
+    }
+
+    public Map<String, RSAPublicKey> getPublicKeys() {
+        return this.ring.publicKeys;
+    }
+
+    /*
+     * Every <kid>.key.pub in the directory is an active verification key, <kid>.key is its
+     * PKCS8 private key. Keys are swapped in as one snapshot so a reader never sees a
+     * public key without the matching private key
+     */
+    public synchronized void reload() throws IOException, NoSuchAlgorithmException, InvalidKeySpecException {
+        try {
+            KeyFactory factory = KeyFactory.getInstance("RSA");
+            Map<String, RSAPublicKey> publicKeys = new HashMap<>();
+            RSAPrivateKey privateKey = null;
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, "*" + KeyRingService.PUBLIC_SUFFIX)) {
+                for (Path path: stream) {
+                    String fileName = path.getFileName().toString();
+                    String kid = fileName.substring(0, fileName.length() - KeyRingService.PUBLIC_SUFFIX.length());
+
+                    RSAPublicKey publicKey = (RSAPublicKey)factory.generatePublic(
+                        new X509EncodedKeySpec(this.readPem(path))
+                    );
+                    publicKeys.put(kid, publicKey);
+                }
+            }
+
+            Path privatePath = this.directory.resolve(this.signingKeyId + KeyRingService.PRIVATE_SUFFIX);
+
+            if (Files.exists(privatePath)) {
+                privateKey = (RSAPrivateKey)factory.generatePrivate(
+                    new PKCS8EncodedKeySpec(this.readPem(privatePath))
+                );
+            }
+
+            this.ring = new KeyRing(Collections.unmodifiableMap(publicKeys), privateKey);
+            this.tokenCacheService.clear();
+            this.reloads.mark();
+        } catch (IOException | NoSuchAlgorithmException | InvalidKeySpecException | RuntimeException e) {
+            this.reloadFailures.mark();
+            throw e;
+        }
+    }
+
+    private byte[] readPem(Path path) throws IOException {
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+
+        String body = lines.stream()
+            .filter(line -> !line.startsWith("-----"))
+            .map(String::trim)
+            .collect(Collectors.joining(""));
+
+        return Base64.getDecoder().decode(body);
+    }
+
+    private void watch() {
+        WatchService watcher;
+
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            this.directory.register(
+                watcher,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE
+            );
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        this.executor.execute(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key;
+
+                try {
+                    key = watcher.take();
+                } catch (InterruptedException | ClosedWatchServiceException e) {
+                    break;
+                }
+
+                key.pollEvents();
+
+                try {
+                    this.reload();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+
+                if (!key.reset()) {
+                    break;
+                }
+            }
+        });
+    }
+
+    private static class KeyRing {
+        private final Map<String, RSAPublicKey> publicKeys;
+        private final RSAPrivateKey privateKey;
+
+        private KeyRing(Map<String, RSAPublicKey> publicKeys, RSAPrivateKey privateKey) {
+            this.publicKeys = publicKeys;
+            this.privateKey = privateKey;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.jivecake.api.service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.mongodb.morphia.Datastore;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.jivecake.api.APIConfiguration;
+import com.jivecake.api.model.Request;
+import com.jivecake.api.model.RequestRollup;
+import com.jivecake.api.model.UserInterfaceEvent;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+
+import io.dropwizard.lifecycle.Managed;
+
+public class LogService implements Managed {
+    public static final long MINUTE = 1000 * 60;
+    public static final long[] LATENCY_BUCKETS = {10, 50, 100, 250, 500, 1000, 2500, 5000};
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final Map<String, Rollup> rollups = new ConcurrentHashMap<>();
+    private final List<Rollup> retired = new ArrayList<>();
+    private final BatchWriter<Request> requests;
+    private final BatchWriter<UserInterfaceEvent> userInterfaceEvents;
+    private final Datastore datastore;
+    private final APIConfiguration configuration;
+    private final Meter sampled;
+
+    public LogService(
+        Datastore datastore,
+        PartitionService partitionService,
+        APIConfiguration configuration,
+        MetricRegistry metrics
+    ) {
+        this.datastore = datastore;
+        this.configuration = configuration;
+        this.sampled = metrics.meter(MetricRegistry.name(LogService.class, "sampled"));
+        this.requests = new BatchWriter<>(
+            "request",
+            batch -> partitionService.insert(Request.class, batch, request -> request.timeCreated),
+            configuration.log.request,
+            metrics
+        );
+        this.userInterfaceEvents = new BatchWriter<>(
+            "userInterfaceEvent",
+            batch -> partitionService.insert(UserInterfaceEvent.class, batch, event -> event.timeCreated),
+            configuration.log.userInterfaceEvent,
+            metrics
+        );
+
+        this.executor.scheduleWithFixedDelay(() -> {
+            try {
+                this.flushRollups(System.currentTimeMillis() / LogService.MINUTE * LogService.MINUTE);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, configuration.log.rollupInterval, configuration.log.rollupInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean save(Request request) {
+        return this.requests.add(request);
+    }
+
+    public boolean save(UserInterfaceEvent event) {
+        return this.userInterfaceEvents.add(event);
+    }
+
+    /*
+     * Every request is counted in its minute rollup, but only errors and a sampleRate
+     * fraction of the rest are kept as full Request documents
+     */
+    public boolean isSampled(int status) {
+        boolean sample = status >= 400 || ThreadLocalRandom.current().nextDouble() < this.configuration.log.sampleRate;
+
+        if (sample) {
+            this.sampled.mark();
+        }
+
+        return sample;
+    }
+
+    public void record(String path, String method, int status, long latency, long requestBytes, long responseBytes, long time) {
+        long minute = time / LogService.MINUTE * LogService.MINUTE;
+        String key = minute + "|" + method + "|" + status + "|" + path;
+
+        Rollup rollup = this.rollups.get(key);
+
+        if (rollup == null) {
+            Rollup created = new Rollup(path, method, status, minute);
+            rollup = this.rollups.putIfAbsent(key, created);
+
+            if (rollup == null) {
+                rollup = created;
+            }
+        }
+
+        rollup.count.increment();
+        rollup.latency.add(latency);
+        rollup.requestBytes.add(Math.max(requestBytes, 0));
+        rollup.responseBytes.add(Math.max(responseBytes, 0));
+        rollup.latencyBuckets[LogService.getLatencyBucket(latency)].increment();
+    }
+
+    public static int getLatencyBucket(long latency) {
+        for (int index = 0; index < LogService.LATENCY_BUCKETS.length; index++) {
+            if (latency <= LogService.LATENCY_BUCKETS[index]) {
+                return index;
+            }
+        }
+
+        return LogService.LATENCY_BUCKETS.length;
+    }
+
+    public static String getLatencyBucketName(int index) {
+        return index < LogService.LATENCY_BUCKETS.length ? "le" + LogService.LATENCY_BUCKETS[index] : "inf";
+    }
+
+    /*
+     * Rollups for minutes before the given time are removed from memory, and written to
+     * RequestRollup with a single bulk write on the following call. A record which looked up a
+     * rollup just before it was removed has long finished with it by then
+     */
+    public void flushRollups(long before) {
+        List<Rollup> completed = new ArrayList<>(this.retired);
+        this.retired.clear();
+
+        for (Map.Entry<String, Rollup> entry: this.rollups.entrySet()) {
+            Rollup rollup = entry.getValue();
+
+            if (rollup.minute < before && this.rollups.remove(entry.getKey(), rollup)) {
+                this.retired.add(rollup);
+            }
+        }
+
+        if (completed.isEmpty()) {
+            return;
+        }
+
+        BulkWriteOperation bulk = this.datastore.getCollection(RequestRollup.class).initializeUnorderedBulkOperation();
+
+        for (Rollup rollup: completed) {
+            BasicDBObject increments = new BasicDBObject("count", rollup.count.sum())
+                .append("latency", rollup.latency.sum())
+                .append("requestBytes", rollup.requestBytes.sum())
+                .append("responseBytes", rollup.responseBytes.sum());
+
+            for (int index = 0; index < rollup.latencyBuckets.length; index++) {
+                long count = rollup.latencyBuckets[index].sum();
+
+                if (count > 0) {
+                    increments.append("latencyBuckets." + LogService.getLatencyBucketName(index), count);
+                }
+            }
+
+            BasicDBObject insert = new BasicDBObject("path", rollup.path)
+                .append("method", rollup.method)
+                .append("status", rollup.status)
+                .append("minute", new Date(rollup.minute));
+
+            String id = rollup.minute + "|" + rollup.method + "|" + rollup.status + "|" + rollup.path;
+
+            bulk.find(new BasicDBObject("_id", id))
+                .upsert()
+                .updateOne(new BasicDBObject("$inc", increments).append("$setOnInsert", insert));
+        }
+
+        bulk.execute();
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        this.executor.shutdown();
+        this.executor.awaitTermination(5, TimeUnit.SECONDS);
+        this.flushRollups(Long.MAX_VALUE);
+        this.flushRollups(Long.MAX_VALUE);
+        this.requests.stop();
+        this.userInterfaceEvents.stop();
+    }
+
+    private static class Rollup {
+        private final String path;
+        private final String method;
+        private final int status;
+        private final long minute;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder latency = new LongAdder();
+        private final LongAdder requestBytes = new LongAdder();
+        private final LongAdder responseBytes = new LongAdder();
+        private final LongAdder[] latencyBuckets = new LongAdder[LogService.LATENCY_BUCKETS.length + 1];
+
+        private Rollup(String path, String method, int status, long minute) {
+            this.path = path;
+            this.method = method;
+            this.status = status;
+            this.minute = minute;
+
+            for (int index = 0; index < this.latencyBuckets.length; index++) {
+                this.latencyBuckets[index] = new LongAdder();
+            }
+        }
+    }
+}
@@ -26,20 +26,30 @@ import com.jivecake.api.model.OrganizationInvitation;
 import com.jivecake.api.model.PaymentProfile;
 import com.jivecake.api.model.Permission;
 import com.jivecake.api.model.Transaction;
+import com.jivecake.api.model.UserData;
 
 public class NotificationService {
     private final OrganizationService organizationService;
+    private final PermissionService permissionService;
+    private final EntityCacheService entityCacheService;
     private final ClientConnectionService clientConnectionService;
+    private final AggregatedEventCacheService aggregatedEventCacheService;
     private final Datastore datastore;
 
     @Inject
     public NotificationService(
         OrganizationService organizationService,
+        PermissionService permissionService,
+        EntityCacheService entityCacheService,
         Datastore datastore,
-        ClientConnectionService clientConnectionService
+        ClientConnectionService clientConnectionService,
+        AggregatedEventCacheService aggregatedEventCacheService
     ) {
         this.organizationService = organizationService;
+        this.permissionService = permissionService;
+        this.entityCacheService = entityCacheService;
         this.clientConnectionService = clientConnectionService;
+        this.aggregatedEventCacheService = aggregatedEventCacheService;
         this.datastore = datastore;
     }
 
@@ -58,6 +68,9 @@ public class NotificationService {
             ObjectId organizationId = null;
             List<String> userIds = new ArrayList<>();
 
+            this.entityCacheService.invalidate(entity);
+            this.aggregatedEventCacheService.update(entity, name);
+
             if (entity instanceof Item) {
                 organizationId = ((Item)entity).organizationId;
             } else if (entity instanceof Event) {
@@ -66,6 +79,7 @@ public class NotificationService {
                 Permission permission = (Permission)entity;
 
                 userIds.add(permission.user_id);
+                this.permissionService.invalidate(permission.user_id);
 
                 if (permission.objectClass.equals(this.organizationService.getPermissionObjectClass())) {
                     organizationId = permission.objectId;
@@ -94,6 +108,11 @@ public class NotificationService {
                 } else {
                     throw new IllegalArgumentException(entity + " is not a valid class for notification");
                 }
+            } else if (entity instanceof UserData) {
+                UserData userData = (UserData)entity;
+
+                organizationId = userData.organizationId;
+                userIds.add(userData.userId);
             } else if (entity instanceof OrganizationInvitation) {
                 OrganizationInvitation invitation = (OrganizationInvitation)entity;
 
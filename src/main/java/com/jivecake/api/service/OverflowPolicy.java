@@ -0,0 +1,7 @@
+package com.jivecake.api.service;
+
+public enum OverflowPolicy {
+    DROP,
+    SAMPLE,
+    BLOCK
+}
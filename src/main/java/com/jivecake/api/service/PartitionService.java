@@ -0,0 +1,172 @@
+package com.jivecake.api.service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.mongodb.morphia.AdvancedDatastore;
+import org.mongodb.morphia.Datastore;
+import org.mongodb.morphia.query.FindOptions;
+import org.mongodb.morphia.query.Query;
+
+import com.jivecake.api.APIConfiguration;
+import com.jivecake.api.request.Paging;
+
+public class PartitionService {
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final Set<String> indexed = ConcurrentHashMap.newKeySet();
+    private final AdvancedDatastore datastore;
+    private final APIConfiguration configuration;
+
+    public PartitionService(Datastore datastore, APIConfiguration configuration) {
+        this.datastore = (AdvancedDatastore)datastore;
+        this.configuration = configuration;
+    }
+
+    public String getCollection(Class<?> clazz, Date time) {
+        LocalDate day = Instant.ofEpochMilli(time.getTime()).atZone(ZoneOffset.UTC).toLocalDate();
+        return clazz.getSimpleName() + "_" + day.format(PartitionService.FORMAT);
+    }
+
+    /*
+     * Daily partitions overlapping [from, to], oldest first. An open start is bounded by
+     * retention since older partitions have been dropped
+     */
+    public List<String> getCollections(Class<?> clazz, Date from, Date to) {
+        long now = System.currentTimeMillis();
+        long retention = this.configuration.log.retentionDays * LogService.MINUTE * 60 * 24;
+
+        LocalDate start = Instant.ofEpochMilli(from == null ? now - retention : Math.max(from.getTime(), now - retention))
+            .atZone(ZoneOffset.UTC)
+            .toLocalDate();
+        LocalDate end = Instant.ofEpochMilli(to == null ? now : Math.min(to.getTime(), now))
+            .atZone(ZoneOffset.UTC)
+            .toLocalDate();
+
+        List<String> result = new ArrayList<>();
+
+        for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+            result.add(clazz.getSimpleName() + "_" + day.format(PartitionService.FORMAT));
+        }
+
+        return result;
+    }
+
+    public <T> void insert(Class<T> clazz, List<T> entities, Function<T, Date> time) {
+        Map<String, List<T>> collectionToEntities = new LinkedHashMap<>();
+
+        for (T entity: entities) {
+            String collection = this.getCollection(clazz, time.apply(entity));
+            collectionToEntities.computeIfAbsent(collection, key -> new ArrayList<>()).add(entity);
+        }
+
+        for (Map.Entry<String, List<T>> entry: collectionToEntities.entrySet()) {
+            if (this.indexed.add(entry.getKey())) {
+                this.datastore.ensureIndexes(entry.getKey(), clazz);
+            }
+
+            this.datastore.insert(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /*
+     * Walks partitions in timeCreated order and stops once limit entities are found, so a
+     * page only counts and reads the partitions it needs. The count is exact when every
+     * partition in range was read, otherwise it is a lower bound which is kept above
+     * skip + limit so that a client still asks for the next page
+     */
+    public <T> Paging<T> search(
+        Class<T> clazz,
+        Date from,
+        Date to,
+        boolean descending,
+        int skip,
+        int limit,
+        Consumer<Query<T>> criteria
+    ) {
+        List<String> collections = this.getCollections(clazz, from, to);
+
+        if (descending) {
+            Collections.reverse(collections);
+        }
+
+        List<T> entities = new ArrayList<>();
+        long count = 0;
+        int remainingSkip = skip;
+
+        int read = 0;
+
+        for (String collection: collections) {
+            if (entities.size() >= limit) {
+                break;
+            }
+
+            read++;
+
+            Query<T> query = this.datastore.createQuery(collection, clazz)
+                .order(descending ? "-timeCreated" : "timeCreated");
+
+            if (from != null) {
+                query.field("timeCreated").greaterThan(from);
+            }
+
+            if (to != null) {
+                query.field("timeCreated").lessThan(to);
+            }
+
+            criteria.accept(query);
+
+            long partitionCount = query.count();
+            count += partitionCount;
+
+            if (partitionCount > remainingSkip) {
+                FindOptions options = new FindOptions()
+                    .skip(remainingSkip)
+                    .limit(limit - entities.size());
+
+                entities.addAll(query.asList(options));
+                remainingSkip = 0;
+            } else {
+                remainingSkip -= partitionCount;
+            }
+        }
+
+        if (read < collections.size()) {
+            count = Math.max(count, skip + entities.size() + 1);
+        }
+
+        return new Paging<>(entities, count);
+    }
+
+    public void dropExpired(Class<?> clazz) {
+        String prefix = clazz.getSimpleName() + "_";
+        LocalDate oldest = LocalDate.now(ZoneOffset.UTC).minusDays(this.configuration.log.retentionDays);
+
+        for (String name: this.datastore.getDB().getCollectionNames()) {
+            if (name.startsWith(prefix)) {
+                try {
+                    LocalDate day = LocalDate.parse(name.substring(prefix.length()), PartitionService.FORMAT);
+
+                    if (day.isBefore(oldest)) {
+                        this.datastore.getDB().getCollection(name).drop();
+                        this.indexed.remove(name);
+                    }
+                } catch (DateTimeParseException e) {
+                }
+            }
+        }
+    }
+}
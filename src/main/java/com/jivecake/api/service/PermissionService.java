@@ -1,33 +1,65 @@
 package com.jivecake.api.service;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 
 import org.bson.types.ObjectId;
 import org.mongodb.morphia.Datastore;
-import org.mongodb.morphia.query.CriteriaContainer;
-import org.mongodb.morphia.query.Query;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.jivecake.api.APIConfiguration;
 import com.jivecake.api.model.Application;
 import com.jivecake.api.model.Event;
 import com.jivecake.api.model.Item;
 import com.jivecake.api.model.Organization;
 import com.jivecake.api.model.PaymentProfile;
 import com.jivecake.api.model.Permission;
+import com.jivecake.api.model.PermissionGeneration;
 import com.jivecake.api.model.Transaction;
+import com.mongodb.BasicDBObject;
 
 public class PermissionService {
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final Map<String, Grants> grants = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private long sharedGeneration = -1;
     private final Datastore datastore;
+    private final long ttl;
+    private final Meter hits;
+    private final Meter misses;
+    private final Meter invalidations;
 
     @Inject
-    public PermissionService(Datastore datastore) {
+    public PermissionService(Datastore datastore, APIConfiguration configuration, MetricRegistry metrics) {
         this.datastore = datastore;
+        this.ttl = configuration.cache.permissionTtl;
+        this.hits = metrics.meter(MetricRegistry.name(PermissionService.class, "hit"));
+        this.misses = metrics.meter(MetricRegistry.name(PermissionService.class, "miss"));
+        this.invalidations = metrics.meter(MetricRegistry.name(PermissionService.class, "invalidation"));
+        metrics.register(MetricRegistry.name(PermissionService.class, "size"), (Gauge<Integer>) () -> this.grants.size());
+
+        this.executor.scheduleWithFixedDelay(this::evictExpired, this.ttl, this.ttl, TimeUnit.MILLISECONDS);
+        this.executor.scheduleWithFixedDelay(() -> {
+            try {
+                this.poll();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, 0, configuration.cache.permissionPollInterval, TimeUnit.MILLISECONDS);
     }
 
     public boolean hasRead(String sub, Collection<?> entities) {
@@ -72,54 +104,123 @@ public class PermissionService {
             throw new IllegalArgumentException("argument \"entities\" contains more than 1 Application");
         }
 
-        Query<Permission> query = this.datastore.createQuery(Permission.class);
-        List<CriteriaContainer> ors = new ArrayList<>();
+        if (organizationIds.isEmpty() && applicationIds.isEmpty()) {
+            return true;
+        }
 
-        for (ObjectId organizationId: organizationIds) {
-            List<CriteriaContainer> criterias = new ArrayList<>(Arrays.asList(
-                query.criteria("user_id").equal(sub),
-                query.criteria("objectId").equal(organizationId),
-                query.criteria("objectClass").equal("Organization")
-            ));
+        Grants grants = this.getGrants(sub);
 
-            if (read) {
-                criterias.add(query.criteria("read").equal(true));
-            }
+        return organizationIds.stream().allMatch(id -> grants.allows(grants.organizations.get(id), read, write)) &&
+            applicationIds.stream().allMatch(id -> grants.allows(grants.applications.get(id), read, write));
+    }
 
-            if (write) {
-                criterias.add(query.criteria("write").equal(true));
-            }
+    public void invalidate(String sub) {
+        this.generation.incrementAndGet();
+        this.grants.remove(sub);
+        this.invalidations.mark();
+        this.publish();
+    }
+
+    public void invalidateAll() {
+        this.clear();
+        this.publish();
+    }
 
-            ors.add(
-                query.and(criterias.toArray(new CriteriaContainer[]{}))
-            );
+    /*
+     * Other nodes only learn about an invalidation through PermissionGeneration, a change there
+     * drops every cached grant since the document does not say which user changed. Grants are
+     * stale on another node for at most one poll interval
+     */
+    public synchronized void poll() {
+        PermissionGeneration shared = this.datastore.get(PermissionGeneration.class, PermissionGeneration.ID);
+        long generation = shared == null ? 0 : shared.generation;
+
+        if (generation != this.sharedGeneration) {
+            this.clear();
+            this.sharedGeneration = generation;
         }
+    }
 
-        for (ObjectId applicationId: applicationIds) {
-            List<CriteriaContainer> criterias = new ArrayList<>(Arrays.asList(
-                query.criteria("user_id").equal(sub),
-                query.criteria("objectId").equal(applicationId),
-                query.criteria("objectClass").equal("Application")
-            ));
+    private void publish() {
+        this.datastore.getCollection(PermissionGeneration.class).update(
+            new BasicDBObject("_id", PermissionGeneration.ID),
+            new BasicDBObject("$inc", new BasicDBObject("generation", 1L)),
+            true,
+            false
+        );
+    }
 
-            if (read) {
-                criterias.add(query.criteria("read").equal(true));
-            }
+    private void clear() {
+        this.generation.incrementAndGet();
+        this.grants.clear();
+        this.invalidations.mark();
+    }
+
+    /*
+     * A load which overlaps an invalidation is used for this call but not cached, so a grant
+     * read just before a Permission write can never outlive that write
+     */
+    private Grants getGrants(String sub) {
+        long now = System.currentTimeMillis();
+        Grants grants = this.grants.get(sub);
+
+        if (grants != null && now - grants.timeLoaded < this.ttl) {
+            this.hits.mark();
+            return grants;
+        }
 
-            if (write) {
-                criterias.add(query.criteria("write").equal(true));
+        this.misses.mark();
+
+        long generation = this.generation.get();
+        grants = new Grants(now);
+
+        List<Permission> permissions = this.datastore.createQuery(Permission.class)
+            .field("user_id").equal(sub)
+            .asList();
+
+        for (Permission permission: permissions) {
+            Map<ObjectId, Integer> target;
+
+            if ("Organization".equals(permission.objectClass)) {
+                target = grants.organizations;
+            } else if ("Application".equals(permission.objectClass)) {
+                target = grants.applications;
+            } else {
+                continue;
             }
 
-            ors.add(
-                query.and(criterias.toArray(new CriteriaContainer[]{}))
-            );
+            int bits = (permission.read ? Grants.READ : 0) | (permission.write ? Grants.WRITE : 0);
+            target.merge(permission.objectId, bits, (first, second) -> first | second);
+        }
+
+        if (this.generation.get() == generation) {
+            this.grants.put(sub, grants);
         }
 
-        if (!ors.isEmpty()) {
-            query.or(ors.toArray(new CriteriaContainer[]{}));
+        return grants;
+    }
+
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        this.grants.values().removeIf(grants -> now - grants.timeLoaded >= this.ttl);
+    }
+
+    private static class Grants {
+        private static final int READ = 1;
+        private static final int WRITE = 2;
+
+        private final Map<ObjectId, Integer> organizations = new HashMap<>();
+        private final Map<ObjectId, Integer> applications = new HashMap<>();
+        private final long timeLoaded;
+
+        private Grants(long timeLoaded) {
+            this.timeLoaded = timeLoaded;
         }
 
-        int entitiesSize = applicationIds.size() + organizationIds.size();
-        return query.count() >= entitiesSize;
+        private boolean allows(Integer bits, boolean read, boolean write) {
+            return bits != null &&
+                (!read || (bits & Grants.READ) != 0) &&
+                (!write || (bits & Grants.WRITE) != 0);
+        }
     }
-}
\ No newline at end of file
+}
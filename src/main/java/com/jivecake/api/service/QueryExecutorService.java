@@ -0,0 +1,144 @@
+package com.jivecake.api.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import javax.inject.Inject;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.jivecake.api.APIConfiguration;
+
+public class QueryExecutorService {
+    private final ThreadPoolExecutor executor;
+    private final MetricRegistry metrics;
+    private final long timeout;
+    private final Meter timeouts;
+    private final Meter failures;
+
+    @Inject
+    public QueryExecutorService(APIConfiguration configuration, MetricRegistry metrics) {
+        /*
+         * Once every thread is busy and the queue is full a query runs on the thread which
+         * submitted it, a saturated pool falls back to running queries one after another
+         */
+        this.executor = new ThreadPoolExecutor(
+            configuration.query.threads,
+            configuration.query.threads,
+            60,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(configuration.query.queueSize),
+            new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+        this.executor.allowCoreThreadTimeOut(true);
+        this.metrics = metrics;
+        this.timeout = configuration.query.timeout;
+        this.timeouts = metrics.meter(MetricRegistry.name(QueryExecutorService.class, "timeout"));
+        this.failures = metrics.meter(MetricRegistry.name(QueryExecutorService.class, "failure"));
+        metrics.register(MetricRegistry.name(QueryExecutorService.class, "active"), (Gauge<Integer>) () -> this.executor.getActiveCount());
+        metrics.register(MetricRegistry.name(QueryExecutorService.class, "queue"), (Gauge<Integer>) () -> this.executor.getQueue().size());
+    }
+
+    public QueryGroup group(String name) {
+        return this.group(name, this.timeout);
+    }
+
+    /*
+     * A timeout of 0 or less gives a group without a deadline
+     */
+    public QueryGroup group(String name, long timeout) {
+        return new QueryGroup(name, timeout > 0, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout));
+    }
+
+    /*
+     * The queries of one request share a deadline. A failed or late query cancels every other
+     * query of the group, as does closing it, so queries of an abandoned request which have not
+     * started never run. Running queries are not interrupted, the driver discards a pooled
+     * connection whose thread is interrupted. A missed deadline is a CompletionException
+     * caused by a TimeoutException, ExceptionMapper answers it with 503
+     */
+    public class QueryGroup implements AutoCloseable {
+        private final String name;
+        private final boolean bounded;
+        private final long deadline;
+        private final List<Future<?>> futures = new ArrayList<>();
+
+        private QueryGroup(String name, boolean bounded, long deadline) {
+            this.name = name;
+            this.bounded = bounded;
+            this.deadline = deadline;
+        }
+
+        public <T> Future<T> submit(String query, Supplier<T> supplier) {
+            Timer timer = QueryExecutorService.this.metrics.timer(
+                MetricRegistry.name(QueryExecutorService.class, this.name, query)
+            );
+
+            Future<T> future = QueryExecutorService.this.executor.submit(() -> {
+                Timer.Context context = timer.time();
+
+                try {
+                    return supplier.get();
+                } finally {
+                    context.stop();
+                }
+            });
+
+            synchronized (this.futures) {
+                this.futures.add(future);
+            }
+
+            return future;
+        }
+
+        public <T> T get(Future<T> future) {
+            try {
+                return this.bounded ? future.get(this.deadline - System.nanoTime(), TimeUnit.NANOSECONDS) : future.get();
+            } catch (TimeoutException e) {
+                QueryExecutorService.this.timeouts.mark();
+                this.cancel();
+                throw new CompletionException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                this.cancel();
+                throw new CompletionException(e);
+            } catch (ExecutionException e) {
+                QueryExecutorService.this.failures.mark();
+                this.cancel();
+
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException)e.getCause();
+                }
+
+                if (e.getCause() instanceof Error) {
+                    throw (Error)e.getCause();
+                }
+
+                throw new CompletionException(e.getCause());
+            }
+        }
+
+        public void cancel() {
+            synchronized (this.futures) {
+                for (Future<?> future: this.futures) {
+                    future.cancel(false);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            this.cancel();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.jivecake.api.service;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.jivecake.api.APIConfiguration;
+
+public class TokenCacheService {
+    private final int maximumSize;
+    private final Map<String, DecodedJWT> tokens;
+    private final Meter hits;
+    private final Meter misses;
+    private final Meter evictions;
+
+    @Inject
+    public TokenCacheService(APIConfiguration configuration, MetricRegistry metrics) {
+        this.maximumSize = configuration.oauth.verifiedTokenCacheSize;
+        this.hits = metrics.meter(MetricRegistry.name(TokenCacheService.class, "hit"));
+        this.misses = metrics.meter(MetricRegistry.name(TokenCacheService.class, "miss"));
+        this.evictions = metrics.meter(MetricRegistry.name(TokenCacheService.class, "eviction"));
+
+        this.tokens = new LinkedHashMap<String, DecodedJWT>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DecodedJWT> eldest) {
+                boolean remove = this.size() > TokenCacheService.this.maximumSize;
+
+                if (remove) {
+                    TokenCacheService.this.evictions.mark();
+                }
+
+                return remove;
+            }
+        };
+
+        metrics.register(MetricRegistry.name(TokenCacheService.class, "size"), (Gauge<Integer>) () -> this.size());
+        metrics.register(MetricRegistry.name(TokenCacheService.class, "hit", "ratio"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(
+                    TokenCacheService.this.hits.getFiveMinuteRate(),
+                    TokenCacheService.this.hits.getFiveMinuteRate() + TokenCacheService.this.misses.getFiveMinuteRate()
+                );
+            }
+        });
+    }
+
+    /*
+     * Keyed by a SHA-256 digest so raw bearer tokens are never held in memory longer than the request
+     */
+    public DecodedJWT get(String token) {
+        String digest = DigestUtils.sha256Hex(token);
+        DecodedJWT jwt;
+
+        synchronized (this.tokens) {
+            jwt = this.tokens.get(digest);
+
+            if (jwt != null && this.isExpired(jwt)) {
+                this.tokens.remove(digest);
+                jwt = null;
+            }
+        }
+
+        if (jwt == null) {
+            this.misses.mark();
+        } else {
+            this.hits.mark();
+        }
+
+        return jwt;
+    }
+
+    public void put(String token, DecodedJWT jwt) {
+        if (jwt.getExpiresAt() == null || this.isExpired(jwt) || this.maximumSize < 1) {
+            return;
+        }
+
+        String digest = DigestUtils.sha256Hex(token);
+
+        synchronized (this.tokens) {
+            this.tokens.put(digest, jwt);
+        }
+    }
+
+    public void clear() {
+        synchronized (this.tokens) {
+            this.tokens.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (this.tokens) {
+            return this.tokens.size();
+        }
+    }
+
+    private boolean isExpired(DecodedJWT jwt) {
+        return jwt.getExpiresAt().before(new Date());
+    }
+}
@@ -5,6 +5,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
@@ -27,8 +29,13 @@ import org.mongodb.morphia.query.Query;
 import com.auth0.json.mgmt.users.User;
 import com.jivecake.api.model.Event;
 import com.jivecake.api.model.Item;
+import com.jivecake.api.model.ItemInventory;
 import com.jivecake.api.model.Transaction;
 import com.jivecake.api.model.UserData;
+import com.mongodb.AggregationOptions;
+import com.mongodb.BasicDBObject;
+import com.mongodb.Cursor;
+import com.mongodb.DBObject;
 
 public class TransactionService {
     public static final int PAYMENT_EQUAL = 0;
@@ -92,6 +99,56 @@ public class TransactionService {
         return query;
     }
 
+    /*
+     * Sums the leaf transactions of every item per status with one $group on the server, items
+     * without leaf transactions are left out. ItemInventoryService reconciles against this
+     */
+    public Map<ObjectId, ItemInventory> getItemInventories(Collection<ObjectId> itemIds) {
+        DBObject match = new BasicDBObject("itemId", new BasicDBObject("$in", itemIds))
+            .append("leaf", true);
+        DBObject group = new BasicDBObject("_id", new BasicDBObject("itemId", "$itemId").append("status", "$status"))
+            .append("count", new BasicDBObject("$sum", 1))
+            .append("quantity", new BasicDBObject("$sum", "$quantity"));
+
+        List<DBObject> pipeline = Arrays.asList(
+            new BasicDBObject("$match", match),
+            new BasicDBObject("$group", group)
+        );
+
+        Cursor cursor = this.datastore.getCollection(Transaction.class)
+            .aggregate(pipeline, AggregationOptions.builder().outputMode(AggregationOptions.OutputMode.CURSOR).build());
+
+        Map<ObjectId, ItemInventory> result = new HashMap<>();
+
+        try {
+            while (cursor.hasNext()) {
+                DBObject document = cursor.next();
+                DBObject id = (DBObject)document.get("_id");
+
+                ObjectId itemId = (ObjectId)id.get("itemId");
+                int status = ((Number)id.get("status")).intValue();
+                long quantity = ((Number)document.get("quantity")).longValue();
+                long count = ((Number)document.get("count")).longValue();
+
+                ItemInventory inventory = result.computeIfAbsent(itemId, key -> new ItemInventory());
+                inventory.statusQuantities.put(String.valueOf(status), quantity);
+                inventory.statusCounts.put(String.valueOf(status), count);
+
+                if (status == TransactionService.SETTLED) {
+                    inventory.sold = quantity;
+                    inventory.soldCount = count;
+                } else if (status == TransactionService.PENDING) {
+                    inventory.pending = quantity;
+                    inventory.pendingCount = count;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return result;
+    }
+
     public static boolean isValid(Transaction transaction) {
         return transaction != null &&
             transaction.quantity > 0 &&
@@ -121,7 +178,11 @@ public class TransactionService {
         Sheet sheet = workbook.createSheet("Transactions");
         sheet.createFreezePane(0, 1);
 
-        Map<String, UserData> idToUserData = event.userData.stream()
+        Map<String, UserData> idToUserData = this.datastore.createQuery(UserData.class)
+            .field("eventId").equal(event.id)
+            .field("userId").in(users.stream().map(User::getId).collect(Collectors.toList()))
+            .asList()
+            .stream()
             .collect(Collectors.toMap(userData -> userData.userId, Function.identity()));
 
         List<ObjectId> itemIds = transactions.stream()
@@ -0,0 +1,207 @@
+package com.jivecake.api.service;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+
+import org.bson.types.ObjectId;
+import org.mongodb.morphia.Datastore;
+import org.mongodb.morphia.query.FindOptions;
+import org.mongodb.morphia.query.MorphiaIterator;
+import org.mongodb.morphia.query.Query;
+
+import com.jivecake.api.model.Event;
+import com.jivecake.api.model.UserData;
+import com.jivecake.api.request.Paging;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+
+import io.dropwizard.lifecycle.Managed;
+
+public class UserDataService implements Managed {
+    public static final int BATCH_SIZE = 500;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Datastore datastore;
+    private volatile boolean migrated;
+
+    @Inject
+    public UserDataService(Datastore datastore) {
+        this.datastore = datastore;
+    }
+
+    public UserData get(ObjectId eventId, String userId) {
+        return this.datastore.createQuery(UserData.class)
+            .field("eventId").equal(eventId)
+            .field("userId").equal(userId)
+            .get();
+    }
+
+    public Map<String, UserData> get(ObjectId eventId, Collection<String> userIds) {
+        return this.datastore.createQuery(UserData.class)
+            .field("eventId").equal(eventId)
+            .field("userId").in(userIds)
+            .asList()
+            .stream()
+            .collect(Collectors.toMap(userData -> userData.userId, userData -> userData));
+    }
+
+    public Paging<UserData> search(ObjectId eventId, int skip, int limit) {
+        Query<UserData> query = this.getQuery(eventId);
+
+        FindOptions options = new FindOptions()
+            .skip(skip)
+            .limit(limit);
+
+        return new Paging<>(query.asList(options), query.count());
+    }
+
+    /*
+     * Reads the roster of an event in number order a batch at a time, memory use does not
+     * grow with the number of registrants
+     */
+    public void forEach(ObjectId eventId, Consumer<UserData> consumer) {
+        MorphiaIterator<UserData, UserData> iterator = this.getQuery(eventId)
+            .fetch(new FindOptions().batchSize(UserDataService.BATCH_SIZE));
+
+        try {
+            while (iterator.hasNext()) {
+                consumer.accept(iterator.next());
+            }
+        } finally {
+            iterator.close();
+        }
+    }
+
+    public int getMaximumNumber(ObjectId eventId) {
+        UserData userData = this.datastore.createQuery(UserData.class)
+            .field("eventId").equal(eventId)
+            .order("-number")
+            .get();
+
+        return userData == null ? 0 : userData.number;
+    }
+
+    public void delete(ObjectId eventId) {
+        this.datastore.delete(
+            this.datastore.createQuery(UserData.class).field("eventId").equal(eventId)
+        );
+    }
+
+    /*
+     * Events written before UserData had its own collection embed it in a userData array. The
+     * array is copied with upserts keyed by event and user, which makes a repeated or
+     * concurrent migration harmless, and removed once copied. Requests migrate the event they
+     * read until migrateAll has finished on this instance, after that this returns at once
+     */
+    public boolean migrate(ObjectId eventId) {
+        if (this.migrated) {
+            return false;
+        }
+
+        DBObject document = this.datastore.getCollection(Event.class).findOne(
+            new BasicDBObject("_id", eventId).append("userData", new BasicDBObject("$exists", true)),
+            new BasicDBObject("organizationId", 1).append("userData", 1)
+        );
+
+        if (document == null) {
+            return false;
+        }
+
+        this.migrate(document);
+        return true;
+    }
+
+    /*
+     * Runs once when the application starts, passes are repeated until one finds nothing so
+     * that events written by an instance which has not been upgraded yet are not missed
+     */
+    @Override
+    public void start() {
+        this.executor.execute(() -> {
+            try {
+                while (this.migrateAll() > 0) {
+                }
+
+                this.migrated = true;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        this.executor.shutdown();
+        this.executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    public boolean isMigrated() {
+        return this.migrated;
+    }
+
+    public int migrateAll() {
+        DBCursor cursor = this.datastore.getCollection(Event.class).find(
+            new BasicDBObject("userData", new BasicDBObject("$exists", true)),
+            new BasicDBObject("organizationId", 1).append("userData", 1)
+        );
+
+        int result = 0;
+
+        try {
+            while (cursor.hasNext()) {
+                this.migrate(cursor.next());
+                result++;
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return result;
+    }
+
+    private void migrate(DBObject document) {
+        @SuppressWarnings("unchecked")
+        List<DBObject> embedded = (List<DBObject>)document.get("userData");
+
+        if (embedded != null && !embedded.isEmpty()) {
+            DBCollection collection = this.datastore.getCollection(UserData.class);
+            BulkWriteOperation bulk = collection.initializeUnorderedBulkOperation();
+            Date date = new Date();
+
+            for (DBObject userData: embedded) {
+                BasicDBObject values = new BasicDBObject("organizationId", document.get("organizationId"))
+                    .append("number", userData.get("number"))
+                    .append("timeCreated", date);
+
+                bulk.find(new BasicDBObject("eventId", document.get("_id")).append("userId", userData.get("userId")))
+                    .upsert()
+                    .updateOne(new BasicDBObject("$setOnInsert", values));
+            }
+
+            bulk.execute();
+        }
+
+        this.datastore.getCollection(Event.class).update(
+            new BasicDBObject("_id", document.get("_id")),
+            new BasicDBObject("$unset", new BasicDBObject("userData", ""))
+        );
+    }
+
+    private Query<UserData> getQuery(ObjectId eventId) {
+        return this.datastore.createQuery(UserData.class)
+            .field("eventId").equal(eventId)
+            .order("number");
+    }
+}
@@ -0,0 +1,211 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.jivecake.api.APIConfiguration;
+import com.jivecake.api.model.Event;
+import com.jivecake.api.model.Item;
+import com.jivecake.api.model.ItemCountAmount;
+import com.jivecake.api.model.Transaction;
+import com.jivecake.api.request.AggregatedEvent;
+import com.jivecake.api.request.ItemData;
+import com.jivecake.api.service.AggregatedEventCacheService;
+import com.jivecake.api.service.AggregatedEventCacheService.Snapshot;
+import com.jivecake.api.service.EventService;
+import com.jivecake.api.service.ItemService;
+import com.jivecake.api.service.TransactionService;
+
+public class AggregatedEventCacheServiceTest {
+    private AggregatedEventCacheService aggregatedEventCacheService;
+    private EventService eventService;
+    private MetricRegistry metrics;
+    private AtomicInteger loads;
+    private Event event;
+    private Item item;
+    private Transaction transaction;
+
+    @Before
+    public void before() {
+        this.event = new Event();
+        this.event.id = new ObjectId();
+
+        ItemCountAmount countAmount = new ItemCountAmount();
+        countAmount.count = 2;
+        countAmount.amount = 5;
+
+        this.item = new Item();
+        this.item.id = new ObjectId();
+        this.item.eventId = this.event.id;
+        this.item.status = ItemService.STATUS_ACTIVE;
+        this.item.amount = 10;
+        this.item.countAmounts = Arrays.asList(countAmount);
+
+        this.transaction = new Transaction();
+        this.transaction.id = new ObjectId();
+        this.transaction.eventId = this.event.id;
+        this.transaction.itemId = this.item.id;
+        this.transaction.user_id = "owner";
+        this.transaction.given_name = "given";
+        this.transaction.status = TransactionService.SETTLED;
+        this.transaction.quantity = 1;
+        this.transaction.leaf = true;
+
+        this.loads = new AtomicInteger();
+        this.metrics = new MetricRegistry();
+
+        this.eventService = new EventService(null, null, null, null, null) {
+            @Override
+            public AggregatedEvent getAggregatedaEventData(Event event, TransactionService transactionService, Date currentTime) {
+                AggregatedEventCacheServiceTest.this.loads.incrementAndGet();
+
+                ItemData itemData = new ItemData();
+                itemData.item = AggregatedEventCacheServiceTest.this.item;
+                itemData.amount = 10.0;
+                itemData.transactions = new ArrayList<>(Arrays.asList(new Transaction(AggregatedEventCacheServiceTest.this.transaction)));
+
+                AggregatedEvent result = new AggregatedEvent();
+                result.event = event;
+                result.itemData = Arrays.asList(itemData);
+                result.assets = new ArrayList<>();
+                return result;
+            }
+        };
+
+        this.aggregatedEventCacheService = new AggregatedEventCacheService(
+            this.eventService,
+            null,
+            new APIConfiguration(),
+            this.metrics
+        );
+    }
+
+    @Test
+    public void viewersShareSnapshotWithoutPersonalData() {
+        Snapshot first = this.aggregatedEventCacheService.get(this.event);
+        Snapshot second = this.aggregatedEventCacheService.get(this.event);
+
+        assertSame(first, second);
+        assertEquals(1, this.loads.get());
+
+        Transaction anonymous = first.getView(null).itemData.get(0).transactions.get(0);
+        assertNull(anonymous.user_id);
+        assertNull(anonymous.given_name);
+
+        Transaction owned = first.getView("owner").itemData.get(0).transactions.get(0);
+        assertEquals("owner", owned.user_id);
+        assertNull(owned.given_name);
+
+        assertSame(first.getView(null), first.getView("other"));
+        assertNotEquals(first.getTag(null), first.getTag("owner"));
+    }
+
+    @Test
+    public void transactionUpdatesSnapshotInPlaceOfReload() {
+        Snapshot first = this.aggregatedEventCacheService.get(this.event);
+
+        Transaction created = new Transaction(this.transaction);
+        created.id = new ObjectId();
+        created.user_id = "second";
+        this.aggregatedEventCacheService.update(created, "transaction.create");
+
+        Snapshot second = this.aggregatedEventCacheService.get(this.event);
+        ItemData itemData = second.getView(null).itemData.get(0);
+
+        assertEquals(1, this.loads.get());
+        assertNotEquals(first.version, second.version);
+        assertEquals(2, itemData.transactions.size());
+        assertEquals(5.0, itemData.amount, 0);
+        assertEquals(1, first.getView(null).itemData.get(0).transactions.size());
+
+        this.aggregatedEventCacheService.update(created, "transaction.delete");
+
+        itemData = this.aggregatedEventCacheService.get(this.event).getView(null).itemData.get(0);
+        assertEquals(1, itemData.transactions.size());
+        assertEquals(10.0, itemData.amount, 0);
+        assertEquals(2, this.metrics.meter(MetricRegistry.name(AggregatedEventCacheService.class, "update")).getCount());
+    }
+
+    @Test
+    public void tagsDifferBetweenInstances() {
+        AggregatedEventCacheService other = new AggregatedEventCacheService(
+            this.eventService,
+            null,
+            new APIConfiguration(),
+            new MetricRegistry()
+        );
+
+        Snapshot first = this.aggregatedEventCacheService.get(this.event);
+        Snapshot second = other.get(this.event);
+
+        assertEquals(first.version, second.version);
+        assertNotEquals(first.getTag(null), second.getTag(null));
+    }
+
+    @Test
+    public void itemChangeReloadsSnapshot() {
+        this.aggregatedEventCacheService.get(this.event);
+        this.aggregatedEventCacheService.update(this.item, "item.update");
+        this.aggregatedEventCacheService.get(this.event);
+
+        assertEquals(2, this.loads.get());
+        assertEquals(1, this.metrics.meter(MetricRegistry.name(AggregatedEventCacheService.class, "invalidation")).getCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedSnapshotIsEvicted() {
+        APIConfiguration configuration = new APIConfiguration();
+        configuration.cache.aggregatedSize = 2;
+
+        MetricRegistry metrics = new MetricRegistry();
+        AggregatedEventCacheService service = new AggregatedEventCacheService(
+            this.eventService,
+            null,
+            configuration,
+            metrics
+        );
+
+        Event second = new Event();
+        second.id = new ObjectId();
+
+        Event third = new Event();
+        third.id = new ObjectId();
+
+        service.get(this.event);
+        service.get(second);
+        service.get(this.event);
+        service.get(third);
+
+        assertEquals(2, service.size());
+        assertEquals(3, this.loads.get());
+
+        service.get(this.event);
+        assertEquals(3, this.loads.get());
+
+        service.get(second);
+        assertEquals(4, this.loads.get());
+        assertEquals(2, metrics.meter(MetricRegistry.name(AggregatedEventCacheService.class, "eviction")).getCount());
+    }
+
+    @Test
+    public void expiredSnapshotsAreSwept() {
+        this.aggregatedEventCacheService.get(this.event);
+        this.aggregatedEventCacheService.evictExpired(System.currentTimeMillis());
+
+        assertEquals(1, this.aggregatedEventCacheService.size());
+
+        this.aggregatedEventCacheService.evictExpired(System.currentTimeMillis() + new APIConfiguration().cache.aggregatedTtl);
+
+        assertEquals(0, this.aggregatedEventCacheService.size());
+    }
+}
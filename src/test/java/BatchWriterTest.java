@@ -0,0 +1,81 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.jivecake.api.BatchConfiguration;
+import com.jivecake.api.service.BatchWriter;
+import com.jivecake.api.service.OverflowPolicy;
+
+public class BatchWriterTest {
+    @Test
+    public void flushesInBatchesAndDrainsOnStop() throws InterruptedException {
+        BatchConfiguration configuration = new BatchConfiguration();
+        configuration.batchSize = 10;
+        configuration.flushInterval = 1000 * 60;
+
+        List<Integer> sizes = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch flushed = new CountDownLatch(2);
+
+        BatchWriter<Integer> writer = new BatchWriter<>("test", batch -> {
+            sizes.add(batch.size());
+            written.addAll(batch);
+            flushed.countDown();
+        }, configuration, new MetricRegistry());
+
+        for (int index = 0; index < 25; index++) {
+            assertTrue(writer.add(index));
+        }
+
+        assertTrue(flushed.await(5, TimeUnit.SECONDS));
+
+        long start = System.currentTimeMillis();
+        writer.stop();
+
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertEquals(25, written.size());
+        assertEquals(10, sizes.get(0).intValue());
+    }
+
+    @Test
+    public void dropsWhenQueueIsFull() throws InterruptedException {
+        BatchConfiguration configuration = new BatchConfiguration();
+        configuration.queueSize = 2;
+        configuration.batchSize = 1;
+        configuration.overflow = OverflowPolicy.DROP;
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        MetricRegistry metrics = new MetricRegistry();
+
+        BatchWriter<Integer> writer = new BatchWriter<>("test", batch -> {
+            started.countDown();
+
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, configuration, metrics);
+
+        writer.add(0);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertTrue(writer.add(1));
+        assertTrue(writer.add(2));
+        assertFalse(writer.add(3));
+        assertEquals(1, metrics.meter(MetricRegistry.name(BatchWriter.class, "test", "drop")).getCount());
+
+        release.countDown();
+        writer.stop();
+    }
+}
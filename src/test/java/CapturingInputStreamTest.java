@@ -0,0 +1,38 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import com.jivecake.api.filter.CapturingInputStream;
+
+public class CapturingInputStreamTest {
+    @Test
+    public void passesEveryByteAndCapturesPrefix() throws IOException {
+        byte[] body = "{\"name\": \"jivecake\"}".getBytes(StandardCharsets.UTF_8);
+        CapturingInputStream stream = new CapturingInputStream(new ByteArrayInputStream(body), 8);
+
+        byte[] read = IOUtils.toByteArray(stream);
+
+        assertEquals(new String(body, StandardCharsets.UTF_8), new String(read, StandardCharsets.UTF_8));
+        assertEquals("{\"name\":", stream.getCaptured(StandardCharsets.UTF_8));
+        assertTrue(stream.isTruncated());
+    }
+
+    @Test
+    public void smallBodyIsCapturedWhole() throws IOException {
+        byte[] body = "abc".getBytes(StandardCharsets.UTF_8);
+        CapturingInputStream stream = new CapturingInputStream(new ByteArrayInputStream(body), 8);
+
+        assertEquals('a', stream.read());
+        IOUtils.toByteArray(stream);
+
+        assertEquals("abc", stream.getCaptured(StandardCharsets.UTF_8));
+        assertFalse(stream.isTruncated());
+    }
+}
@@ -7,10 +7,13 @@ import org.bson.types.ObjectId;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.codahale.metrics.MetricRegistry;
+import com.jivecake.api.APIConfiguration;
 import com.jivecake.api.model.Event;
 import com.jivecake.api.model.Item;
 import com.jivecake.api.model.Organization;
 import com.jivecake.api.model.Transaction;
+import com.jivecake.api.service.EntityCacheService;
 import com.jivecake.api.service.EntityService;
 
 public class CascaseActivityTest extends DatastoreTest {
@@ -18,7 +21,10 @@ public class CascaseActivityTest extends DatastoreTest {
 
     @Before
     public void before() {
-        this.entityService = new EntityService(super.datastore);
+        this.entityService = new EntityService(
+            super.datastore,
+            new EntityCacheService(super.datastore, super.morphia, new APIConfiguration(), new MetricRegistry())
+        );
     }
 
     @Test
@@ -0,0 +1,137 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.jivecake.api.APIConfiguration;
+import com.jivecake.api.service.ApplicationService;
+import com.jivecake.api.service.ClientAddressService;
+
+import io.dropwizard.jetty.HttpConnectorFactory;
+import io.dropwizard.server.DefaultServerFactory;
+
+public class ClientAddressServiceTest {
+    private ClientAddressService clientAddressService;
+
+    @Before
+    public void before() {
+        APIConfiguration configuration = new APIConfiguration();
+        configuration.limiter.exemptNetworks = Arrays.asList("10.0.0.0/8", "192.168.1.0/25");
+        configuration.limiter.trustedProxies = Arrays.asList("172.16.0.0/12");
+
+        this.clientAddressService = new ClientAddressService(configuration);
+    }
+
+    @Test
+    public void exemptNetworksMatchPrefix() {
+        assertTrue(this.clientAddressService.isExempt("10.20.30.40"));
+        assertTrue(this.clientAddressService.isExempt("192.168.1.127"));
+        assertFalse(this.clientAddressService.isExempt("192.168.1.128"));
+        assertFalse(this.clientAddressService.isExempt("8.8.8.8"));
+        assertFalse(this.clientAddressService.isExempt("localhost"));
+    }
+
+    @Test
+    public void forwardedHeaderIgnoredFromUntrustedPeer() {
+        String address = this.clientAddressService.getForwardedAddress(this.getRequest("8.8.8.8", "1.1.1.1"));
+        assertEquals("8.8.8.8", address);
+    }
+
+    @Test
+    public void forwardedHeaderSkipsTrustedProxies() {
+        String address = this.clientAddressService.getForwardedAddress(
+            this.getRequest("172.16.0.2", "6.6.6.6, 1.1.1.1, 172.16.0.3")
+        );
+
+        assertEquals("1.1.1.1", address);
+    }
+
+    @Test
+    public void connectorDoesNotTrustForwardedHeader() throws Exception {
+        DefaultServerFactory factory = new DefaultServerFactory();
+        HttpConnectorFactory connectorFactory = (HttpConnectorFactory)factory.getApplicationConnectors().get(0);
+        connectorFactory.setPort(0);
+
+        assertTrue(connectorFactory.isUseForwardedHeaders());
+        ApplicationService.disableForwardedHeaders(factory);
+        assertFalse(connectorFactory.isUseForwardedHeaders());
+
+        APIConfiguration configuration = new APIConfiguration();
+        configuration.limiter.trustedProxies = Arrays.asList("127.0.0.1/32");
+        ClientAddressService behindProxy = new ClientAddressService(configuration);
+
+        Server server = new Server();
+        ServerConnector connector = (ServerConnector)connectorFactory.build(server, new MetricRegistry(), "test", null);
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(
+                String target,
+                Request base,
+                HttpServletRequest request,
+                HttpServletResponse response
+            ) throws IOException {
+                ClientAddressService service = target.equals("/proxy") ?
+                    behindProxy :
+                    ClientAddressServiceTest.this.clientAddressService;
+
+                response.getWriter().print(request.getRemoteAddr() + " " + service.getForwardedAddress(request));
+                base.setHandled(true);
+            }
+        });
+        server.start();
+
+        try {
+            String direct = this.get(connector.getLocalPort(), "/direct", "6.6.6.6");
+            String proxied = this.get(connector.getLocalPort(), "/proxy", "6.6.6.6");
+
+            assertEquals("127.0.0.1 127.0.0.1", direct);
+            assertEquals("127.0.0.1 6.6.6.6", proxied);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private String get(int port, String path, String forwarded) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection)new URL("http://127.0.0.1:" + port + path).openConnection();
+        connection.setRequestProperty("X-Forwarded-For", forwarded);
+
+        try (InputStream stream = connection.getInputStream()) {
+            return IOUtils.toString(stream, StandardCharsets.UTF_8);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private MockHttpServletRequest getRequest(String remoteAddress, String forwarded) {
+        return new MockHttpServletRequest() {
+            @Override
+            public String getRemoteAddr() {
+                return remoteAddress;
+            }
+
+            @Override
+            public String getHeader(String name) {
+                return "X-Forwarded-For".equals(name) ? forwarded : null;
+            }
+        };
+    }
+}
@@ -0,0 +1,92 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.jivecake.api.APIConfiguration;
+import com.jivecake.api.model.Organization;
+import com.jivecake.api.service.EntityCacheService;
+
+public class EntityCacheServiceTest extends DatastoreTest {
+    private EntityCacheService entityCacheService;
+    private MetricRegistry metrics;
+
+    @Before
+    public void before() {
+        this.metrics = new MetricRegistry();
+        this.entityCacheService = new EntityCacheService(super.datastore, super.morphia, new APIConfiguration(), this.metrics);
+    }
+
+    @Test
+    public void hitReturnsCopyOfCachedEntity() {
+        Organization organization = new Organization();
+        organization.id = new ObjectId();
+        organization.name = "first";
+        this.datastore.save(organization);
+
+        Organization first = this.entityCacheService.get(Organization.class, organization.id);
+        first.name = "changed";
+
+        Organization second = this.entityCacheService.get(Organization.class, organization.id);
+
+        assertNotSame(first, second);
+        assertEquals("first", second.name);
+        assertEquals(1, this.metrics.meter(MetricRegistry.name(EntityCacheService.class, "Organization", "hit")).getCount());
+        assertEquals(1, this.metrics.meter(MetricRegistry.name(EntityCacheService.class, "Organization", "miss")).getCount());
+    }
+
+    @Test
+    public void invalidateReadsNewVersion() {
+        Organization organization = new Organization();
+        organization.id = new ObjectId();
+        organization.name = "first";
+        this.datastore.save(organization);
+
+        this.entityCacheService.get(Organization.class, organization.id);
+
+        organization.name = "second";
+        this.datastore.save(organization);
+
+        assertEquals("first", this.entityCacheService.get(Organization.class, organization.id).name);
+
+        this.entityCacheService.invalidate(organization);
+
+        assertEquals("second", this.entityCacheService.get(Organization.class, organization.id).name);
+    }
+
+    @Test
+    public void invalidationOnOtherNodeIsSeenAfterPoll() {
+        APIConfiguration configuration = new APIConfiguration();
+        configuration.cache.entityPollInterval = 1000 * 60 * 60;
+
+        MetricRegistry metrics = new MetricRegistry();
+        EntityCacheService node = new EntityCacheService(super.datastore, super.morphia, configuration, metrics);
+        EntityCacheService other = new EntityCacheService(super.datastore, super.morphia, configuration, new MetricRegistry());
+
+        Organization organization = new Organization();
+        organization.id = new ObjectId();
+        organization.name = "first";
+        this.datastore.save(organization);
+
+        node.get(Organization.class, organization.id);
+
+        organization.name = "second";
+        this.datastore.save(organization);
+        other.invalidate(organization);
+
+        assertEquals("first", node.get(Organization.class, organization.id).name);
+
+        node.poll();
+
+        assertEquals("second", node.get(Organization.class, organization.id).name);
+        assertEquals(1, metrics.meter(MetricRegistry.name(EntityCacheService.class, "invalidation", "remote")).getCount());
+
+        node.poll();
+        other.poll();
+
+        assertEquals(1, metrics.meter(MetricRegistry.name(EntityCacheService.class, "invalidation", "remote")).getCount());
+    }
+}
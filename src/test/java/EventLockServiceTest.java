@@ -0,0 +1,71 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.Lock;
+
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.jivecake.api.service.EventLockService;
+
+public class EventLockServiceTest {
+    private EventLockService eventLockService;
+    private MetricRegistry metrics;
+
+    @Before
+    public void before() {
+        this.metrics = new MetricRegistry();
+        this.eventLockService = new EventLockService(this.metrics);
+    }
+
+    @Test
+    public void sameEventSharesLock() {
+        ObjectId eventId = new ObjectId();
+
+        assertSame(
+            this.eventLockService.getLock(eventId),
+            this.eventLockService.getLock(new ObjectId(eventId.toHexString()))
+        );
+    }
+
+    @Test
+    public void lockExcludesOtherThreadsUntilReleased() throws InterruptedException, ExecutionException {
+        ObjectId eventId = new ObjectId();
+        Lock lock = this.eventLockService.lock(eventId);
+
+        boolean acquired = CompletableFuture.supplyAsync(() -> {
+            Lock other = this.eventLockService.getLock(eventId);
+            boolean result = other.tryLock();
+
+            if (result) {
+                other.unlock();
+            }
+
+            return result;
+        }).get();
+
+        assertFalse(acquired);
+
+        lock.unlock();
+
+        acquired = CompletableFuture.supplyAsync(() -> {
+            Lock other = this.eventLockService.getLock(eventId);
+            boolean result = other.tryLock();
+
+            if (result) {
+                other.unlock();
+            }
+
+            return result;
+        }).get();
+
+        assertTrue(acquired);
+        assertEquals(1, this.metrics.timer(MetricRegistry.name(EventLockService.class, "wait")).getCount());
+    }
+}
@@ -1,88 +1,144 @@
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import com.codahale.metrics.MetricRegistry;
+import com.jivecake.api.APIConfiguration;
 import com.jivecake.api.model.Event;
 import com.jivecake.api.model.UserData;
+import com.jivecake.api.request.Paging;
+import com.jivecake.api.service.EntityCacheService;
 import com.jivecake.api.service.EventService;
+import com.jivecake.api.service.ItemInventoryService;
+import com.jivecake.api.service.TransactionService;
+import com.jivecake.api.service.QueryExecutorService;
+import com.jivecake.api.service.UserDataService;
+import com.mongodb.BasicDBObject;
 
 public class EventUserNumberTest extends DatastoreTest {
     private EventService eventService;
+    private UserDataService userDataService;
 
     @Before
     public void before() {
-        this.eventService = new EventService(super.datastore);
+        this.userDataService = new UserDataService(super.datastore);
+        this.eventService = new EventService(
+            super.datastore,
+            new EntityCacheService(super.datastore, super.morphia, new APIConfiguration(), new MetricRegistry()),
+            new ItemInventoryService(super.datastore, new TransactionService(super.datastore), new MetricRegistry()),
+            this.userDataService,
+            new QueryExecutorService(new APIConfiguration(), new MetricRegistry())
+        );
     }
 
     @Test
-    public void assign1ToFirst() throws InterruptedException, ExecutionException {
+    public void assign1ToFirst() {
         Event newEvent = new Event();
-        newEvent.userData = new ArrayList<>();
-
         this.datastore.save(newEvent);
-        Event eventToQuery = this.datastore.get(newEvent);
-
-        CompletableFuture<Event> future = this.eventService.assignNumberToUserSafely("user|123", eventToQuery);
-
-        Event event = future.get();
 
-        UserData userData = event.userData.get(0);
+        UserData userData = this.eventService.assignNumberToUser("user|123", newEvent);
 
         assertEquals(1, userData.number);
+        assertEquals(newEvent.id, userData.eventId);
     }
 
     @Test
     public void concurrenctRequestAssignUniqueIntegers() throws InterruptedException, ExecutionException {
         Event newEvent = new Event();
-        newEvent.userData = new ArrayList<>();
         this.datastore.save(newEvent);
 
         ExecutorService service = Executors.newFixedThreadPool(10);
 
-        List<CompletableFuture<Event>> futures = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<UserData>> futures = Collections.synchronizedList(new ArrayList<>());
 
         for (int index = 0; index < 1000; index++) {
             String userid = "user|" + index;
 
-            CompletableFuture<Event> future = new CompletableFuture<>();
+            CompletableFuture<UserData> future = new CompletableFuture<>();
             futures.add(future);
 
             service.execute(() -> {
-               CompletableFuture<Event> assignmentFuture = this.eventService.assignNumberToUserSafely(
-                    userid,
-                    newEvent
-                );
-
                 try {
-                    future.complete(assignmentFuture.get());
-                } catch (InterruptedException | ExecutionException e) {
-                    throw new RuntimeException(e);
+                    future.complete(this.eventService.assignNumberToUser(userid, newEvent));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
                 }
             });
         }
 
-        for (CompletableFuture<Event> future: futures) {
+        for (CompletableFuture<UserData> future: futures) {
             future.get();
         }
 
-        Event event = this.datastore.get(newEvent);
+        List<UserData> userData = this.datastore.createQuery(UserData.class)
+            .field("eventId").equal(newEvent.id)
+            .asList();
 
-        for (UserData userData: event.userData) {
-            long appears = event.userData
-                .stream()
-                .filter(currentUserData -> userData.number == currentUserData.number)
-                .count();
+        Set<Integer> numbers = userData.stream()
+            .map(data -> data.number)
+            .collect(Collectors.toSet());
 
-            assertEquals(1, appears);
-        }
+        assertEquals(1000, userData.size());
+        assertEquals(1000, numbers.size());
+    }
+
+    @Test
+    public void embeddedUserDataIsMigratedAndNumberingContinues() {
+        Event newEvent = new Event();
+        this.datastore.save(newEvent);
+
+        this.datastore.getCollection(Event.class).update(
+            new BasicDBObject("_id", newEvent.id),
+            new BasicDBObject("$set", new BasicDBObject("userData", Arrays.asList(
+                new BasicDBObject("userId", "user|1").append("number", 7)
+            )))
+        );
+
+        UserData existing = this.eventService.assignNumberToUser("user|1", newEvent);
+        UserData created = this.eventService.assignNumberToUser("user|2", newEvent);
+
+        assertEquals(7, existing.number);
+        assertEquals(8, created.number);
+        assertEquals(0, this.datastore.getCollection(Event.class).count(
+            new BasicDBObject("userData", new BasicDBObject("$exists", true))
+        ));
+
+        Paging<UserData> paging = this.userDataService.search(newEvent.id, 1, 10);
+        assertEquals(2, paging.count);
+        assertEquals(8, paging.entity.iterator().next().number);
+    }
+
+    @Test
+    public void startupMigrationStopsRequestMigrations() throws InterruptedException {
+        Event newEvent = new Event();
+        this.datastore.save(newEvent);
+
+        this.datastore.getCollection(Event.class).update(
+            new BasicDBObject("_id", newEvent.id),
+            new BasicDBObject("$set", new BasicDBObject("userData", Arrays.asList(
+                new BasicDBObject("userId", "user|1").append("number", 3)
+            )))
+        );
+
+        this.userDataService.start();
+        this.userDataService.stop();
+
+        assertTrue(this.userDataService.isMigrated());
+        assertEquals(3, this.userDataService.get(newEvent.id, "user|1").number);
+        assertFalse(this.userDataService.migrate(newEvent.id));
     }
 }
@@ -33,7 +33,6 @@ public class ExcelTest extends DatastoreTest {
         this.datastore.save(transaction);
 
         Event event = new Event();
-        event.userData = new ArrayList<>();
 
         List<User> users = new ArrayList<>();
 
@@ -69,7 +68,6 @@ public class ExcelTest extends DatastoreTest {
         this.datastore.save(Arrays.asList(item, transaction));
 
         Event event = new Event();
-        event.userData = new ArrayList<>();
 
         List<User> users = new ArrayList<>();
 
@@ -0,0 +1,82 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.jivecake.api.APIConfiguration;
+import com.jivecake.api.model.Organization;
+import com.jivecake.api.service.EntityCacheService;
+import com.jivecake.api.service.IdentityMapService;
+
+public class IdentityMapServiceTest extends DatastoreTest {
+    private IdentityMapService identityMapService;
+    private MetricRegistry metrics;
+
+    @Before
+    public void before() {
+        this.metrics = new MetricRegistry();
+        this.identityMapService = new IdentityMapService(
+            super.datastore,
+            new EntityCacheService(super.datastore, super.morphia, new APIConfiguration(), this.metrics),
+            this.metrics
+        );
+    }
+
+    @Test
+    public void entityIsLoadedOncePerRequest() {
+        Organization organization = new Organization();
+        organization.id = new ObjectId();
+        organization.name = "first";
+        this.datastore.save(organization);
+
+        MockHttpServletRequest request = this.getRequest();
+
+        Organization first = this.identityMapService.get(request, Organization.class, organization.id);
+        Organization second = this.identityMapService.get(request, Organization.class, organization.id);
+
+        assertSame(first, second);
+        assertEquals(1, this.metrics.meter(MetricRegistry.name(IdentityMapService.class, "miss")).getCount());
+        assertEquals(1, this.metrics.meter(MetricRegistry.name(IdentityMapService.class, "hit")).getCount());
+
+        Organization other = this.identityMapService.get(this.getRequest(), Organization.class, organization.id);
+        assertEquals(organization.id, other.id);
+        assertEquals(2, this.metrics.meter(MetricRegistry.name(IdentityMapService.class, "miss")).getCount());
+    }
+
+    @Test
+    public void registeredEntityIsReturnedWithoutQuery() {
+        Organization organization = new Organization();
+        organization.id = new ObjectId();
+
+        MockHttpServletRequest request = this.getRequest();
+
+        assertNull(this.identityMapService.get(request, Organization.class, organization.id));
+
+        this.identityMapService.register(request, organization);
+
+        assertSame(organization, this.identityMapService.get(request, Organization.class, organization.id));
+    }
+
+    private MockHttpServletRequest getRequest() {
+        Map<String, Object> attributes = new HashMap<>();
+
+        return new MockHttpServletRequest() {
+            @Override
+            public Object getAttribute(String name) {
+                return attributes.get(name);
+            }
+
+            @Override
+            public void setAttribute(String name, Object value) {
+                attributes.put(name, value);
+            }
+        };
+    }
+}
@@ -0,0 +1,242 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.jivecake.api.APIConfiguration;
+import com.jivecake.api.model.Event;
+import com.jivecake.api.model.InventoryHold;
+import com.jivecake.api.model.Item;
+import com.jivecake.api.model.ItemInventory;
+import com.jivecake.api.request.AggregatedEvent;
+import com.jivecake.api.request.EntityQuantity;
+import com.jivecake.api.request.ItemData;
+import com.jivecake.api.service.InventoryHoldService;
+import com.jivecake.api.service.ItemInventoryService;
+import com.jivecake.api.service.TransactionService;
+import com.mongodb.BasicDBObject;
+
+public class InventoryHoldServiceTest extends DatastoreTest {
+    private ItemInventoryService itemInventoryService;
+    private InventoryHoldService inventoryHoldService;
+
+    @Before
+    public void before() {
+        MetricRegistry metrics = new MetricRegistry();
+
+        this.itemInventoryService = new ItemInventoryService(super.datastore, new TransactionService(super.datastore), metrics);
+        this.inventoryHoldService = new InventoryHoldService(
+            super.datastore,
+            this.itemInventoryService,
+            new APIConfiguration(),
+            metrics
+        );
+    }
+
+    @Test
+    public void holdsAreCountedUntilReleased() {
+        Item item = this.getItem(5);
+        AggregatedEvent aggregated = this.getAggregatedEvent(item);
+
+        InventoryHold first = this.inventoryHoldService.hold(aggregated, this.getOrder(item, 3), 60000);
+        assertNotNull(first);
+        assertEquals(3, this.getHeld(item));
+
+        assertNull(this.inventoryHoldService.hold(aggregated, this.getOrder(item, 3), 60000));
+        assertEquals(3, this.getHeld(item));
+
+        assertTrue(this.inventoryHoldService.release(first));
+        assertFalse(this.inventoryHoldService.release(first));
+        assertEquals(0, this.getHeld(item));
+
+        assertNotNull(this.inventoryHoldService.hold(aggregated, this.getOrder(item, 5), 60000));
+        assertEquals(5, this.getHeld(item));
+    }
+
+    @Test
+    public void expiredHoldsAreReleased() {
+        Item item = this.getItem(null);
+        AggregatedEvent aggregated = this.getAggregatedEvent(item);
+
+        InventoryHold hold = this.inventoryHoldService.hold(aggregated, this.getOrder(item, 2), 0);
+        this.inventoryHoldService.link(hold, "PAY-1", "PaypalPayment");
+
+        assertEquals(1, this.inventoryHoldService.expire(new Date(new Date().getTime() + 1)));
+        assertFalse(this.inventoryHoldService.confirm("PAY-1"));
+        assertEquals(0, this.getHeld(item));
+    }
+
+    @Test
+    public void reconcileCountsExistingHolds() {
+        Item item = this.getItem(null);
+
+        this.inventoryHoldService.hold(this.getAggregatedEvent(item), this.getOrder(item, 4), 60000);
+        this.itemInventoryService.release(
+            this.datastore.createQuery(InventoryHold.class).get().quantities
+        );
+
+        Date now = new Date();
+
+        assertEquals(0, this.getHeld(item));
+        assertEquals(0, this.itemInventoryService.reconcile(Arrays.asList(item.id), now));
+        assertEquals(1, this.itemInventoryService.reconcile(Arrays.asList(item.id), new Date(now.getTime() + 1000 * 60)));
+        assertEquals(4, this.getHeld(item));
+    }
+
+    @Test
+    public void itemHoldsCountAgainstOrderHolds() {
+        Item item = this.getItem(3);
+
+        assertNotNull(this.inventoryHoldService.hold(this.getAggregatedEvent(item), this.getOrder(item, 2), 60000));
+        assertNull(this.inventoryHoldService.hold(item, 2, 60000));
+
+        InventoryHold hold = this.inventoryHoldService.hold(item, 1, 60000);
+        assertNotNull(hold);
+        assertEquals(3, this.getHeld(item));
+
+        assertTrue(this.inventoryHoldService.confirm(hold));
+        assertEquals(2, this.getHeld(item));
+    }
+
+    @Test
+    public void unexpiredHoldsArePerClientLimited() {
+        Item item = this.getItem(null);
+        AggregatedEvent aggregated = this.getAggregatedEvent(item);
+        InventoryHold first = null;
+
+        for (int index = 0; index < new APIConfiguration().hold.maximumPerClient; index++) {
+            assertTrue(this.inventoryHoldService.claim(item.eventId, "client", 60000));
+            first = this.inventoryHoldService.hold(aggregated, this.getOrder(item, 1), 60000, "client");
+        }
+
+        assertFalse(this.inventoryHoldService.claim(item.eventId, "client", 60000));
+        assertTrue(this.inventoryHoldService.claim(item.eventId, "other", 60000));
+        assertTrue(this.inventoryHoldService.claim(new ObjectId(), "client", 60000));
+
+        this.inventoryHoldService.release(first);
+
+        Item soldOut = this.getItem(0);
+        soldOut.eventId = item.eventId;
+
+        assertTrue(this.inventoryHoldService.claim(item.eventId, "client", 60000));
+        assertNull(this.inventoryHoldService.hold(this.getAggregatedEvent(soldOut), this.getOrder(soldOut, 1), 60000, "client"));
+        assertTrue(this.inventoryHoldService.claim(item.eventId, "client", 60000));
+        assertFalse(this.inventoryHoldService.claim(item.eventId, "client", 60000));
+    }
+
+    @Test
+    public void concurrentClaimsStopAtMaximum() throws Exception {
+        ObjectId eventId = new ObjectId();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> futures = new ArrayList<>();
+
+        try {
+            for (int index = 0; index < 20; index++) {
+                futures.add(executor.submit(() -> this.inventoryHoldService.claim(eventId, "client", 60000)));
+            }
+
+            int claimed = 0;
+
+            for (Future<Boolean> future: futures) {
+                if (future.get()) {
+                    claimed++;
+                }
+            }
+
+            assertEquals(new APIConfiguration().hold.maximumPerClient, claimed);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void concurrentHoldsAreOnlyRefusedWhenSoldOut() throws Exception {
+        Item item = this.getItem(20);
+        AggregatedEvent aggregated = this.getAggregatedEvent(item);
+        this.getHeld(item);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<InventoryHold>> futures = new ArrayList<>();
+
+        try {
+            for (int index = 0; index < 30; index++) {
+                futures.add(executor.submit(() -> this.inventoryHoldService.hold(aggregated, this.getOrder(item, 1), 60000)));
+            }
+
+            int held = 0;
+
+            for (Future<InventoryHold> future: futures) {
+                if (future.get() != null) {
+                    held++;
+                }
+            }
+
+            assertEquals(20, held);
+            assertEquals(20, this.getHeld(item));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void inventoryWithoutClaimedIsFilledBeforeHold() {
+        Item item = this.getItem(5);
+        this.getHeld(item);
+
+        this.datastore.getCollection(ItemInventory.class).update(
+            new BasicDBObject("_id", item.id),
+            new BasicDBObject("$unset", new BasicDBObject("claimed", ""))
+                .append("$set", new BasicDBObject("held", 3L))
+        );
+
+        assertNull(this.inventoryHoldService.hold(item, 3, 60000));
+        assertNotNull(this.inventoryHoldService.hold(item, 2, 60000));
+        assertEquals(5, (long)this.itemInventoryService.getInventories(Arrays.asList(item.id)).get(item.id).claimed);
+    }
+
+    private long getHeld(Item item) {
+        return this.itemInventoryService.getInventories(Arrays.asList(item.id)).get(item.id).held;
+    }
+
+    private Item getItem(Integer totalAvailible) {
+        Item item = new Item();
+        item.id = new ObjectId();
+        item.eventId = new ObjectId();
+        item.totalAvailible = totalAvailible;
+        return item;
+    }
+
+    private AggregatedEvent getAggregatedEvent(Item item) {
+        Event event = new Event();
+        event.id = item.eventId;
+
+        ItemData itemData = new ItemData();
+        itemData.item = item;
+
+        AggregatedEvent aggregated = new AggregatedEvent();
+        aggregated.event = event;
+        aggregated.itemData = new ArrayList<>(Arrays.asList(itemData));
+        return aggregated;
+    }
+
+    private List<EntityQuantity<ObjectId>> getOrder(Item item, int quantity) {
+        EntityQuantity<ObjectId> entityQuantity = new EntityQuantity<>();
+        entityQuantity.entity = item.id;
+        entityQuantity.quantity = quantity;
+        return Arrays.asList(entityQuantity);
+    }
+}
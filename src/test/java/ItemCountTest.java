@@ -0,0 +1,62 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jivecake.api.model.ItemInventory;
+import com.jivecake.api.model.Transaction;
+import com.jivecake.api.service.TransactionService;
+
+public class ItemCountTest extends DatastoreTest {
+    private TransactionService transactionService;
+
+    @Before
+    public void before() {
+        this.transactionService = new TransactionService(super.datastore);
+    }
+
+    @Test
+    public void itemInventoriesSumLeafTransactionsPerStatus() {
+        ObjectId firstItemId = new ObjectId();
+        ObjectId secondItemId = new ObjectId();
+        ObjectId emptyItemId = new ObjectId();
+
+        this.datastore.save(Arrays.asList(
+            this.getTransaction(firstItemId, "user", 2, TransactionService.SETTLED, true),
+            this.getTransaction(firstItemId, "other", 3, TransactionService.PENDING, true),
+            this.getTransaction(firstItemId, "user", 5, TransactionService.REFUNDED, true),
+            this.getTransaction(firstItemId, "user", 7, TransactionService.SETTLED, false),
+            this.getTransaction(secondItemId, null, 4, TransactionService.SETTLED, true)
+        ));
+
+        Map<ObjectId, ItemInventory> inventories = this.transactionService.getItemInventories(
+            Arrays.asList(firstItemId, secondItemId, emptyItemId)
+        );
+
+        ItemInventory first = inventories.get(firstItemId);
+
+        assertEquals(2, first.sold);
+        assertEquals(3, first.pending);
+        assertEquals(2, first.getCountedCount());
+        assertEquals(5, first.getCountedQuantity());
+        assertEquals(5, (long)first.statusQuantities.get(String.valueOf(TransactionService.REFUNDED)));
+        assertEquals(1, (long)first.statusCounts.get(String.valueOf(TransactionService.REFUNDED)));
+        assertEquals(4, inventories.get(secondItemId).sold);
+        assertFalse(inventories.containsKey(emptyItemId));
+    }
+
+    private Transaction getTransaction(ObjectId itemId, String userId, long quantity, int status, boolean leaf) {
+        Transaction transaction = new Transaction();
+        transaction.itemId = itemId;
+        transaction.user_id = userId;
+        transaction.quantity = quantity;
+        transaction.status = status;
+        transaction.leaf = leaf;
+        return transaction;
+    }
+}
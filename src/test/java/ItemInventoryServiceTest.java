@@ -0,0 +1,124 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.jivecake.api.model.ItemInventory;
+import com.jivecake.api.model.Transaction;
+import com.jivecake.api.request.ItemCount;
+import com.jivecake.api.service.ItemInventoryService;
+import com.jivecake.api.service.TransactionService;
+
+public class ItemInventoryServiceTest extends DatastoreTest {
+    private ItemInventoryService itemInventoryService;
+
+    @Before
+    public void before() {
+        this.itemInventoryService = new ItemInventoryService(super.datastore, new TransactionService(super.datastore), new MetricRegistry());
+    }
+
+    @Test
+    public void inventoryIsReconciledFromExistingTransactions() {
+        ObjectId firstItemId = new ObjectId();
+        ObjectId secondItemId = new ObjectId();
+        ObjectId emptyItemId = new ObjectId();
+
+        this.datastore.save(Arrays.asList(
+            this.getTransaction(firstItemId, "user", 2, TransactionService.SETTLED, true),
+            this.getTransaction(firstItemId, "other", 3, TransactionService.PENDING, true),
+            this.getTransaction(firstItemId, "user", 5, TransactionService.REFUNDED, true),
+            this.getTransaction(firstItemId, "user", 7, TransactionService.SETTLED, false),
+            this.getTransaction(secondItemId, null, 4, TransactionService.SETTLED, true)
+        ));
+
+        Map<ObjectId, ItemCount> counts = this.itemInventoryService.getItemCounts(
+            Arrays.asList(firstItemId, secondItemId, emptyItemId),
+            "user"
+        );
+
+        assertEquals(2, counts.get(firstItemId).count);
+        assertEquals(5, counts.get(firstItemId).quantity);
+        assertEquals(1, counts.get(firstItemId).userCount);
+        assertEquals(2, counts.get(firstItemId).userQuantity);
+        assertEquals(4, counts.get(secondItemId).quantity);
+        assertEquals(0, counts.get(secondItemId).userQuantity);
+        assertEquals(0, counts.get(emptyItemId).quantity);
+
+        ItemInventory inventory = this.itemInventoryService.getInventories(Arrays.asList(firstItemId)).get(firstItemId);
+        assertEquals(5, (long)inventory.statusQuantities.get(String.valueOf(TransactionService.REFUNDED)));
+    }
+
+    @Test
+    public void updatesIncrementInventoryAndReconcileFixesDrift() {
+        ObjectId itemId = new ObjectId();
+
+        this.itemInventoryService.getInventories(Arrays.asList(itemId));
+
+        Transaction transaction = this.getTransaction(itemId, "user", 3, TransactionService.PENDING, true);
+        this.datastore.save(transaction);
+        this.itemInventoryService.add(Arrays.asList(transaction));
+
+        Transaction previousTransaction = new Transaction(transaction);
+        transaction.status = TransactionService.SETTLED;
+        this.datastore.save(transaction);
+        this.itemInventoryService.update(Arrays.asList(previousTransaction), Arrays.asList(transaction));
+
+        ItemInventory inventory = this.itemInventoryService.getInventories(Arrays.asList(itemId)).get(itemId);
+        assertEquals(3, inventory.sold);
+        assertEquals(0, inventory.pending);
+
+        this.datastore.save(this.getTransaction(itemId, "other", 4, TransactionService.SETTLED, true));
+
+        Date now = new Date();
+        assertEquals(0, this.itemInventoryService.reconcile(Arrays.asList(itemId), now));
+        assertEquals(3, this.itemInventoryService.getInventories(Arrays.asList(itemId)).get(itemId).sold);
+
+        Date later = new Date(now.getTime() + 1000 * 60);
+        assertEquals(1, this.itemInventoryService.reconcile(Arrays.asList(itemId), later));
+
+        inventory = this.itemInventoryService.getInventories(Arrays.asList(itemId)).get(itemId);
+        assertEquals(7, inventory.sold);
+        assertEquals(2, inventory.soldCount);
+        assertNull(inventory.timeDrifted);
+        assertEquals(0, this.itemInventoryService.reconcile(Arrays.asList(itemId), later));
+    }
+
+    @Test
+    public void reconcileBetweenSaveAndIncrementDoesNotDoubleCount() {
+        ObjectId itemId = new ObjectId();
+
+        this.itemInventoryService.getInventories(Arrays.asList(itemId));
+
+        Transaction transaction = this.getTransaction(itemId, "user", 3, TransactionService.SETTLED, true);
+        this.datastore.save(transaction);
+
+        Date now = new Date();
+        assertEquals(0, this.itemInventoryService.reconcile(Arrays.asList(itemId), now));
+
+        this.itemInventoryService.add(Arrays.asList(transaction));
+
+        Date later = new Date(now.getTime() + 1000 * 60);
+        assertEquals(0, this.itemInventoryService.reconcile(Arrays.asList(itemId), later));
+
+        ItemInventory inventory = this.itemInventoryService.getInventories(Arrays.asList(itemId)).get(itemId);
+        assertEquals(3, inventory.sold);
+        assertNull(inventory.timeDrifted);
+    }
+
+    private Transaction getTransaction(ObjectId itemId, String userId, long quantity, int status, boolean leaf) {
+        Transaction transaction = new Transaction();
+        transaction.itemId = itemId;
+        transaction.user_id = userId;
+        transaction.quantity = quantity;
+        transaction.status = status;
+        transaction.leaf = leaf;
+        return transaction;
+    }
+}
@@ -0,0 +1,54 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.jivecake.api.model.Item;
+import com.jivecake.api.model.ItemCountAmount;
+import com.jivecake.api.model.ItemTimeAmount;
+
+public class ItemTest {
+    @Test
+    public void nextCountAmountIsFirstThresholdAboveCount() {
+        ItemCountAmount first = new ItemCountAmount();
+        first.count = 10;
+        first.amount = 8;
+
+        ItemCountAmount second = new ItemCountAmount();
+        second.count = 20;
+        second.amount = 6;
+
+        Item item = new Item();
+        item.amount = 10;
+        item.countAmounts = Arrays.asList(first, second);
+
+        assertSame(first, item.getNextCountAmount(0));
+        assertSame(second, item.getNextCountAmount(10));
+        assertNull(item.getNextCountAmount(20));
+        assertEquals(8, item.getDerivedAmountFromCounts(10), 0);
+    }
+
+    @Test
+    public void nextTimeAmountIsFirstBoundaryNotPassed() {
+        ItemTimeAmount first = new ItemTimeAmount();
+        first.after = new Date(1000);
+        first.amount = 12;
+
+        ItemTimeAmount second = new ItemTimeAmount();
+        second.after = new Date(2000);
+        second.amount = 15;
+
+        Item item = new Item();
+        item.amount = 10;
+        item.timeAmounts = Arrays.asList(first, second);
+
+        assertSame(first, item.getNextTimeAmount(new Date(500)));
+        assertSame(second, item.getNextTimeAmount(new Date(1500)));
+        assertNull(item.getNextTimeAmount(new Date(2500)));
+        assertEquals(12, item.getDerivedAmountFromTime(new Date(1500)), 0);
+    }
+}
@@ -0,0 +1,126 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.auth0.jwk.SigningKeyNotFoundException;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.jivecake.api.APIConfiguration;
+import com.jivecake.api.OAuthConfiguration;
+import com.jivecake.api.service.JwkService;
+import com.jivecake.api.service.TokenCacheService;
+
+public class JwkServiceTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final List<String> kids = new ArrayList<>();
+    private final AtomicInteger fetches = new AtomicInteger();
+    private MetricRegistry metrics;
+
+    @Before
+    public void before() {
+        this.kids.add("first");
+        this.metrics = new MetricRegistry();
+    }
+
+    @Test
+    public void unknownKidRefetchesKeySet() throws Exception {
+        JwkService jwkService = this.getJwkService(0);
+        this.kids.add("second");
+
+        RSAPublicKey key = jwkService.getPublicKey("second");
+
+        assertNotNull(key);
+        assertEquals(2, this.fetches.get());
+        assertEquals(1, this.metrics.meter(MetricRegistry.name(JwkService.class, "miss")).getCount());
+    }
+
+    @Test
+    public void refetchIsRateLimited() throws Exception {
+        JwkService jwkService = this.getJwkService(1000 * 60 * 60);
+        jwkService.getPublicKey("first");
+        this.kids.add("second");
+
+        for (String kid: new String[] {"forged", "other", "second"}) {
+            try {
+                jwkService.getPublicKey(kid);
+                fail();
+            } catch (SigningKeyNotFoundException e) {
+            }
+        }
+
+        assertEquals(1, this.fetches.get());
+        assertEquals(1, this.metrics.meter(MetricRegistry.name(JwkService.class, "hit")).getCount());
+        assertEquals(3, this.metrics.meter(MetricRegistry.name(JwkService.class, "miss")).getCount());
+    }
+
+    /*
+     * Waits for the refresh the service schedules when it is created
+     */
+    private JwkService getJwkService(long minimumRefetchInterval) throws InterruptedException {
+        APIConfiguration configuration = new APIConfiguration();
+        configuration.oauth = new OAuthConfiguration();
+        configuration.oauth.jwksRefreshInterval = 1000 * 60 * 60;
+        configuration.oauth.jwksMinimumRefetchInterval = minimumRefetchInterval;
+
+        JwkService jwkService = new JwkService(
+            configuration,
+            this.metrics,
+            new TokenCacheService(configuration, new MetricRegistry())
+        ) {
+            @Override
+            protected String fetch() {
+                return JwkServiceTest.this.getKeySet();
+            }
+        };
+
+        Meter refreshes = this.metrics.meter(MetricRegistry.name(JwkService.class, "refresh"));
+
+        for (int index = 0; index < 500 && refreshes.getCount() == 0; index++) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, this.fetches.get());
+        return jwkService;
+    }
+
+    private String getKeySet() {
+        this.fetches.incrementAndGet();
+
+        ObjectNode root = this.mapper.createObjectNode();
+        ArrayNode keys = root.putArray("keys");
+
+        for (String kid: this.kids) {
+            RSAPublicKey key;
+
+            try {
+                KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+                generator.initialize(1024);
+                key = (RSAPublicKey)generator.generateKeyPair().getPublic();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+
+            keys.addObject()
+                .put("kty", "RSA")
+                .put("kid", kid)
+                .put("n", Base64.getUrlEncoder().withoutPadding().encodeToString(key.getModulus().toByteArray()))
+                .put("e", Base64.getUrlEncoder().withoutPadding().encodeToString(key.getPublicExponent().toByteArray()));
+        }
+
+        return root.toString();
+    }
+}
@@ -1,11 +1,20 @@
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
 import com.jivecake.api.filter.HashDateCount;
+import com.jivecake.api.filter.LimitAlgorithm;
+import com.jivecake.api.filter.RequestLimiter;
 
 public class LimitUserRequestTest {
     @Test
@@ -33,4 +42,109 @@ public class LimitUserRequestTest {
 
         assertEquals(3, dates.size());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void slidingWindowRejectsUntilOldestRequestLeavesWindow() {
+        RequestLimiter limiter = new RequestLimiter();
+
+        assertTrue(limiter.acquire("/path", "user", 2, 1000, LimitAlgorithm.SLIDING_WINDOW, 0));
+        assertTrue(limiter.acquire("/path", "user", 2, 1000, LimitAlgorithm.SLIDING_WINDOW, 100));
+        assertFalse(limiter.acquire("/path", "user", 2, 1000, LimitAlgorithm.SLIDING_WINDOW, 999));
+        assertTrue(limiter.acquire("/path", "other", 2, 1000, LimitAlgorithm.SLIDING_WINDOW, 999));
+        assertTrue(limiter.acquire("/path", "user", 2, 1000, LimitAlgorithm.SLIDING_WINDOW, 1000));
+        assertFalse(limiter.acquire("/path", "user", 2, 1000, LimitAlgorithm.SLIDING_WINDOW, 1050));
+    }
+
+    @Test
+    public void tokenBucketRefillsOverPeriod() {
+        RequestLimiter limiter = new RequestLimiter();
+
+        assertTrue(limiter.acquire("/path", "user", 2, 1000, LimitAlgorithm.TOKEN_BUCKET, 0));
+        assertTrue(limiter.acquire("/path", "user", 2, 1000, LimitAlgorithm.TOKEN_BUCKET, 0));
+        assertFalse(limiter.acquire("/path", "user", 2, 1000, LimitAlgorithm.TOKEN_BUCKET, 100));
+        assertTrue(limiter.acquire("/path", "user", 2, 1000, LimitAlgorithm.TOKEN_BUCKET, 600));
+        assertFalse(limiter.acquire("/path", "user", 2, 1000, LimitAlgorithm.TOKEN_BUCKET, 700));
+    }
+
+    @Test
+    public void idleKeysAreEvicted() {
+        RequestLimiter limiter = new RequestLimiter();
+
+        limiter.acquire("/path", "first", 5, 1000, LimitAlgorithm.SLIDING_WINDOW, 0);
+        limiter.acquire("/path", "second", 5, 1000, LimitAlgorithm.SLIDING_WINDOW, 500);
+        limiter.evictIdle(1200);
+
+        assertEquals(1, limiter.size());
+
+        limiter.evictIdle(1500);
+
+        assertEquals(0, limiter.size());
+    }
+
+    @Test
+    public void newKeysAreLetThroughWhenFull() {
+        RequestLimiter limiter = new RequestLimiter(1);
+
+        assertTrue(limiter.acquire("/path", "first", 1, 60000, LimitAlgorithm.SLIDING_WINDOW, 0));
+        assertFalse(limiter.acquire("/path", "first", 1, 60000, LimitAlgorithm.SLIDING_WINDOW, 500));
+        assertTrue(limiter.acquire("/path", "second", 1, 60000, LimitAlgorithm.SLIDING_WINDOW, 500));
+        assertTrue(limiter.acquire("/path", "second", 1, 60000, LimitAlgorithm.SLIDING_WINDOW, 600));
+        assertEquals(1, limiter.size());
+    }
+
+    @Test
+    public void concurrentRequestsNeverExceedCount() throws Exception {
+        RequestLimiter limiter = new RequestLimiter();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicInteger acquired = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int thread = 0; thread < 8; thread++) {
+            futures.add(executor.submit(() -> {
+                for (int index = 0; index < 1000; index++) {
+                    if (limiter.acquire("/path", "user", 100, 60000, LimitAlgorithm.SLIDING_WINDOW, 0)) {
+                        acquired.incrementAndGet();
+                    }
+                }
+            }));
+        }
+
+        for (Future<?> future: futures) {
+            future.get();
+        }
+
+        executor.shutdown();
+
+        assertEquals(100, acquired.get());
+    }
+
+    @Test
+    public void evictionDuringAcquireKeepsKeyCount() throws Exception {
+        RequestLimiter limiter = new RequestLimiter();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int thread = 0; thread < 3; thread++) {
+            futures.add(executor.submit(() -> {
+                for (int index = 0; index < 20000; index++) {
+                    limiter.acquire("/path", "user" + (index % 50), 5, 1, LimitAlgorithm.SLIDING_WINDOW, index);
+                }
+            }));
+        }
+
+        futures.add(executor.submit(() -> {
+            for (int index = 0; index < 2000; index++) {
+                limiter.evictIdle(Long.MAX_VALUE);
+            }
+        }));
+
+        for (Future<?> future: futures) {
+            future.get();
+        }
+
+        executor.shutdown();
+        limiter.evictIdle(Long.MAX_VALUE);
+
+        assertEquals(0, limiter.size());
+    }
+}
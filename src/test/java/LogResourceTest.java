@@ -0,0 +1,131 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.jivecake.api.APIConfiguration;
+import com.jivecake.api.model.UserInterfaceEvent;
+import com.jivecake.api.resources.LogResource;
+import com.jivecake.api.service.LogService;
+
+public class LogResourceTest {
+    private List<UserInterfaceEvent> saved;
+    private LogService logService;
+    private LogResource logResource;
+
+    @Before
+    public void before() {
+        this.saved = Collections.synchronizedList(new ArrayList<>());
+        this.logService = new LogService(null, null, new APIConfiguration(), new MetricRegistry()) {
+            @Override
+            public boolean save(UserInterfaceEvent event) {
+                LogResourceTest.this.saved.add(event);
+                return true;
+            }
+        };
+        this.logResource = new LogResource(null, null, null, this.logService, null);
+    }
+
+    @After
+    public void after() throws InterruptedException {
+        this.logService.stop();
+    }
+
+    @Test
+    public void ndjsonEventsAreSaved() {
+        String body = "{\"event\":\"cacheUserData\"}\n{\"event\":\"cacheUserData\",\"parameters\":{\"duration\":5}}\n";
+
+        Response response = this.logResource.createUserInterfaceEventStream(
+            "agent",
+            new MockHttpServletRequest(),
+            null,
+            this.getStream(body)
+        );
+
+        assertEquals(Status.OK.getStatusCode(), response.getStatus());
+        assertEquals(2, this.saved.size());
+        assertEquals(5, this.saved.get(1).parameters.get("duration"));
+        assertEquals("agent", this.saved.get(1).agent);
+    }
+
+    @Test
+    public void arrayEventsAreSaved() {
+        Response response = this.logResource.createUserInterfaceEvents(
+            "agent",
+            new MockHttpServletRequest(),
+            null,
+            this.getStream("[{\"event\":\"cacheUserData\"},{\"event\":\"cacheUserData\"}]")
+        );
+
+        assertEquals(Status.OK.getStatusCode(), response.getStatus());
+        assertEquals(2, this.saved.size());
+    }
+
+    @Test
+    public void batchOverLimitIsRejected() {
+        StringBuilder array = new StringBuilder("[");
+        StringBuilder lines = new StringBuilder();
+
+        for (int index = 0; index <= LogResource.BATCH_LIMIT; index++) {
+            array.append(index == 0 ? "" : ",").append("{\"event\":\"cacheUserData\"}");
+            lines.append("{\"event\":\"cacheUserData\"}\n");
+        }
+
+        array.append("]");
+
+        Response arrayResponse = this.logResource.createUserInterfaceEvents(
+            null,
+            new MockHttpServletRequest(),
+            null,
+            this.getStream(array.toString())
+        );
+
+        Response streamResponse = this.logResource.createUserInterfaceEventStream(
+            null,
+            new MockHttpServletRequest(),
+            null,
+            this.getStream(lines.toString())
+        );
+
+        assertEquals(Status.BAD_REQUEST.getStatusCode(), arrayResponse.getStatus());
+        assertEquals(Status.BAD_REQUEST.getStatusCode(), streamResponse.getStatus());
+        assertEquals(0, this.saved.size());
+    }
+
+    @Test
+    public void invalidEventRejectsBatch() {
+        Response invalid = this.logResource.createUserInterfaceEventStream(
+            null,
+            new MockHttpServletRequest(),
+            null,
+            this.getStream("{\"event\":\"cacheUserData\"}\n{\"event\":\"cacheUserData\",\"parameters\":{\"other\":1}}\n")
+        );
+
+        Response malformed = this.logResource.createUserInterfaceEvents(
+            null,
+            new MockHttpServletRequest(),
+            null,
+            this.getStream("[{\"event\":\"cacheUserData\"},")
+        );
+
+        assertEquals(Status.BAD_REQUEST.getStatusCode(), invalid.getStatus());
+        assertEquals(Status.BAD_REQUEST.getStatusCode(), malformed.getStatus());
+        assertEquals(0, this.saved.size());
+    }
+
+    private InputStream getStream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,59 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.jivecake.api.APIConfiguration;
+import com.jivecake.api.model.RequestRollup;
+import com.jivecake.api.service.LogService;
+import com.jivecake.api.service.PartitionService;
+
+public class LogServiceTest extends DatastoreTest {
+    private LogService logService;
+
+    @Before
+    public void before() {
+        APIConfiguration configuration = new APIConfiguration();
+        this.logService = new LogService(
+            super.datastore,
+            new PartitionService(super.datastore, configuration),
+            configuration,
+            new MetricRegistry()
+        );
+    }
+
+    @After
+    public void after() throws InterruptedException {
+        this.logService.stop();
+    }
+
+    @Test
+    public void rollupsAreMergedPerMinute() {
+        long minute = LogService.MINUTE * 1000;
+
+        this.logService.record("/event/search", "GET", 200, 5, 0, 100, minute);
+        this.logService.record("/event/search", "GET", 200, 700, 0, 300, minute + 1000);
+        this.logService.record("/event/search", "GET", 500, 20, 0, 0, minute + 2000);
+        this.logService.flushRollups(minute + LogService.MINUTE);
+
+        assertEquals(0, super.datastore.createQuery(RequestRollup.class).count());
+
+        this.logService.record("/event/search", "GET", 200, 5, 0, 100, minute + 3000);
+        this.logService.flushRollups(minute + LogService.MINUTE);
+        this.logService.flushRollups(minute + LogService.MINUTE);
+
+        List<RequestRollup> rollups = super.datastore.createQuery(RequestRollup.class)
+            .field("status").equal(200)
+            .asList();
+
+        assertEquals(1, rollups.size());
+        assertEquals(3, rollups.get(0).count);
+        assertEquals(500, rollups.get(0).responseBytes);
+        assertEquals(2, rollups.get(0).latencyBuckets.get("le10").longValue());
+        assertEquals(1, rollups.get(0).latencyBuckets.get("le1000").longValue());
+    }
+}
@@ -0,0 +1,92 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jivecake.api.APIConfiguration;
+import com.jivecake.api.LimiterConfiguration;
+import com.jivecake.api.filter.LimitAlgorithm;
+import com.jivecake.api.filter.MongoRequestLimiter;
+import com.jivecake.api.model.RequestLimitCount;
+
+public class MongoRequestLimiterTest extends DatastoreTest {
+    private APIConfiguration configuration;
+
+    @Before
+    public void before() {
+        this.configuration = new APIConfiguration();
+        this.configuration.limiter = new LimiterConfiguration();
+        this.configuration.limiter.reconcileInterval = 1000 * 60;
+    }
+
+    @Test
+    public void nodesShareCountAfterReconcile() {
+        MongoRequestLimiter first = new MongoRequestLimiter(super.datastore, this.configuration);
+        MongoRequestLimiter second = new MongoRequestLimiter(super.datastore, this.configuration);
+
+        long now = 1000 * 60 * 10;
+
+        assertTrue(first.acquire("/path", "user", 3, 60000, LimitAlgorithm.SLIDING_WINDOW, now));
+        assertTrue(first.acquire("/path", "user", 3, 60000, LimitAlgorithm.SLIDING_WINDOW, now));
+        assertTrue(second.acquire("/path", "user", 3, 60000, LimitAlgorithm.SLIDING_WINDOW, now));
+
+        first.reconcile(now);
+        second.reconcile(now);
+        /* first only learns about the request second flushed on its next pass */
+        first.reconcile(now);
+
+        assertEquals(3, super.datastore.createQuery(RequestLimitCount.class).get().count);
+        assertFalse(second.acquire("/path", "user", 3, 60000, LimitAlgorithm.SLIDING_WINDOW, now));
+        assertFalse(first.acquire("/path", "user", 3, 60000, LimitAlgorithm.SLIDING_WINDOW, now));
+    }
+
+    @Test
+    public void countResetsInNextWindow() {
+        MongoRequestLimiter limiter = new MongoRequestLimiter(super.datastore, this.configuration);
+
+        long now = 1000 * 60 * 10;
+
+        assertTrue(limiter.acquire("/path", "user", 1, 60000, LimitAlgorithm.SLIDING_WINDOW, now));
+        limiter.reconcile(now);
+        assertFalse(limiter.acquire("/path", "user", 1, 60000, LimitAlgorithm.SLIDING_WINDOW, now + 1000));
+        assertTrue(limiter.acquire("/path", "user", 1, 60000, LimitAlgorithm.SLIDING_WINDOW, now + 60000));
+    }
+
+    @Test
+    public void expiredCounterIsRetiredAfterFlush() {
+        MongoRequestLimiter limiter = new MongoRequestLimiter(super.datastore, this.configuration);
+
+        long now = 1000 * 60 * 10;
+
+        assertTrue(limiter.acquire("/path", "user", 2, 60000, LimitAlgorithm.SLIDING_WINDOW, now));
+        limiter.reconcile(now + 60000);
+
+        assertEquals(1, limiter.size());
+        assertEquals(1, super.datastore.createQuery(RequestLimitCount.class).get().count);
+
+        limiter.reconcile(now + 60000);
+        assertEquals(0, limiter.size());
+
+        assertTrue(limiter.acquire("/path", "user", 2, 60000, LimitAlgorithm.SLIDING_WINDOW, now + 60000));
+        limiter.reconcile(now + 60000);
+
+        assertEquals(1, limiter.size());
+        assertEquals(2, super.datastore.createQuery(RequestLimitCount.class).countAll());
+    }
+
+    @Test
+    public void countersAreBoundedByMaximumKeys() {
+        this.configuration.limiter.maximumKeys = 1;
+        MongoRequestLimiter limiter = new MongoRequestLimiter(super.datastore, this.configuration);
+
+        long now = 1000 * 60 * 10;
+
+        assertTrue(limiter.acquire("/path", "first", 1, 60000, LimitAlgorithm.SLIDING_WINDOW, now));
+        assertTrue(limiter.acquire("/path", "second", 1, 60000, LimitAlgorithm.SLIDING_WINDOW, now));
+        assertFalse(limiter.acquire("/path", "first", 1, 60000, LimitAlgorithm.SLIDING_WINDOW, now));
+
+        assertEquals(1, limiter.size());
+    }
+}
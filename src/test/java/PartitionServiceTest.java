@@ -0,0 +1,106 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jivecake.api.APIConfiguration;
+import com.jivecake.api.model.UserInterfaceEvent;
+import com.jivecake.api.request.Paging;
+import com.jivecake.api.service.PartitionService;
+
+public class PartitionServiceTest extends DatastoreTest {
+    private static final long DAY = 1000 * 60 * 60 * 24;
+
+    private PartitionService partitionService;
+
+    @Before
+    public void before() {
+        this.partitionService = new PartitionService(super.datastore, new APIConfiguration());
+    }
+
+    @Test
+    public void searchWalksPartitionsNewestFirst() {
+        long now = new Date().getTime();
+
+        UserInterfaceEvent today = new UserInterfaceEvent();
+        today.event = "today";
+        today.timeCreated = new Date(now);
+
+        UserInterfaceEvent yesterday = new UserInterfaceEvent();
+        yesterday.event = "yesterday";
+        yesterday.timeCreated = new Date(now - DAY);
+
+        UserInterfaceEvent lastWeek = new UserInterfaceEvent();
+        lastWeek.event = "lastWeek";
+        lastWeek.timeCreated = new Date(now - DAY * 7);
+
+        this.partitionService.insert(
+            UserInterfaceEvent.class,
+            Arrays.asList(today, yesterday, lastWeek),
+            event -> event.timeCreated
+        );
+
+        Paging<UserInterfaceEvent> page = this.partitionService.search(
+            UserInterfaceEvent.class,
+            new Date(now - DAY * 2),
+            null,
+            true,
+            1,
+            10,
+            query -> {}
+        );
+
+        assertEquals(2, page.count);
+        assertEquals(1, page.entity.size());
+        assertEquals("yesterday", page.entity.iterator().next().event);
+    }
+
+    @Test
+    public void searchStopsCountingOncePageIsFull() {
+        long now = new Date().getTime();
+
+        UserInterfaceEvent today = new UserInterfaceEvent();
+        today.event = "today";
+        today.timeCreated = new Date(now);
+
+        UserInterfaceEvent lastWeek = new UserInterfaceEvent();
+        lastWeek.event = "lastWeek";
+        lastWeek.timeCreated = new Date(now - DAY * 7);
+
+        this.partitionService.insert(
+            UserInterfaceEvent.class,
+            Arrays.asList(today, lastWeek),
+            event -> event.timeCreated
+        );
+
+        Paging<UserInterfaceEvent> first = this.partitionService.search(
+            UserInterfaceEvent.class,
+            null,
+            null,
+            true,
+            0,
+            1,
+            query -> {}
+        );
+
+        assertTrue(first.count > 1);
+        assertEquals("today", first.entity.iterator().next().event);
+
+        Paging<UserInterfaceEvent> second = this.partitionService.search(
+            UserInterfaceEvent.class,
+            null,
+            null,
+            true,
+            1,
+            1,
+            query -> {}
+        );
+
+        assertEquals(1, second.entity.size());
+        assertEquals("lastWeek", second.entity.iterator().next().event);
+    }
+}
@@ -12,6 +12,8 @@ import org.mongodb.morphia.FindAndModifyOptions;
 import org.mongodb.morphia.query.UpdateOperations;
 import org.mongodb.morphia.query.UpdateOpsImpl;
 
+import com.codahale.metrics.MetricRegistry;
+import com.jivecake.api.APIConfiguration;
 import com.jivecake.api.model.Application;
 import com.jivecake.api.model.Organization;
 import com.jivecake.api.model.Permission;
@@ -22,7 +24,7 @@ public class PermissionServiceTest extends DatastoreTest {
 
     @Before
     public void before() {
-        this.permissionService = new PermissionService(super.datastore);
+        this.permissionService = new PermissionService(super.datastore, new APIConfiguration(), new MetricRegistry());
     }
 
     @Test
@@ -129,6 +131,58 @@ public class PermissionServiceTest extends DatastoreTest {
         assertTrue(hasPermission);
     }
 
+    @Test
+    public void permissionCheckReflectsNewPermissionAfterInvalidate() {
+        String userId = "user5000";
+
+        Organization organization = new Organization();
+        organization.id = new ObjectId();
+
+        this.datastore.save(organization);
+
+        assertFalse(this.permissionService.hasRead(userId, Arrays.asList(organization)));
+
+        Permission permission = new Permission();
+        permission.read = true;
+        permission.objectClass = "Organization";
+        permission.objectId = organization.id;
+        permission.user_id = userId;
+
+        this.datastore.save(permission);
+
+        assertFalse(this.permissionService.hasRead(userId, Arrays.asList(organization)));
+
+        this.permissionService.invalidate(userId);
+
+        assertTrue(this.permissionService.hasRead(userId, Arrays.asList(organization)));
+    }
+
+    @Test
+    public void invalidateOnOtherNodeIsSeenAfterPoll() {
+        String userId = "user5000";
+        PermissionService other = new PermissionService(super.datastore, new APIConfiguration(), new MetricRegistry());
+
+        Organization organization = new Organization();
+        organization.id = new ObjectId();
+
+        this.datastore.save(organization);
+
+        this.permissionService.poll();
+        assertFalse(this.permissionService.hasRead(userId, Arrays.asList(organization)));
+
+        Permission permission = new Permission();
+        permission.read = true;
+        permission.objectClass = "Organization";
+        permission.objectId = organization.id;
+        permission.user_id = userId;
+
+        this.datastore.save(permission);
+        other.invalidate(userId);
+
+        this.permissionService.poll();
+        assertTrue(this.permissionService.hasRead(userId, Arrays.asList(organization)));
+    }
+
     @Test
     public void upsertUpdatesOnUniqueCollision() {
         Permission original = new Permission();
@@ -0,0 +1,144 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.ws.rs.core.Response.Status;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.jivecake.api.APIConfiguration;
+import com.jivecake.api.filter.ExceptionMapper;
+import com.jivecake.api.service.QueryExecutorService;
+import com.jivecake.api.service.QueryExecutorService.QueryGroup;
+
+public class QueryExecutorServiceTest {
+    private QueryExecutorService queryExecutorService;
+    private MetricRegistry metrics;
+
+    @Before
+    public void before() {
+        this.metrics = new MetricRegistry();
+        this.queryExecutorService = new QueryExecutorService(new APIConfiguration(), this.metrics);
+    }
+
+    @Test
+    public void queriesRunConcurrently() {
+        CountDownLatch latch = new CountDownLatch(2);
+
+        try (QueryGroup group = this.queryExecutorService.group("test", 5000)) {
+            Future<Boolean> first = group.submit("first", () -> this.await(latch));
+            Future<Boolean> second = group.submit("second", () -> this.await(latch));
+
+            assertTrue(group.get(first));
+            assertTrue(group.get(second));
+        }
+
+        assertEquals(1, this.metrics.timer(MetricRegistry.name(QueryExecutorService.class, "test", "first")).getCount());
+        assertEquals(1, this.metrics.timer(MetricRegistry.name(QueryExecutorService.class, "test", "second")).getCount());
+    }
+
+    @Test
+    public void deadlineCancelsGroup() {
+        CountDownLatch latch = new CountDownLatch(2);
+        Future<Boolean> pending = null;
+
+        try (QueryGroup group = this.queryExecutorService.group("test", 50)) {
+            pending = group.submit("pending", () -> this.await(latch));
+            group.get(pending);
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        assertTrue(pending.isCancelled());
+        assertEquals(1, this.metrics.meter(MetricRegistry.name(QueryExecutorService.class, "timeout")).getCount());
+    }
+
+    @Test
+    public void deadlineDoesNotInterruptRunningQueries() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+
+        try (QueryGroup group = this.queryExecutorService.group("test", 50)) {
+            Future<Boolean> running = group.submit("running", () -> {
+                started.countDown();
+
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                }
+
+                finished.countDown();
+                return true;
+            });
+
+            started.await(5, TimeUnit.SECONDS);
+            group.get(running);
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertFalse(interrupted.get());
+    }
+
+    @Test
+    public void deadlineIsServiceUnavailable() {
+        ExceptionMapper mapper = new ExceptionMapper(null, null, null, null, null, null);
+
+        assertEquals(
+            Status.SERVICE_UNAVAILABLE.getStatusCode(),
+            mapper.toResponse(new CompletionException(new TimeoutException())).getStatus()
+        );
+    }
+
+    @Test
+    public void groupWithoutTimeoutWaits() {
+        try (QueryGroup group = this.queryExecutorService.group("test", 0)) {
+            Future<Boolean> slow = group.submit("slow", () -> {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return false;
+                }
+
+                return true;
+            });
+
+            assertTrue(group.get(slow));
+        }
+
+        assertEquals(0, this.metrics.meter(MetricRegistry.name(QueryExecutorService.class, "timeout")).getCount());
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void failureIsRethrown() {
+        try (QueryGroup group = this.queryExecutorService.group("test")) {
+            Future<Object> failed = group.submit("failed", () -> {
+                throw new IllegalStateException();
+            });
+
+            group.get(failed);
+        }
+    }
+
+    private boolean await(CountDownLatch latch) {
+        latch.countDown();
+
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+}
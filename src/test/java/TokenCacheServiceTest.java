@@ -0,0 +1,76 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.codahale.metrics.MetricRegistry;
+import com.jivecake.api.APIConfiguration;
+import com.jivecake.api.OAuthConfiguration;
+import com.jivecake.api.service.TokenCacheService;
+
+public class TokenCacheServiceTest {
+    private TokenCacheService tokenCacheService;
+    private Algorithm algorithm;
+
+    @Before
+    public void before() throws IllegalArgumentException, UnsupportedEncodingException {
+        APIConfiguration configuration = new APIConfiguration();
+        configuration.oauth = new OAuthConfiguration();
+        configuration.oauth.verifiedTokenCacheSize = 2;
+
+        this.tokenCacheService = new TokenCacheService(configuration, new MetricRegistry());
+        this.algorithm = Algorithm.HMAC256("secret");
+    }
+
+    @Test
+    public void returnsCachedTokenUntilCleared() {
+        String token = this.createToken("user", 60000);
+        this.tokenCacheService.put(token, JWT.decode(token));
+
+        assertNotNull(this.tokenCacheService.get(token));
+        assertEquals("user", this.tokenCacheService.get(token).getSubject());
+
+        this.tokenCacheService.clear();
+
+        assertNull(this.tokenCacheService.get(token));
+    }
+
+    @Test
+    public void expiredTokensAreNotReturned() {
+        String token = this.createToken("user", -1000);
+        this.tokenCacheService.put(token, JWT.decode(token));
+
+        assertNull(this.tokenCacheService.get(token));
+    }
+
+    @Test
+    public void leastRecentlyUsedTokenIsEvicted() {
+        String first = this.createToken("first", 60000);
+        String second = this.createToken("second", 60000);
+        String third = this.createToken("third", 60000);
+
+        this.tokenCacheService.put(first, JWT.decode(first));
+        this.tokenCacheService.put(second, JWT.decode(second));
+        this.tokenCacheService.get(first);
+        this.tokenCacheService.put(third, JWT.decode(third));
+
+        assertEquals(2, this.tokenCacheService.size());
+        assertNotNull(this.tokenCacheService.get(first));
+        assertNull(this.tokenCacheService.get(second));
+        assertNotNull(this.tokenCacheService.get(third));
+    }
+
+    private String createToken(String subject, long expiresIn) {
+        return JWT.create()
+            .withSubject(subject)
+            .withExpiresAt(new Date(new Date().getTime() + expiresIn))
+            .sign(this.algorithm);
+    }
+}